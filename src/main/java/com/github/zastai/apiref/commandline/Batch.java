@@ -0,0 +1,217 @@
+package com.github.zastai.apiref.commandline;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a batch of jobs, as described by a manifest file.
+ * <p>
+ * Each non-blank line of the manifest that does not start with {@code #} describes one job, using the same arguments as a regular
+ * invocation (e.g. {@code --format=json lib/a.jar out/a.jsonl}); arguments are separated by whitespace, and can be enclosed in
+ * double quotes. Relative paths are resolved against the working directory.
+ * <p>
+ * All jobs are run in a single worker pool, in the same JVM; the only in-memory state they share is the index of classes in
+ * {@code --classpath} entries (used for {@code --documented-annotations-only}). Each job parses its own inputs, unless it uses a
+ * {@code --class-cache} folder. The output of each job is collected and written out when it completes, followed by a summary of all
+ * jobs.
+ */
+final class Batch {
+
+  private Batch() {
+  }
+
+  /**
+   * Options that cannot be used in a job (or a daemon request): they either never complete or do not produce an API reference.
+   */
+  @NotNull
+  private static final List<@NotNull String> UNSUPPORTED_OPTIONS = List.of("--batch", "--client", "--daemon", "--watch");
+
+  /**
+   * A single job from the manifest.
+   *
+   * @param line The line number in the manifest.
+   * @param args The command-line arguments for the job.
+   */
+  record Job(int line, @NotNull String @NotNull [] args) {
+  }
+
+  /**
+   * The result of a job.
+   *
+   * @param rc       The exit code.
+   * @param output   The output (both informational messages and diagnostics) produced by the job.
+   * @param duration The time taken by the job, in milliseconds.
+   */
+  private record Result(int rc, @NotNull String output, long duration) {
+  }
+
+  /**
+   * Parses a manifest file.
+   *
+   * @param lines The lines of the manifest.
+   *
+   * @return The jobs described by the manifest.
+   *
+   * @throws IllegalArgumentException When a line contains an unterminated quoted argument, or an option that cannot be used in a
+   *                                  batch (like {@code --batch} or {@code --watch}).
+   */
+  @NotNull
+  static List<Job> parse(@NotNull List<String> lines) {
+    final var jobs = new ArrayList<Job>();
+    for (var i = 0; i < lines.size(); ++i) {
+      final var line = lines.get(i).strip();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      final var args = new ArrayList<String>();
+      final var arg = new StringBuilder();
+      var inArg = false;
+      var quoted = false;
+      for (var j = 0; j < line.length(); ++j) {
+        final var c = line.charAt(j);
+        if (c == '"') {
+          quoted = !quoted;
+          inArg = true;
+        }
+        else if (Character.isWhitespace(c) && !quoted) {
+          if (inArg) {
+            args.add(arg.toString());
+            arg.setLength(0);
+            inArg = false;
+          }
+        }
+        else {
+          arg.append(c);
+          inArg = true;
+        }
+      }
+      if (quoted) {
+        throw new IllegalArgumentException("Unterminated quoted argument on line %d.".formatted(i + 1));
+      }
+      if (inArg) {
+        args.add(arg.toString());
+      }
+      final var job = new Job(i + 1, args.toArray(String[]::new));
+      final var unsupported = Batch.unsupportedOption(job.args);
+      if (unsupported != null) {
+        throw new IllegalArgumentException("The %s option cannot be used in a batch job (line %d).".formatted(unsupported, i + 1));
+      }
+      jobs.add(job);
+    }
+    return jobs;
+  }
+
+  /**
+   * Looks for an option that cannot be used in a batch job or a daemon request, like {@code --watch}.
+   *
+   * @param args The command-line arguments to check.
+   *
+   * @return The first unsupported option found, or {@code null} if there is none.
+   */
+  @Nullable
+  static String unsupportedOption(@NotNull String @NotNull [] args) {
+    for (final var option : Batch.UNSUPPORTED_OPTIONS) {
+      for (final var arg : args) {
+        if (arg.equals(option) || arg.startsWith(option + '=')) {
+          return option;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs all jobs in a manifest.
+   *
+   * @param manifest         The manifest file.
+   * @param workingDirectory The working directory.
+   * @param out              The stream for informational output.
+   * @param err              The stream for diagnostics.
+   *
+   * @return The highest exit code of all jobs (so 0 when they all succeeded).
+   */
+  static int run(@NotNull Path manifest, @NotNull Path workingDirectory, @NotNull PrintStream out, @NotNull PrintStream err) {
+    final List<Job> jobs;
+    try {
+      jobs = Batch.parse(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+    }
+    catch (IOException | IllegalArgumentException e) {
+      err.printf("Failed to read batch manifest %s: %s%n", manifest, e.getMessage());
+      return 2;
+    }
+    if (jobs.isEmpty()) {
+      out.printf("[info] Batch manifest %s contains no jobs.%n", manifest);
+      return 0;
+    }
+    final var threads = Math.min(jobs.size(), Runtime.getRuntime().availableProcessors());
+    out.printf("[info] Running %d job(s) from %s, using %d thread(s)...%n", jobs.size(), manifest, threads);
+    final var executor = Executors.newFixedThreadPool(threads);
+    try {
+      final var futures = new ArrayList<Future<Result>>();
+      for (var i = 0; i < jobs.size(); ++i) {
+        final var number = i + 1;
+        final var job = jobs.get(i);
+        futures.add(executor.submit(() -> {
+          final var start = System.nanoTime();
+          final var bytes = new ByteArrayOutputStream();
+          final int rc;
+          try (final var log = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+            rc = new Program(workingDirectory, log, log).run(job.args);
+          }
+          final var result = new Result(rc, bytes.toString(StandardCharsets.UTF_8), (System.nanoTime() - start) / 1_000_000);
+          synchronized (out) {
+            out.printf("[info] Job %d (line %d) finished with exit code %d.%n", number, job.line, rc);
+            out.print(result.output);
+          }
+          return result;
+        }));
+      }
+      final var results = new ArrayList<Result>();
+      for (final var future : futures) {
+        try {
+          results.add(future.get());
+        }
+        catch (ExecutionException e) {
+          results.add(new Result(16, e.getCause().toString(), 0));
+        }
+      }
+      var rc = 0;
+      var failed = 0;
+      out.println();
+      out.println("Batch summary:");
+      for (var i = 0; i < jobs.size(); ++i) {
+        final var job = jobs.get(i);
+        final var result = results.get(i);
+        if (result.rc != 0) {
+          ++failed;
+          rc = Math.max(rc, result.rc);
+        }
+        out.printf("  [%s] line %d: %s (%d ms)%n", result.rc == 0 ? "ok" : "FAILED, rc=" + result.rc, job.line,
+                   String.join(" ", job.args), result.duration);
+      }
+      out.printf("%d of %d job(s) succeeded.%n", jobs.size() - failed, jobs.size());
+      return rc;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      err.println("Interrupted while running batch jobs.");
+      return 16;
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+}
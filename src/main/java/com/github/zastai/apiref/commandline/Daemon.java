@@ -0,0 +1,318 @@
+package com.github.zastai.apiref.commandline;
+
+import com.github.zastai.apiref.internal.Diagnostics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A daemon processing command-line requests received over a Unix domain socket, and the client side of that.
+ * <p>
+ * Keeping a single JVM around avoids paying for its startup (and a cold JIT) on every run. The only in-memory state shared by
+ * requests is the index of classes in {@code --classpath} entries (used for {@code --documented-annotations-only}); each request
+ * still parses its own inputs, unless it uses a {@code --class-cache} folder. Requests are processed concurrently; options that would
+ * keep a request running indefinitely (like {@code --watch}) are rejected.
+ * <p>
+ * The protocol is simple: a request consists of the protocol version, the client's working directory and its command-line
+ * arguments. The response is a sequence of frames, each starting with a frame type: standard output or standard error data (with a
+ * length prefix), or the exit code (which ends the response).
+ */
+final class Daemon {
+
+  private Daemon() {
+  }
+
+  /** The reporter for the daemon's own diagnostics; these are not batched, so they show up right away. */
+  @NotNull
+  private static final Diagnostics DIAGNOSTICS = new Diagnostics(
+    (level, message) -> (level == Diagnostics.Level.INFO ? System.out : System.err).println(level.prefix + message),
+    Diagnostics.Level.INFO);
+
+  /** The protocol version. */
+  private static final int PROTOCOL_VERSION = 1;
+
+  /** Frame type: the exit code (ends the response). */
+  private static final byte FRAME_EXIT = 0;
+
+  /** Frame type: data for standard output. */
+  private static final byte FRAME_STDOUT = 1;
+
+  /** Frame type: data for standard error. */
+  private static final byte FRAME_STDERR = 2;
+
+  /**
+   * Verifies that a socket (or the folder containing it) belongs to the current user.
+   *
+   * @param path The path to check.
+   *
+   * @throws IOException When {@code path} is owned by another user, or its owner could not be determined.
+   */
+  private static void checkOwner(@NotNull Path path) throws IOException {
+    final var owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+    final var user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+    if (!owner.equals(user)) {
+      throw new IOException("%s is owned by %s, not by the current user.".formatted(path, owner.getName()));
+    }
+  }
+
+  /**
+   * Gets the default path for the daemon's socket.
+   * <p>
+   * This is in a folder specific to the current user: {@code $XDG_RUNTIME_DIR/apiref} when that is set, {@code ~/.apiref}
+   * otherwise. Unlike the shared temporary folder, other users cannot create (or replace) a socket there.
+   *
+   * @return The default path for the daemon's socket.
+   */
+  @NotNull
+  static Path defaultSocket() {
+    final var runtimeFolder = System.getenv("XDG_RUNTIME_DIR");
+    if (runtimeFolder != null && !runtimeFolder.isEmpty() && Path.of(runtimeFolder).isAbsolute()) {
+      return Path.of(runtimeFolder, "apiref", "daemon.socket");
+    }
+    return Path.of(System.getProperty("user.home"), ".apiref", "daemon.socket");
+  }
+
+  /**
+   * Forwards a command line to a running daemon, relaying its output.
+   *
+   * @param socket           The daemon's socket.
+   * @param workingDirectory The working directory, against which the daemon should resolve relative paths.
+   * @param args             The command-line arguments.
+   *
+   * @return The exit code for the request, or {@code null} if no daemon is running.
+   */
+  @Nullable
+  static Integer forward(@NotNull Path socket, @NotNull Path workingDirectory, @NotNull String @NotNull [] args) {
+    if (!Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) {
+      return null;
+    }
+    try {
+      // Another user's socket could capture the request and send back anything it likes.
+      Daemon.checkOwner(socket);
+    }
+    catch (IOException e) {
+      System.err.printf("Refusing to use daemon socket %s: %s%n", socket, e.getMessage());
+      return 32;
+    }
+    final SocketChannel channel;
+    try {
+      channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+    }
+    catch (IOException e) {
+      // Most likely a stale socket left behind by a daemon that did not shut down cleanly.
+      return null;
+    }
+    try (channel) {
+      final var request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      request.writeInt(Daemon.PROTOCOL_VERSION);
+      request.writeUTF(workingDirectory.toString());
+      request.writeInt(args.length);
+      for (final var arg : args) {
+        request.writeUTF(arg);
+      }
+      request.flush();
+      final var response = new DataInputStream(Channels.newInputStream(channel));
+      while (true) {
+        final var frame = response.readByte();
+        if (frame == Daemon.FRAME_EXIT) {
+          System.out.flush();
+          System.err.flush();
+          return response.readInt();
+        }
+        final var data = new byte[response.readInt()];
+        response.readFully(data);
+        (frame == Daemon.FRAME_STDERR ? System.err : System.out).write(data, 0, data.length);
+      }
+    }
+    catch (IOException e) {
+      System.err.printf("Communication with the daemon failed: %s%n", e);
+      return 32;
+    }
+  }
+
+  private static void handle(@NotNull SocketChannel channel) {
+    try (channel) {
+      final var request = new DataInputStream(Channels.newInputStream(channel));
+      final var response = new DataOutputStream(Channels.newOutputStream(channel));
+      if (request.readInt() != Daemon.PROTOCOL_VERSION) {
+        return;
+      }
+      final var workingDirectory = Path.of(request.readUTF());
+      final var args = new String[request.readInt()];
+      for (var i = 0; i < args.length; ++i) {
+        args[i] = request.readUTF();
+      }
+      final var out = Daemon.relay(response, Daemon.FRAME_STDOUT);
+      final var err = Daemon.relay(response, Daemon.FRAME_STDERR);
+      int rc;
+      final var unsupported = Batch.unsupportedOption(args);
+      if (unsupported != null) {
+        err.printf("The %s option cannot be used in a daemon request.%n", unsupported);
+        rc = 4;
+      }
+      else {
+        try {
+          rc = new Program(workingDirectory, out, err).run(args);
+        }
+        catch (RuntimeException e) {
+          err.printf("Request failed: %s%n", e);
+          rc = 16;
+        }
+      }
+      out.flush();
+      err.flush();
+      synchronized (response) {
+        response.writeByte(Daemon.FRAME_EXIT);
+        response.writeInt(rc);
+        response.flush();
+      }
+    }
+    catch (IOException e) {
+      Daemon.DIAGNOSTICS.report(Diagnostics.Level.WARNING, Diagnostics.Category.GENERAL, "Failed to process a daemon request: %s", e);
+    }
+  }
+
+  @NotNull
+  private static PrintStream relay(@NotNull DataOutputStream response, byte frameType) {
+    final var frames = new OutputStream() {
+
+      @Override
+      public void write(int b) throws IOException {
+        this.write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte @NotNull [] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return;
+        }
+        synchronized (response) {
+          response.writeByte(frameType);
+          response.writeInt(len);
+          response.write(b, off, len);
+          response.flush();
+        }
+      }
+
+    };
+    return new PrintStream(new BufferedOutputStream(frames, 64 * 1024), false, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates the folder for a socket (accessible only by the current user) if needed, and verifies that no other user has access to
+   * it.
+   *
+   * @param folder The folder to prepare.
+   *
+   * @throws IOException When the folder could not be created, or other users have access to it.
+   */
+  private static void prepareFolder(@NotNull Path folder) throws IOException {
+    final var posix = folder.getFileSystem().supportedFileAttributeViews().contains("posix");
+    if (!Files.isDirectory(folder, LinkOption.NOFOLLOW_LINKS)) {
+      if (posix) {
+        Files.createDirectories(folder, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      }
+      else {
+        Files.createDirectories(folder);
+      }
+    }
+    Daemon.checkOwner(folder);
+    if (posix) {
+      final var permissions = Files.getPosixFilePermissions(folder, LinkOption.NOFOLLOW_LINKS);
+      if (!PosixFilePermissions.fromString("rwx------").containsAll(permissions)) {
+        throw new IOException("%s is accessible by other users (permissions: %s).".formatted(folder,
+                                                                                              PosixFilePermissions.toString(permissions)));
+      }
+    }
+  }
+
+  /**
+   * Runs the daemon, processing requests until the process is terminated.
+   *
+   * @param socket The path for the daemon's socket; the folder containing it must only be accessible by the current user (it is
+   *               created if needed).
+   *
+   * @return The exit code (only returned when the daemon could not be started).
+   */
+  static int serve(@NotNull Path socket) {
+    try {
+      // The socket is only set up to be private after it has been bound, so the folder must keep others out in the meantime.
+      Daemon.prepareFolder(socket.toAbsolutePath().getParent());
+    }
+    catch (IOException e) {
+      System.err.printf("Cannot use %s for the daemon's socket: %s%n", socket, e.getMessage());
+      return 3;
+    }
+    final var address = UnixDomainSocketAddress.of(socket);
+    if (Files.exists(socket, LinkOption.NOFOLLOW_LINKS)) {
+      try {
+        SocketChannel.open(address).close();
+        System.err.printf("A daemon is already running on %s.%n", socket);
+        return 4;
+      }
+      catch (IOException e) {
+        // Stale socket; clean it up.
+        try {
+          Files.deleteIfExists(socket);
+        }
+        catch (IOException ex) {
+          System.err.printf("Failed to remove stale socket %s: %s%n", socket, ex);
+          return 3;
+        }
+      }
+    }
+    final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+      final var thread = new Thread(runnable, "apiref-request");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (final var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(address);
+      try {
+        Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+      }
+      catch (UnsupportedOperationException e) {
+        // Not a POSIX file system; rely on the folder's permissions.
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          Files.deleteIfExists(socket);
+        }
+        catch (IOException e) {
+          // Nothing we can do about it at this point.
+        }
+      }));
+      Daemon.DIAGNOSTICS.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Daemon listening on %s.", socket);
+      while (true) {
+        final var channel = server.accept();
+        workers.execute(() -> Daemon.handle(channel));
+      }
+    }
+    catch (IOException e) {
+      System.err.printf("Daemon failed: %s%n", e);
+      return 32;
+    }
+    finally {
+      workers.shutdownNow();
+    }
+  }
+
+}
@@ -1,36 +1,104 @@
 package com.github.zastai.apiref.commandline;
 
-import com.github.zastai.apiref.formatters.JavaFormatter;
-import com.github.zastai.apiref.formatters.MarkDownFormatter;
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassCache;
 import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.DependencyIndex;
+import com.github.zastai.apiref.internal.Diagnostics;
+import com.github.zastai.apiref.internal.JsonWriter;
 import com.github.zastai.apiref.internal.PathUtil;
+import com.github.zastai.apiref.internal.ReferenceFile;
+import com.github.zastai.apiref.internal.Statistics;
 import com.github.zastai.apiref.model.JavaApplication;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.nio.charset.StandardCharsets;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
 /** A command-line tool for running Java API extraction. */
 public final class Program {
 
-  private Program() { }
+  /** The default maximum size of the class cache (1 GiB). */
+  private static final long DEFAULT_CLASS_CACHE_SIZE = 1L << 30;
+
+  /**
+   * The dependency index shared by all runs in this process (i.e. by all jobs in a batch, or all requests to a daemon); this is the
+   * only in-memory state they share.
+   */
+  @NotNull
+  private static final DependencyIndex DEPENDENCY_INDEX = new DependencyIndex();
+
+  /** The prefix for an input referring to (modules in) a Java runtime image. */
+  @NotNull
+  private static final String RUNTIME_IMAGE = "jrt:/";
+
+  /** The reporter for diagnostics (other than usage errors). */
+  @NotNull
+  private Diagnostics diagnostics;
+
+  /** The stream for diagnostics. */
+  @NotNull
+  private final PrintStream err;
+
+  /** The stream for informational messages, and any output written to standard output. */
+  @NotNull
+  private final PrintStream out;
+
+  /** The folder against which relative paths are resolved. */
+  @NotNull
+  private final Path workingDirectory;
+
+  Program(@NotNull Path workingDirectory, @NotNull PrintStream out, @NotNull PrintStream err) {
+    this.diagnostics = new Diagnostics(Diagnostics.batched(out, err), Diagnostics.Level.INFO);
+    this.err = err;
+    this.out = out;
+    this.workingDirectory = workingDirectory;
+  }
+
+  /**
+   * A requested output.
+   *
+   * @param format     The output format.
+   * @param path       The output file, or {@code null} to write to standard output.
+   * @param compressed Indicates whether the output file should be gzip-compressed.
+   */
+  private record Output(@NotNull OutputFormat format, @Nullable Path path, boolean compressed) {
+
+    Output(@NotNull OutputFormat format, @NotNull Path workingDirectory, @NotNull String file, boolean compress) {
+      this(format, "-".equals(file) ? null : workingDirectory.resolve(file).toAbsolutePath(),
+           !"-".equals(file) && (compress || file.toLowerCase(Locale.ROOT).endsWith(".gz")));
+    }
+
+    @NotNull
+    public String describe() {
+      return this.path == null ? "standard output" : this.path.toString();
+    }
 
-  private static void info(@NotNull String message) {
-    System.out.println(message);
   }
 
-  private static void info(@NotNull String message, Object... args) {
-    System.out.printf(message, args);
+  private void info(@NotNull String message, Object... args) {
+    this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, message, args);
   }
 
-  private static int fail(int rc, @NotNull String message, Object... args) {
-    System.err.printf(message, args);
+  private int fail(int rc, @NotNull String message, Object... args) {
+    this.err.printf(message, args);
     return rc;
   }
 
@@ -40,15 +108,79 @@ public final class Program {
    * @param args The command-line arguments.
    */
   public static void main(String... args) {
-    System.exit(Program.run(args));
+    final var workingDirectory = Path.of("").toAbsolutePath();
+    if (args != null && args.length > 0) {
+      if (args[0].equals("--daemon") || args[0].startsWith("--daemon=")) {
+        if (args.length > 1) {
+          System.err.println("The --daemon option cannot be combined with other arguments.");
+          System.exit(4);
+        }
+        System.exit(Daemon.serve(Program.socketPath(args[0])));
+      }
+      if (args[0].equals("--client") || args[0].startsWith("--client=")) {
+        final var forwarded = Arrays.copyOfRange(args, 1, args.length);
+        final var rc = Daemon.forward(Program.socketPath(args[0]), workingDirectory, forwarded);
+        // If there is no daemon, just do the work ourselves.
+        System.exit(rc != null ? rc : new Program(workingDirectory, System.out, System.err).run(forwarded));
+      }
+    }
+    System.exit(new Program(workingDirectory, System.out, System.err).run(args));
   }
 
-  private static int run(String... args) {
+  private void reportClassDataSharing() {
+    final Path jar;
+    try {
+      jar = Path.of(Program.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+    catch (RuntimeException | URISyntaxException e) {
+      return;
+    }
+    final var name = jar.getFileName().toString();
+    if (!name.endsWith(".jar")) {
+      return;
+    }
+    final var archive = jar.resolveSibling(name.substring(0, name.length() - 4) + ".jsa");
+    if (!Files.isRegularFile(archive)) {
+      return;
+    }
+    // The archive can only be used when specified at JVM startup (which the launcher script takes care of).
+    final var used = ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                                      .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile="));
+    if (used) {
+      this.info("Using class data sharing archive %s.", archive);
+    }
+    else {
+      this.info("Not using class data sharing archive %s; run via the launcher script for faster startup.", archive);
+    }
+  }
+
+  int run(String... args) {
     if (args == null) {
-      return Program.usage(1);
+      return this.usage(1);
+    }
+    if (args.length > 0 && args[0].startsWith("--batch=")) {
+      if (args.length > 1) {
+        return this.fail(4, "The --batch option cannot be combined with other arguments.%n");
+      }
+      final var manifest = this.workingDirectory.resolve(args[0].substring("--batch=".length())).toAbsolutePath();
+      return Batch.run(manifest, this.workingDirectory, this.out, this.err);
     }
-    BiConsumer<PrintStream, JavaApplication> format = JavaFormatter::formatPublicApi;
-    boolean verbose = false;
+    var format = OutputFormat.JAVA;
+    final var outputs = new ArrayList<Output>();
+    final var classPathEntries = new ArrayList<Path>();
+    Path classCacheFolder = null;
+    long classCacheSize = Program.DEFAULT_CLASS_CACHE_SIZE;
+    boolean compress = false;
+    boolean concurrentInputs = false;
+    boolean documentedAnnotationsOnly = false;
+    Path javaHome = null;
+    var level = Diagnostics.Level.INFO;
+    long memoryBudget = 0;
+    final var nestedArchives = new ArrayList<String>();
+    boolean stats = false;
+    Path statsFile = null;
+    var threads = 1;
+    boolean watch = false;
     var idx = 0;
     for (; idx < args.length; ++idx) {
       final String arg = args[idx];
@@ -70,84 +202,439 @@ public final class Program {
       }
       if ("format".equals(option)) {
         if (value == null || value.isBlank()) {
-          return Program.fail(4, "No output format specified (should be 'java' or 'markdown').%n");
+          return this.fail(4, "No output format specified (should be %s).%n", OutputFormat.formatNames());
+        }
+        format = OutputFormat.fromName(value);
+        if (format == null) {
+          return this.fail(4, "Unsupported output format '%s' specified (should be %s).%n", value, OutputFormat.formatNames());
+        }
+      }
+      else if ("output".equals(option)) {
+        var spec = value;
+        if (spec == null) {
+          if (idx + 1 >= args.length) {
+            return this.fail(4, "No output specified for --output (should be FORMAT=FILE).%n");
+          }
+          spec = args[++idx];
+        }
+        final int equals = spec.indexOf('=');
+        if (equals <= 0 || equals == spec.length() - 1) {
+          return this.fail(4, "Invalid output specification '%s' (should be FORMAT=FILE).%n", spec);
+        }
+        final var outputFormat = OutputFormat.fromName(spec.substring(0, equals));
+        if (outputFormat == null) {
+          return this.fail(4, "Unsupported output format '%s' specified (should be %s).%n", spec.substring(0, equals),
+                              OutputFormat.formatNames());
+        }
+        outputs.add(new Output(outputFormat, this.workingDirectory, spec.substring(equals + 1), compress));
+      }
+      else if ("classpath".equals(option)) {
+        if (value == null || value.isBlank()) {
+          return this.fail(4, "No paths specified for --classpath.%n");
         }
-        switch (value.toLowerCase(Locale.ROOT)) {
-          case "java" -> format = JavaFormatter::formatPublicApi;
-          case "markdown" -> format = MarkDownFormatter::formatPublicApi;
-          default -> {
-            return Program.fail(4, "Unsupported output format '%s' specified (should be 'java' or 'markdown').%n", value);
+        for (final var entry : value.split(File.pathSeparator)) {
+          if (!entry.isEmpty()) {
+            classPathEntries.add(this.workingDirectory.resolve(entry).toAbsolutePath().normalize());
           }
         }
       }
+      else if ("class-cache".equals(option)) {
+        if (value == null || value.isBlank()) {
+          return this.fail(4, "No folder specified for --class-cache.%n");
+        }
+        classCacheFolder = this.workingDirectory.resolve(value).toAbsolutePath().normalize();
+      }
+      else if ("class-cache-size".equals(option)) {
+        classCacheSize = value == null ? -1 : Program.parseSize(value);
+        if (classCacheSize <= 0) {
+          return this.fail(4, "Invalid size specified for --class-cache-size (should be a size like 512M or 2G).%n");
+        }
+      }
+      else if ("compress".equals(option) && value == null) {
+        if (!outputs.isEmpty()) {
+          return this.fail(4, "The --compress option must come before any --output options.%n");
+        }
+        compress = true;
+      }
+      else if ("concurrent-inputs".equals(option) && value == null) {
+        concurrentInputs = true;
+      }
+      else if ("documented-annotations-only".equals(option) && value == null) {
+        documentedAnnotationsOnly = true;
+      }
+      else if ("java-home".equals(option)) {
+        if (value == null || value.isBlank()) {
+          return this.fail(4, "No folder specified for --java-home.%n");
+        }
+        javaHome = this.workingDirectory.resolve(value).toAbsolutePath().normalize();
+      }
+      else if ("memory-budget".equals(option)) {
+        memoryBudget = value == null ? -1 : Program.parseSize(value);
+        if (memoryBudget <= 0) {
+          return this.fail(4, "Invalid memory budget specified for --memory-budget (should be a size like 512M or 2G).%n");
+        }
+      }
+      else if ("nested".equals(option)) {
+        if (value == null || value.isBlank()) {
+          return this.fail(4, "No pattern specified for --nested.%n");
+        }
+        nestedArchives.add(value);
+      }
+      else if ("quiet".equals(option) && value == null) {
+        level = Diagnostics.Level.WARNING;
+      }
       else if ("verbose".equals(option) && value == null) {
-        verbose = true;
+        level = Diagnostics.Level.TRACE;
+      }
+      else if ("stats".equals(option) && value == null) {
+        stats = true;
+      }
+      else if ("stats-file".equals(option)) {
+        if (value == null || value.isBlank()) {
+          return this.fail(4, "No file specified for --stats-file.%n");
+        }
+        statsFile = this.workingDirectory.resolve(value).toAbsolutePath();
+      }
+      else if ("threads".equals(option)) {
+        try {
+          threads = value == null ? 0 : Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+          threads = 0;
+        }
+        if (threads <= 0) {
+          return this.fail(4, "Invalid number of threads specified for --threads (should be a positive integer).%n");
+        }
+      }
+      else if ("watch".equals(option) && value == null) {
+        watch = true;
       }
       else if ("help".equals(option) && value == null) {
-        return Program.usage(0);
+        return this.usage(0);
       }
       else {
-        return Program.fail(4, "Unsupported option: %s%n", arg);
+        return this.fail(4, "Unsupported option: %s%n", arg);
       }
     }
-    if (args.length - idx < 2) {
-      return Program.usage(1);
+    final int lastInput;
+    if (outputs.isEmpty()) {
+      if (args.length - idx < 2) {
+        return this.usage(1);
+      }
+      outputs.add(new Output(format, this.workingDirectory, args[args.length - 1], compress));
+      lastInput = args.length - 1;
+    }
+    else {
+      if (args.length - idx < 1) {
+        return this.usage(1);
+      }
+      lastInput = args.length;
+    }
+    {
+      final var seen = new HashSet<Path>();
+      var seenStandardOutput = false;
+      for (final var output : outputs) {
+        if (output.path == null) {
+          if (seenStandardOutput) {
+            return this.fail(4, "Standard output can only be used for one output.%n");
+          }
+          seenStandardOutput = true;
+          continue;
+        }
+        if (!seen.add(output.path.normalize())) {
+          return this.fail(4, "The same output file was specified more than once: %s%n", output.path);
+        }
+        final var outputDir = output.path.getParent();
+        if (!Files.isDirectory(outputDir)) {
+          return this.fail(3, "Output folder does not exist: %s%n", outputDir);
+        }
+      }
+    }
+    // Keep standard output clean when the reference is written to it.
+    final var log = outputs.stream().anyMatch(output -> output.path == null) ? this.err : this.out;
+    this.diagnostics = new Diagnostics(Diagnostics.batched(log, this.err), level);
+    if (this.diagnostics.isEnabled(Diagnostics.Level.DEBUG)) {
+      this.reportClassDataSharing();
+    }
+    if (watch && (outputs.size() != 1 || outputs.get(0).path == null)) {
+      return this.fail(4, "The --watch option requires a single output file.%n");
+    }
+    if (watch && (stats || statsFile != null)) {
+      return this.fail(4, "Statistics are not available in watch mode.%n");
+    }
+    if (watch && memoryBudget > 0) {
+      return this.fail(4, "A memory budget cannot be used in watch mode.%n");
+    }
+    final var statistics = new Statistics(stats || statsFile != null);
+    final ClassCache classCache;
+    try {
+      classCache = classCacheFolder == null ? null : new ClassCache(classCacheFolder, classCacheSize);
+    }
+    catch (IOException e) {
+      return this.fail(3, "Could not open class cache %s: %s%n", classCacheFolder, e);
     }
-    final JavaApplication application;
     try (final ClassPath classPath = new ClassPath()) {
       // TODO: configure the classpath, especially for things like annotations that mark something as not being part of public API.
-      classPath.setVerbose(verbose);
-      while (idx + 1 < args.length) {
+      classPath.setClassCache(classCache);
+      classPath.setDiagnostics(this.diagnostics);
+      if (documentedAnnotationsOnly) {
+        classPath.setDependencies(name -> Program.DEPENDENCY_INDEX.find(classPathEntries, name, this.diagnostics));
+        classPath.setDocumentedAnnotationsOnly(true);
+      }
+      classPath.setIncremental(watch);
+      classPath.setMemoryBudget(memoryBudget);
+      classPath.setNestedArchives(nestedArchives);
+      classPath.setParallelism(threads);
+      classPath.setStatistics(statistics);
+      final var inputs = new ArrayList<Path>();
+      final var folders = new ArrayList<Path>();
+      for (; idx < lastInput; ++idx) {
+        if (args[idx].startsWith(Program.RUNTIME_IMAGE)) {
+          final var modules = new TreeSet<String>();
+          for (final var module : args[idx].substring(Program.RUNTIME_IMAGE.length()).split(",")) {
+            if (!module.isEmpty()) {
+              modules.add(module);
+            }
+          }
+          // Keep the inputs in order.
+          if (!inputs.isEmpty()) {
+            try {
+              classPath.addConcurrently(inputs);
+            }
+            catch (IOException e) {
+              return this.fail(2, "%s%n", e.getMessage());
+            }
+            inputs.clear();
+          }
+          try {
+            classPath.addRuntimeImage(javaHome, modules);
+          }
+          catch (IOException e) {
+            return this.fail(2, "Failed to locate class files in %s: %s%n", args[idx], e);
+          }
+          continue;
+        }
         try {
-          final var jarOrFolder = Path.of(args[idx]).toAbsolutePath().normalize();
-          if (PathUtil.isJarFile(jarOrFolder) || PathUtil.isDirectory(jarOrFolder)) {
-            classPath.add(jarOrFolder);
+          final var jarOrFolder = this.workingDirectory.resolve(args[idx]).toAbsolutePath().normalize();
+          if (PathUtil.isArchive(jarOrFolder) || PathUtil.isDirectory(jarOrFolder)) {
+            if (concurrentInputs) {
+              inputs.add(jarOrFolder);
+            }
+            else {
+              classPath.add(jarOrFolder);
+            }
+            if (PathUtil.isDirectory(jarOrFolder)) {
+              folders.add(jarOrFolder);
+            }
           }
           else {
-            return Program.fail(2, "Input is neither a folder nor a jar file: %s%n", jarOrFolder);
+            return this.fail(2, "Input is neither a folder nor an archive (jar, war, ear or jmod file): %s%n", jarOrFolder);
           }
         }
         catch (IOException e) {
-          return Program.fail(2, "Failed to locate class files in %s: %s%n", args[idx], e);
+          return this.fail(2, "Failed to locate class files in %s: %s%n", args[idx], e);
         }
-        ++idx;
       }
-      application = classPath.buildApplication();
-    }
-    final Path referencePath;
-    if ("-".equals(args[idx])) {
-      referencePath = null;
+      if (concurrentInputs) {
+        try {
+          classPath.addConcurrently(inputs);
+        }
+        catch (IOException e) {
+          return this.fail(2, "%s%n", e.getMessage());
+        }
+      }
+      if (watch) {
+        if (folders.isEmpty()) {
+          return this.fail(4, "The --watch option requires at least one folder as input (jar files are not watched).%n");
+        }
+        final var output = outputs.get(0);
+        return Watcher.run(classPath, folders, output.format, output.path, output.compressed, this.diagnostics);
+      }
+      final int rc;
+      if (outputs.size() == 1) {
+        // With a single output, there is no need to hold the entire model in memory.
+        final var output = outputs.get(0);
+        rc = this.write(output, (out, position) -> classPath.emit(output.format.publicApiListener(out), position));
+      }
+      else {
+        rc = this.writeConcurrently(outputs, classPath.buildApplication(), statistics);
+      }
+      if (stats) {
+        this.diagnostics.flush();
+        statistics.print(log);
+      }
+      if (statsFile != null) {
+        return Math.max(rc, this.writeStatistics(statistics, statsFile));
+      }
+      return rc;
     }
-    else {
-      referencePath = Path.of(args[idx]).toAbsolutePath();
-      final var outputDir = referencePath.getParent();
-      if (!Files.isDirectory(outputDir)) {
-        return Program.fail(3, "Output folder does not exist: %s%n", outputDir);
+    finally {
+      if (classCache != null) {
+        try {
+          classCache.close();
+        }
+        catch (IOException e) {
+          this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.GENERAL, "Could not clean up the class cache: %s", e);
+        }
       }
+      this.diagnostics.reportSuppressed();
+      this.diagnostics.flush();
+    }
+  }
+
+  /**
+   * Parses a size, which is a number of bytes optionally followed by {@code K}, {@code M} or {@code G} (for KiB, MiB or GiB).
+   *
+   * @param size The size to parse.
+   *
+   * @return The size in bytes, or -1 if {@code size} is not valid.
+   */
+  private static long parseSize(@NotNull String size) {
+    if (size.isEmpty()) {
+      return -1;
+    }
+    final var shift = switch (Character.toUpperCase(size.charAt(size.length() - 1))) {
+      case 'K' -> 10;
+      case 'M' -> 20;
+      case 'G' -> 30;
+      default -> 0;
+    };
+    final var number = shift == 0 ? size : size.substring(0, size.length() - 1);
+    try {
+      final var value = Long.parseLong(number);
+      return value < 0 || value > (Long.MAX_VALUE >> shift) ? -1 : value << shift;
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @NotNull
+  private static Path socketPath(@NotNull String option) {
+    final var equals = option.indexOf('=');
+    return equals < 0 ? Daemon.defaultSocket() : Path.of(option.substring(equals + 1)).toAbsolutePath();
+  }
+
+  private int usage(int rc) {
+    final var jar = Program.class.getPackageName() + ".jar";
+    this.out.printf("Usage: java -jar %s [OPTIONS] INPUT... OUTPUT-FILE%n", jar);
+    this.out.printf("   or: java -jar %s [OPTIONS] --output FORMAT=OUTPUT-FILE... INPUT...%n", jar);
+    this.out.printf("   or: java -jar %s --batch=MANIFEST%n", jar);
+    this.out.printf("   or: java -jar %s --daemon[=SOCKET]%n", jar);
+    this.out.printf("   or: java -jar %s --client[=SOCKET] [OPTIONS] ...%n", jar);
+    this.out.println();
+    this.out.println("Inputs:");
+    this.out.println("  JAR-OR-FOLDER               A folder, or a jar, war, ear or jmod file");
+    this.out.println("  jrt:/[MODULE,...]           The given modules (or all modules) of a Java runtime image (see --java-home); only");
+    this.out.println("                              the packages each module exports (unqualified) are included");
+    this.out.println();
+    this.out.println("Options:");
+    this.out.println("  --class-cache=DIR           Use DIR as a cache of extracted class information, shared between runs (and");
+    this.out.println("                              processes); class files found in it do not need to be parsed again");
+    this.out.println("  --class-cache-size=SIZE     The maximum size of the class cache (K, M or G suffixes allowed; default: 1G); least");
+    this.out.println("                              recently used entries are removed when it grows beyond this");
+    this.out.println("  --classpath=PATHS           Jar files and/or folders (separated by the platform path separator) in which to look up");
+    this.out.println("                              types that are not being documented, like annotation types");
+    this.out.println("  --compress                  Gzip-compress all output files (this is automatic for files ending in .gz)");
+    this.out.println("  --concurrent-inputs         Scan all input jar files and folders at the same time (parsing their class files on");
+    this.out.println("                              --threads threads); mainly useful for many inputs, or inputs on slow storage");
+    this.out.println("  --documented-annotations-only");
+    this.out.println("                              Omit annotations whose types are not marked @Documented");
+    this.out.println("  --format=FORMAT             Specify the output format (java, json or markdown)");
+    this.out.println("  --java-home=DIR             Use the runtime image of the Java installation in DIR for jrt:/ inputs (default: that");
+    this.out.println("                              of the running JVM)");
+    this.out.println("  --memory-budget=SIZE        Move parsed classes to a temporary file when they would use more than about SIZE");
+    this.out.println("                              bytes of memory (K, M or G suffixes allowed); mainly useful for very large inputs");
+    this.out.println("                              written to a single output");
+    this.out.println("  --nested=GLOB               Also include the classes in archives nested inside the input archives whose paths");
+    this.out.println("                              match GLOB (like BOOT-INF/lib/*.jar or WEB-INF/lib/*.jar); can be repeated");
+    this.out.println("  --quiet                     Only report warnings and errors");
+    this.out.println("  --output FORMAT=FILE        Write the reference in the given format to FILE ('-' for standard output); can be");
+    this.out.println("                              repeated to produce several outputs from a single scan");
+    this.out.println("  --stats                     Print timing (per processing phase) and throughput statistics");
+    this.out.println("  --stats-file=FILE           Write timing and throughput statistics to FILE, as JSON");
+    this.out.println("  --threads=N                 Use N threads to look for, read and parse class files (default: 1)");
+    this.out.println("  --verbose                   Report details about the selection of classes and members");
+    this.out.println("  --watch                     After generating the (single) output file, keep it up to date as class files in the");
+    this.out.println("                              input folders change (jar files are not watched); runs until interrupted");
+    this.out.println();
+    this.out.println("Batch mode:");
+    this.out.println("  --batch=MANIFEST            Run all jobs listed in MANIFEST in parallel (sharing the index of --classpath");
+    this.out.println("                              entries); each line holds the arguments for one job (lines starting with # are");
+    this.out.println("                              ignored)");
+    this.out.println();
+    this.out.println("Daemon mode:");
+    this.out.println("  --daemon[=SOCKET]           Run as a daemon, accepting requests on a Unix domain socket (by default, one in a");
+    this.out.println("                              private per-user folder); this keeps the JVM (and the index of --classpath");
+    this.out.println("                              entries) warm across requests; --watch and --batch cannot be used in requests");
+    this.out.println("  --client[=SOCKET]           Forward the rest of the command line to a daemon; when none is running, the request");
+    this.out.println("                              is processed in-process instead");
+    return rc;
+  }
+
+  private int write(@NotNull Output output, @NotNull BiConsumer<PrintStream, @Nullable LongSupplier> generator) {
+    if (output.path == null) {
+      generator.accept(this.out, null);
+      this.out.flush();
+      return 0;
     }
-    try (final PrintStream reference = Program.openReferenceFile(referencePath)) {
-      format.accept(reference, application);
+    try (final var reference = ReferenceFile.create(output.path, output.compressed)) {
+      generator.accept(reference.stream(), reference::bytesWritten);
+      if (!reference.commit()) {
+        this.info("Reference file is up to date: %s", output.path);
+      }
     }
     catch (IOException e) {
-      return Program.fail(16, "Failed to generate reference code: %s%n", e);
+      return this.fail(16, "Failed to generate reference code (%s): %s%n", output.describe(), e);
     }
     return 0;
   }
 
-  @NotNull
-  private static PrintStream openReferenceFile(@Nullable Path referencePath) throws IOException {
-    if (referencePath == null) {
-      return System.out;
+  private int writeConcurrently(@NotNull List<Output> outputs, @NotNull JavaApplication application, @NotNull Statistics statistics) {
+    final var tasks = new ArrayList<Callable<Integer>>();
+    for (final var output : outputs) {
+      tasks.add(() -> {
+        final var timer = statistics.timer();
+        timer.enter(Statistics.Phase.FORMAT);
+        try {
+          return this.write(output, (out, position) -> output.format.formatPublicApi(out, application));
+        }
+        finally {
+          timer.enter(null);
+        }
+      });
+    }
+    final var executor = Executors.newFixedThreadPool(Math.min(outputs.size(), Runtime.getRuntime().availableProcessors()));
+    try {
+      var rc = 0;
+      for (final var result : executor.invokeAll(tasks)) {
+        try {
+          rc = Math.max(rc, result.get());
+        }
+        catch (ExecutionException e) {
+          rc = Math.max(rc, this.fail(16, "Failed to generate reference code: %s%n", e.getCause()));
+        }
+      }
+      return rc;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return this.fail(16, "Interrupted while generating reference code.%n");
+    }
+    finally {
+      executor.shutdown();
     }
-    return new PrintStream(Files.newOutputStream(referencePath), false, StandardCharsets.UTF_8);
   }
 
-  private static int usage(int rc) {
-    System.out.printf("Usage: java -jar %s.jar [OPTIONS] JAR-OR-FOLDER... OUTPUT-FILE%n", Program.class.getPackageName());
-    System.out.println();
-    System.out.println("Options:");
-    System.out.println("  --format=FORMAT             Specify the output format (java or markdown)");
-    return rc;
+  private int writeStatistics(@NotNull Statistics statistics, @NotNull Path file) {
+    try (final var statsFile = ReferenceFile.create(file)) {
+      statistics.writeJson(new JsonWriter(statsFile.stream()));
+      statsFile.commit();
+    }
+    catch (IOException e) {
+      return this.fail(16, "Failed to write statistics to %s: %s%n", file, e);
+    }
+    return 0;
   }
 
 }
@@ -0,0 +1,255 @@
+package com.github.zastai.apiref.commandline;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.Diagnostics;
+import com.github.zastai.apiref.internal.Events;
+import com.github.zastai.apiref.internal.ReferenceFile;
+import com.github.zastai.apiref.model.ApiListener;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a reference file up to date while the class files in one or more folders change.
+ * <p>
+ * The reference is kept in memory as separately rendered sections (one per package, plus the modules and top-level types). When
+ * class files change, only those are reloaded, and only the sections for the affected packages are rendered again. Changes are
+ * debounced, so that a burst of writes by a compiler results in a single update.
+ */
+final class Watcher {
+
+  /** How long (in milliseconds) to wait for further changes before updating the reference. */
+  private static final long DEBOUNCE_DELAY = 250;
+
+  /** The class path, which must have incremental updates enabled. */
+  @NotNull
+  private final ClassPath classPath;
+
+  /** Indicates whether the reference file should be compressed. */
+  private final boolean compressed;
+
+  /** The reporter for diagnostics. */
+  @NotNull
+  private final Diagnostics diagnostics;
+
+  /** The output format. */
+  @NotNull
+  private final OutputFormat format;
+
+  /** The rendered file footer. */
+  private byte @NotNull [] footer = new byte[0];
+
+  /** The rendered file header. */
+  private byte @NotNull [] header = new byte[0];
+
+  /** The rendered modules. */
+  private byte @NotNull [] modules = new byte[0];
+
+  /** The rendered packages. */
+  @NotNull
+  private final SortedMap<@NotNull String, byte @NotNull []> packages = new TreeMap<>();
+
+  /** The reference file. */
+  @NotNull
+  private final Path path;
+
+  /** The rendered top-level types. */
+  private byte @NotNull [] topLevelTypes = new byte[0];
+
+  /** For each registered watch key, the watched folder it belongs to. */
+  @NotNull
+  private final Map<@NotNull WatchKey, @NotNull Path> watchKeys = new HashMap<>();
+
+  private Watcher(@NotNull ClassPath classPath, @NotNull OutputFormat format, @NotNull Path path, boolean compressed,
+                  @NotNull Diagnostics diagnostics) {
+    this.classPath = classPath;
+    this.compressed = compressed;
+    this.diagnostics = diagnostics;
+    this.format = format;
+    this.path = path;
+  }
+
+  private void register(@NotNull WatchService watchService, @NotNull Path folder, @NotNull Path directory) throws IOException {
+    final List<Path> directories;
+    try (final var paths = Files.walk(directory)) {
+      directories = paths.filter(Files::isDirectory).toList();
+    }
+    for (final var d : directories) {
+      final var key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                                 StandardWatchEventKinds.ENTRY_MODIFY);
+      this.watchKeys.put(key, folder);
+    }
+  }
+
+  private byte @NotNull [] render(@NotNull Consumer<ApiListener> events) {
+    final var bytes = new ByteArrayOutputStream();
+    try (final var stream = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+      events.accept(this.format.publicApiListener(stream));
+    }
+    return bytes.toByteArray();
+  }
+
+  private void renderPackage(@NotNull String name) {
+    if (name.isEmpty()) {
+      this.topLevelTypes = this.render(this.classPath::replayTopLevelTypes);
+      return;
+    }
+    final var event = new Events.PackageRendered();
+    event.begin();
+    final var rendered = new boolean[1];
+    final var bytes = this.render(listener -> rendered[0] = this.classPath.replayPackage(name, listener));
+    if (rendered[0]) {
+      this.packages.put(name, bytes);
+      if (event.shouldCommit()) {
+        event.bytesWritten = bytes.length;
+        event.packageName = name;
+        event.commit();
+      }
+    }
+    else {
+      this.packages.remove(name);
+    }
+  }
+
+  /**
+   * Generates a reference file, then keeps it up to date until the process is terminated.
+   *
+   * @param classPath  The class path, containing all inputs; it must have incremental updates enabled.
+   * @param folders    The folders to watch (all of which must have been added to {@code classPath}).
+   * @param format     The output format.
+   * @param path       The reference file.
+   * @param compressed  Indicates whether the reference file should be compressed.
+   * @param diagnostics The reporter for diagnostics.
+   *
+   * @return The exit code (only returned when watching fails).
+   */
+  static int run(@NotNull ClassPath classPath, @NotNull List<@NotNull Path> folders, @NotNull OutputFormat format, @NotNull Path path,
+                 boolean compressed, @NotNull Diagnostics diagnostics) {
+    final var watcher = new Watcher(classPath, format, path, compressed, diagnostics);
+    try (final var watchService = FileSystems.getDefault().newWatchService()) {
+      for (final var folder : folders) {
+        watcher.register(watchService, folder, folder);
+      }
+      watcher.header = watcher.render(ApiListener::startApplication);
+      watcher.footer = watcher.render(ApiListener::endApplication);
+      watcher.modules = watcher.render(classPath::replayModules);
+      watcher.renderPackage("");
+      classPath.packageNames().forEach(watcher::renderPackage);
+      watcher.write();
+      diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Watching %d folder(s) for changes; press Ctrl+C to stop.",
+                         folders.size());
+      diagnostics.flush();
+      watcher.watch(watchService);
+      return 0;
+    }
+    catch (IOException e) {
+      diagnostics.report(Diagnostics.Level.ERROR, Diagnostics.Category.GENERAL, "Failed to watch for changes: %s", e);
+      return 16;
+    }
+    catch (InterruptedException | ClosedWatchServiceException e) {
+      Thread.currentThread().interrupt();
+      return 0;
+    }
+  }
+
+  private void watch(@NotNull WatchService watchService) throws IOException, InterruptedException {
+    while (true) {
+      final var changes = new TreeMap<Path, Path>();
+      final var rescans = new HashSet<Path>();
+      var key = watchService.take();
+      // Debounce: keep collecting until things have been quiet for a bit.
+      while (key != null) {
+        final var folder = this.watchKeys.get(key);
+        final var directory = (Path) key.watchable();
+        for (final var event : key.pollEvents()) {
+          if (folder == null) {
+            continue;
+          }
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            rescans.add(folder);
+            continue;
+          }
+          final var changed = directory.resolve((Path) event.context());
+          if (Files.isDirectory(changed)) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+              // Anything created in it before it got registered would be missed; so rescan.
+              this.register(watchService, folder, changed);
+              rescans.add(folder);
+            }
+          }
+          else if (changed.getFileName().toString().endsWith(".class")) {
+            changes.put(changed, folder);
+          }
+          else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && !changed.getFileName().toString().contains(".")) {
+            // Probably a deleted folder; we can't tell which class files went with it.
+            rescans.add(folder);
+          }
+        }
+        if (!key.reset()) {
+          this.watchKeys.remove(key);
+        }
+        key = watchService.poll(Watcher.DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+      }
+      final Set<String> affected = new TreeSet<>();
+      for (final var folder : rescans) {
+        affected.addAll(this.classPath.rescan(folder));
+      }
+      for (final var change : changes.entrySet()) {
+        if (!rescans.contains(change.getValue())) {
+          affected.addAll(this.classPath.update(change.getValue(), change.getKey()));
+        }
+      }
+      if (affected.isEmpty()) {
+        continue;
+      }
+      // Module info is not tied to a package; but re-rendering the modules is cheap enough to just always do it.
+      this.modules = this.render(this.classPath::replayModules);
+      affected.forEach(this::renderPackage);
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Re-rendered %d package(s) after %d change(s).",
+                              affected.size(), changes.size());
+      this.write();
+      this.diagnostics.flush();
+    }
+  }
+
+  private void write() throws IOException {
+    try (final var reference = ReferenceFile.create(this.path, this.compressed)) {
+      final var stream = reference.stream();
+      stream.write(this.header);
+      stream.write(this.modules);
+      stream.write(this.topLevelTypes);
+      for (final var section : this.packages.values()) {
+        stream.write(section);
+      }
+      stream.write(this.footer);
+      if (reference.commit()) {
+        this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Updated %s.", this.path);
+      }
+      else {
+        this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Reference file is up to date: %s", this.path);
+      }
+    }
+  }
+
+}
@@ -1,6 +1,7 @@
 package com.github.zastai.apiref.formatters;
 
 import com.github.zastai.apiref.internal.Constants;
+import com.github.zastai.apiref.model.ApiListener;
 import com.github.zastai.apiref.model.JavaApplication;
 import com.github.zastai.apiref.model.JavaClass;
 import com.github.zastai.apiref.model.JavaModule;
@@ -71,6 +72,50 @@ public abstract class CodeFormatter {
     this.writeFileFooter();
   }
 
+  /**
+   * Creates a listener that formats the public API as it is reported, for use with sources of API events (like
+   * {@link JavaApplication#replay(ApiListener)}) rather than a complete {@link JavaApplication}.
+   * <p>
+   * This produces the same output as {@link #writePublicApi(JavaApplication)}, except that the list headers and footers for modules,
+   * top-level types and packages are not written, because those lists are not known up front.
+   *
+   * @return A listener that formats the public API as it is reported.
+   */
+  @NotNull
+  protected ApiListener publicApiListener() {
+    return new ApiListener() {
+
+      @Override
+      public void endApplication() {
+        CodeFormatter.this.writeFileFooter();
+      }
+
+      @Override
+      public void endModule(@NotNull JavaModule jm) {
+        CodeFormatter.this.writeModule(jm);
+      }
+
+      @Override
+      public void endPackage(@NotNull JavaPackage jp) {
+        CodeFormatter.this.writePackage(jp);
+      }
+
+      @Override
+      public void endType(@NotNull JavaType jt) {
+        // Types inside a package get written as part of that package.
+        if (jt.parent == null && jt.parentType == null) {
+          CodeFormatter.this.writeType(jt);
+        }
+      }
+
+      @Override
+      public void startApplication() {
+        CodeFormatter.this.writeFileHeader();
+      }
+
+    };
+  }
+
   /** Increases the indentation level by 1. */
   protected void indent() {
     ++this.indentLevel;
@@ -3,6 +3,7 @@ package com.github.zastai.apiref.formatters;
 import com.github.zastai.apiref.internal.ASMUtil;
 import com.github.zastai.apiref.internal.Constants;
 import com.github.zastai.apiref.internal.WellKnown;
+import com.github.zastai.apiref.model.ApiListener;
 import com.github.zastai.apiref.model.JavaApplication;
 import com.github.zastai.apiref.model.JavaClass;
 import com.github.zastai.apiref.model.JavaModule;
@@ -48,12 +49,24 @@ public class JavaFormatter extends CodeFormatter {
     formatter.writePublicApi(application);
   }
 
+  /**
+   * Creates a listener that formats the public API it receives as Java pseudocode and writes it to the specified stream.
+   *
+   * @param out The stream to write the public API to.
+   *
+   * @return A listener formatting the public API it receives.
+   */
+  @NotNull
+  public static ApiListener publicApiListener(@NotNull PrintStream out) {
+    return new JavaFormatter(out).publicApiListener();
+  }
+
   private void maybeWriteParameterName(@NotNull MethodNode mn, int i) {
     if (mn.localVariables == null) {
       return;
     }
     final var parameterStart = (mn.access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
-    if (mn.localVariables.size() < parameterStart + i) {
+    if (mn.localVariables.size() <= parameterStart + i) {
       return;
     }
     final var parameterVariable = mn.localVariables.get(parameterStart + i);
@@ -548,8 +561,82 @@ public class JavaFormatter extends CodeFormatter {
 
   @Override
   protected void writeModuleContents(@NotNull JavaModule jm) {
+    final var module = jm.info == null ? null : jm.info.module;
+    if (jm.info != null) {
+      this.writeAnnotations(jm.info);
+    }
     this.writeIndent();
-    this.out.println("TODO");
+    if (module != null && (module.access & Opcodes.ACC_OPEN) != 0) {
+      this.out.print("open ");
+    }
+    this.out.print("module ");
+    this.out.print(jm.name);
+    this.out.print(" {");
+    this.out.println();
+    if (module != null) {
+      this.indent();
+      if (module.requires != null) {
+        for (final var requires : module.requires) {
+          // Implicit dependencies (like the one on java.base) are not part of the declaration.
+          if ((requires.access & (Opcodes.ACC_MANDATED | Opcodes.ACC_SYNTHETIC)) != 0) {
+            continue;
+          }
+          this.writeIndent();
+          this.out.print("requires ");
+          if ((requires.access & Opcodes.ACC_TRANSITIVE) != 0) {
+            this.out.print("transitive ");
+          }
+          if ((requires.access & Opcodes.ACC_STATIC_PHASE) != 0) {
+            this.out.print("static ");
+          }
+          this.out.print(requires.module);
+          this.out.println(';');
+        }
+      }
+      if (module.exports != null) {
+        module.exports.forEach(exports -> this.writeModulePackage("exports", exports.packaze, exports.modules));
+      }
+      if (module.opens != null) {
+        module.opens.forEach(opens -> this.writeModulePackage("opens", opens.packaze, opens.modules));
+      }
+      if (module.uses != null) {
+        for (final var service : module.uses) {
+          this.writeIndent();
+          this.out.print("uses ");
+          this.writeTypeName(Type.getObjectType(service));
+          this.out.println(';');
+        }
+      }
+      if (module.provides != null) {
+        for (final var provides : module.provides) {
+          this.writeIndent();
+          this.out.print("provides ");
+          this.writeTypeName(Type.getObjectType(provides.service));
+          var separator = " with ";
+          for (final var provider : provides.providers) {
+            this.out.print(separator);
+            this.writeTypeName(Type.getObjectType(provider));
+            separator = ", ";
+          }
+          this.out.println(';');
+        }
+      }
+      this.outdent();
+    }
+    this.writeIndent();
+    this.out.println('}');
+  }
+
+  private void writeModulePackage(@NotNull String directive, @NotNull String packageName, @Nullable List<String> modules) {
+    this.writeIndent();
+    this.out.print(directive);
+    this.out.print(' ');
+    this.out.print(packageName.replace('/', '.'));
+    if (modules != null && !modules.isEmpty()) {
+      this.out.print(" to ");
+      this.out.print(String.join(", ", modules));
+    }
+    this.out.println(';');
   }
 
   @Override
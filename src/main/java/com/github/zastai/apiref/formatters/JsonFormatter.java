@@ -0,0 +1,667 @@
+package com.github.zastai.apiref.formatters;
+
+import com.github.zastai.apiref.internal.JsonWriter;
+import com.github.zastai.apiref.internal.WellKnown;
+import com.github.zastai.apiref.model.ApiListener;
+import com.github.zastai.apiref.model.JavaApplication;
+import com.github.zastai.apiref.model.JavaClass;
+import com.github.zastai.apiref.model.JavaModule;
+import com.github.zastai.apiref.model.JavaPackage;
+import com.github.zastai.apiref.signatures.ClassSignature;
+import com.github.zastai.apiref.signatures.FieldSignature;
+import com.github.zastai.apiref.signatures.FormalTypeParameter;
+import com.github.zastai.apiref.signatures.MethodSignature;
+import com.github.zastai.apiref.signatures.TypeReference;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A class for formatting a Java application's (public) API as JSON Lines.
+ * <p>
+ * Every module, package and top-level class is written as a single JSON object on its own line, identified by its {@code kind}
+ * property. Classes are emitted as they are visited, so memory use does not depend on the size of the API.
+ */
+public class JsonFormatter extends CodeFormatter {
+
+  /** The access flags that correspond to a Java keyword on a class declaration. */
+  private static final int CLASS_MODIFIERS = Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC
+    | Opcodes.ACC_FINAL | Opcodes.ACC_ABSTRACT;
+
+  /** The access flags that correspond to a Java keyword on a field declaration. */
+  private static final int FIELD_MODIFIERS = Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC
+    | Opcodes.ACC_FINAL | Opcodes.ACC_VOLATILE | Opcodes.ACC_TRANSIENT;
+
+  /** The access flags that correspond to a Java keyword on a method declaration. */
+  private static final int METHOD_MODIFIERS = Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC
+    | Opcodes.ACC_FINAL | Opcodes.ACC_ABSTRACT | Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_NATIVE | Opcodes.ACC_STRICT;
+
+  /** The version of the JSON structure, to be bumped on incompatible changes. */
+  private static final int VERSION = 1;
+
+  /** The JSON writer used for output. */
+  @NotNull
+  protected final JsonWriter json;
+
+  /**
+   * Creates a new JSON formatter.
+   *
+   * @param out The stream that should receive the formatted output.
+   */
+  protected JsonFormatter(@NotNull PrintStream out) {
+    super(out);
+    this.json = new JsonWriter(out);
+  }
+
+  /**
+   * Formats the public API for a Java application as JSON Lines and writes it to the specified stream.
+   *
+   * @param out         The stream to write the public API to.
+   * @param application The application whose public API should be formatted.
+   */
+  public static void formatPublicApi(@NotNull PrintStream out, @NotNull JavaApplication application) {
+    final var formatter = new JsonFormatter(out);
+    formatter.writePublicApi(application);
+  }
+
+  /**
+   * Creates a listener that formats the public API it receives as JSON Lines and writes it to the specified stream.
+   *
+   * @param out The stream to write the public API to.
+   *
+   * @return A listener formatting the public API it receives.
+   */
+  @NotNull
+  public static ApiListener publicApiListener(@NotNull PrintStream out) {
+    return new JsonFormatter(out).publicApiListener();
+  }
+
+  private static void appendTypeName(@NotNull StringBuilder sb, @NotNull TypeReference type) {
+    if (type.qualifier != null) {
+      JsonFormatter.appendTypeName(sb, type.qualifier);
+      sb.append('.');
+    }
+    if (type.isTypeVariable || type.qualifier != null) {
+      sb.append(type.name);
+    }
+    else {
+      sb.append(Type.getType(type.name).getClassName());
+    }
+    if (type.typeArguments != null) {
+      sb.append('<');
+      var first = true;
+      for (final var typeArgument : type.typeArguments) {
+        if (first) {
+          first = false;
+        }
+        else {
+          sb.append(", ");
+        }
+        if (typeArgument == null) {
+          sb.append('?');
+          continue;
+        }
+        if (typeArgument.wildcard != null) {
+          final char wildcard = typeArgument.wildcard;
+          sb.append(switch (wildcard) {
+            case '-' -> "? super ";
+            case '+' -> "? extends ";
+            default -> throw new IllegalArgumentException("Unsupported type argument wildcard (%c) in signature.".formatted(wildcard));
+          });
+        }
+        JsonFormatter.appendTypeName(sb, typeArgument);
+      }
+      sb.append('>');
+    }
+    sb.append("[]".repeat(type.arrayDimensions));
+  }
+
+  private static int classAccess(@NotNull ClassNode cn) {
+    // For a nested class, the InnerClasses entry has the access flags as declared in the source (e.g. including 'static').
+    if (cn.innerClasses != null) {
+      for (final var innerClass : cn.innerClasses) {
+        if (innerClass.name.equals(cn.name)) {
+          return innerClass.access;
+        }
+      }
+    }
+    return cn.access;
+  }
+
+  @NotNull
+  private static String declaration(int access) {
+    if ((access & Opcodes.ACC_ANNOTATION) != 0) {
+      return "annotation";
+    }
+    if ((access & Opcodes.ACC_INTERFACE) != 0) {
+      return "interface";
+    }
+    if ((access & Opcodes.ACC_ENUM) != 0) {
+      return "enum";
+    }
+    if ((access & Opcodes.ACC_RECORD) != 0) {
+      return "record";
+    }
+    return "class";
+  }
+
+  @Nullable
+  private static String parameterName(@NotNull MethodNode mn, @NotNull Type @NotNull [] parameterTypes, int i) {
+    if (mn.parameters != null && mn.parameters.size() == parameterTypes.length) {
+      return mn.parameters.get(i).name;
+    }
+    if (mn.localVariables != null) {
+      var slot = (mn.access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+      for (var j = 0; j < i; ++j) {
+        slot += parameterTypes[j].getSize();
+      }
+      for (final var localVariable : mn.localVariables) {
+        if (localVariable.index == slot) {
+          return localVariable.name;
+        }
+      }
+    }
+    return null;
+  }
+
+  @NotNull
+  private static String typeName(@NotNull TypeReference type) {
+    final var sb = new StringBuilder();
+    JsonFormatter.appendTypeName(sb, type);
+    return sb.toString();
+  }
+
+  @NotNull
+  private static String typeName(@NotNull String internalName) {
+    return Type.getObjectType(internalName).getClassName();
+  }
+
+  private void writeAccess(int access, int keywords) {
+    this.json.name("access").value(access);
+    this.json.name("modifiers").beginArray();
+    if ((access & keywords & Opcodes.ACC_PUBLIC) != 0) {
+      this.json.value("public");
+    }
+    if ((access & keywords & Opcodes.ACC_PROTECTED) != 0) {
+      this.json.value("protected");
+    }
+    if ((access & keywords & Opcodes.ACC_PRIVATE) != 0) {
+      this.json.value("private");
+    }
+    if ((access & keywords & Opcodes.ACC_STATIC) != 0) {
+      this.json.value("static");
+    }
+    if ((access & keywords & Opcodes.ACC_FINAL) != 0) {
+      this.json.value("final");
+    }
+    if ((access & keywords & Opcodes.ACC_ABSTRACT) != 0) {
+      this.json.value("abstract");
+    }
+    if ((access & keywords & Opcodes.ACC_SYNCHRONIZED) != 0) {
+      this.json.value("synchronized");
+    }
+    if ((access & keywords & Opcodes.ACC_VOLATILE) != 0) {
+      this.json.value("volatile");
+    }
+    if ((access & keywords & Opcodes.ACC_TRANSIENT) != 0) {
+      this.json.value("transient");
+    }
+    if ((access & keywords & Opcodes.ACC_NATIVE) != 0) {
+      this.json.value("native");
+    }
+    if ((access & keywords & Opcodes.ACC_STRICT) != 0) {
+      this.json.value("strictfp");
+    }
+    this.json.endArray();
+    if ((access & Opcodes.ACC_DEPRECATED) != 0) {
+      this.json.name("deprecated").value(true);
+    }
+  }
+
+  @Override
+  protected void writeAnnotation(@NotNull AnnotationNode an) {
+    this.json.beginObject();
+    this.json.name("type").value(Type.getType(an.desc).getClassName());
+    if (an.values != null && !an.values.isEmpty()) {
+      this.json.name("values").beginObject();
+      for (var i = 0; i + 1 < an.values.size(); i += 2) {
+        this.json.name(String.valueOf(an.values.get(i)));
+        final var value = an.values.get(i + 1);
+        if (value instanceof List<?> list) {
+          this.json.beginArray();
+          list.forEach(this::writeAnnotationValue);
+          this.json.endArray();
+        }
+        else {
+          this.writeAnnotationValue(value);
+        }
+      }
+      this.json.endObject();
+    }
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeAnnotations(@NotNull ClassNode cn) {
+    this.writeAnnotations(cn.visibleAnnotations, cn.invisibleAnnotations);
+  }
+
+  @Override
+  protected void writeAnnotations(@Nullable Collection<AnnotationNode> annotations) {
+    if (annotations != null) {
+      annotations.stream().filter(this::retain).forEach(this::writeAnnotation);
+    }
+  }
+
+  @Override
+  protected void writeAnnotations(@NotNull FieldNode fn) {
+    this.writeAnnotations(fn.visibleAnnotations, fn.invisibleAnnotations);
+  }
+
+  @Override
+  protected void writeAnnotations(@NotNull MethodNode mn) {
+    this.writeAnnotations(mn.visibleAnnotations, mn.invisibleAnnotations);
+  }
+
+  private void writeAnnotations(@Nullable Collection<AnnotationNode> visible, @Nullable Collection<AnnotationNode> invisible) {
+    final var anyVisible = visible != null && visible.stream().anyMatch(this::retain);
+    final var anyInvisible = invisible != null && invisible.stream().anyMatch(this::retain);
+    if (anyVisible || anyInvisible) {
+      this.json.name("annotations").beginArray();
+      this.writeAnnotations(visible);
+      this.writeAnnotations(invisible);
+      this.json.endArray();
+    }
+  }
+
+  @Override
+  protected void writeClass(@NotNull JavaClass jc) {
+    final var previousClass = this.currentClass;
+    this.currentClass = jc;
+    this.json.beginObject();
+    this.json.name("kind").value("class");
+    this.writeClassHeader(jc);
+    this.writeClassContents(jc);
+    this.writeClassFooter(jc);
+    this.json.endObject();
+    this.currentClass = previousClass;
+  }
+
+  @Override
+  protected void writeClassHeader(@NotNull JavaClass jc) {
+    final var cn = jc.contents;
+    final var access = JsonFormatter.classAccess(cn);
+    this.json.name("name").value(jc.name);
+    this.json.name("fullName").value(JsonFormatter.typeName(jc.fullName));
+    if (jc.parent.parent != null) {
+      this.json.name("package").value(jc.parent.parent.name.replace('/', '.'));
+    }
+    this.json.name("version").value(jc.version);
+    this.json.name("runtime").value(jc.runtimeVersion());
+    this.json.name("declaration").value(JsonFormatter.declaration(access));
+    this.writeAccess(access, JsonFormatter.CLASS_MODIFIERS);
+    if (cn.signature != null) {
+      final var signature = ClassSignature.decode(cn.signature);
+      this.writeTypeParameters(signature.typeParameters);
+      if (signature.baseClass != null && (access & Opcodes.ACC_INTERFACE) == 0) {
+        this.json.name("superclass").value(JsonFormatter.typeName(signature.baseClass));
+      }
+      this.writeTypeNames("interfaces", signature.baseInterfaces);
+    }
+    else {
+      if (cn.superName != null && (access & Opcodes.ACC_INTERFACE) == 0) {
+        this.json.name("superclass").value(JsonFormatter.typeName(cn.superName));
+      }
+      if (cn.interfaces != null && !cn.interfaces.isEmpty()) {
+        this.json.name("interfaces").beginArray();
+        cn.interfaces.forEach(name -> this.json.value(JsonFormatter.typeName(name)));
+        this.json.endArray();
+      }
+    }
+    this.json.optionalProperty("signature", cn.signature);
+    this.writeAnnotations(cn);
+  }
+
+  @Override
+  protected void writeClassName(@NotNull Type type) {
+    this.json.beginObject().name("class").value(type.getClassName()).endObject();
+  }
+
+  @Override
+  protected void writeConstructorListFooter(@NotNull Collection<MethodNode> list) {
+    this.json.endArray();
+  }
+
+  @Override
+  protected void writeConstructorListHeader(@NotNull Collection<MethodNode> list) {
+    this.json.name("constructors").beginArray();
+  }
+
+  @Override
+  protected void writeEnumValue(@NotNull String descriptor, @NotNull String member) {
+    this.json.beginObject().name("enum").value(Type.getType(descriptor).getClassName()).name("value").value(member).endObject();
+  }
+
+  @Override
+  protected void writeField(@NotNull FieldNode fn) {
+    this.json.beginObject();
+    this.json.name("name").value(fn.name);
+    this.writeAccess(fn.access, JsonFormatter.FIELD_MODIFIERS);
+    if ((fn.access & Opcodes.ACC_ENUM) != 0) {
+      this.json.name("enumConstant").value(true);
+    }
+    if (fn.signature != null) {
+      this.json.name("type").value(JsonFormatter.typeName(FieldSignature.decode(fn.signature).type));
+    }
+    else {
+      this.json.name("type").value(Type.getType(fn.desc).getClassName());
+    }
+    this.json.name("descriptor").value(fn.desc);
+    this.json.optionalProperty("signature", fn.signature);
+    this.writeAnnotations(fn);
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeFieldListFooter(@NotNull Collection<FieldNode> list) {
+    this.json.endArray();
+  }
+
+  @Override
+  protected void writeFieldListHeader(@NotNull Collection<FieldNode> list) {
+    this.json.name("fields").beginArray();
+  }
+
+  @Override
+  protected void writeFileHeader() {
+    this.json.beginObject().name("kind").value("reference").name("version").value(JsonFormatter.VERSION).endObject();
+  }
+
+  @Override
+  protected void writeInlineComment(@NotNull String comment) {
+    // Only used for annotation values we cannot represent; emit them as a string instead.
+    this.json.value(comment);
+  }
+
+  @Override
+  protected void writeLineComment(@NotNull String comment) {
+    // There are no comments in JSON.
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Boolean literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Byte literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Character literal) {
+    this.json.value(literal.toString());
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Double literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Float literal) {
+    // Go via the string form, to avoid float-to-double widening artifacts (0.1F should not become 0.10000000149011612).
+    this.json.value(Double.parseDouble(literal.toString()));
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Integer literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Long literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull Short literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeLiteral(@NotNull String literal) {
+    this.json.value(literal);
+  }
+
+  @Override
+  protected void writeMethod(@NotNull MethodNode mn) {
+    this.json.beginObject();
+    this.json.name("name").value(mn.name);
+    this.writeAccess(mn.access, JsonFormatter.METHOD_MODIFIERS);
+    if ((mn.access & Opcodes.ACC_VARARGS) != 0) {
+      this.json.name("varargs").value(true);
+    }
+    final var descriptorParameterTypes = Type.getArgumentTypes(mn.desc);
+    if (mn.signature != null) {
+      final var signature = MethodSignature.decode(mn.signature);
+      this.writeTypeParameters(signature.typeParameters);
+      this.json.name("returnType").value(JsonFormatter.typeName(signature.returnType));
+      if (signature.parameterTypes != null) {
+        // The descriptor can include synthetic leading parameters (e.g. for the constructor of an inner class) that are not in the
+        // signature.
+        final var offset = Math.max(0, descriptorParameterTypes.length - signature.parameterTypes.length);
+        this.json.name("parameters").beginArray();
+        for (var i = 0; i < signature.parameterTypes.length; ++i) {
+          final var name = offset + i < descriptorParameterTypes.length
+            ? JsonFormatter.parameterName(mn, descriptorParameterTypes, offset + i)
+            : null;
+          this.writeParameter(JsonFormatter.typeName(signature.parameterTypes[i]), name);
+        }
+        this.json.endArray();
+      }
+      this.writeTypeNames("throws", signature.thrownTypes);
+    }
+    else {
+      this.json.name("returnType").value(Type.getReturnType(mn.desc).getClassName());
+      if (descriptorParameterTypes.length > 0) {
+        this.json.name("parameters").beginArray();
+        for (var i = 0; i < descriptorParameterTypes.length; ++i) {
+          final var name = JsonFormatter.parameterName(mn, descriptorParameterTypes, i);
+          this.writeParameter(descriptorParameterTypes[i].getClassName(), name);
+        }
+        this.json.endArray();
+      }
+      if (mn.exceptions != null && !mn.exceptions.isEmpty()) {
+        this.json.name("throws").beginArray();
+        mn.exceptions.forEach(name -> this.json.value(JsonFormatter.typeName(name)));
+        this.json.endArray();
+      }
+    }
+    this.json.name("descriptor").value(mn.desc);
+    this.json.optionalProperty("signature", mn.signature);
+    this.writeAnnotations(mn);
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeMethodListFooter(@NotNull Collection<MethodNode> list) {
+    this.json.endArray();
+  }
+
+  @Override
+  protected void writeMethodListHeader(@NotNull Collection<MethodNode> list) {
+    this.json.name("methods").beginArray();
+  }
+
+  @Override
+  protected void writeModule(@NotNull JavaModule jm) {
+    this.json.beginObject();
+    this.json.name("kind").value("module");
+    this.writeModuleHeader(jm);
+    this.writeModuleContents(jm);
+    this.writeModuleFooter(jm);
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeModuleContents(@NotNull JavaModule jm) {
+    this.json.name("name").value(jm.name);
+    if (jm.info == null) {
+      return;
+    }
+    this.writeAnnotations(jm.info);
+    final var module = jm.info.module;
+    if (module == null) {
+      return;
+    }
+    this.json.name("access").value(module.access);
+    this.json.optionalProperty("version", module.version);
+    if (module.requires != null && !module.requires.isEmpty()) {
+      this.json.name("requires").beginArray();
+      for (final var requires : module.requires) {
+        this.json.beginObject();
+        this.json.name("module").value(requires.module);
+        this.json.name("access").value(requires.access);
+        this.json.optionalProperty("version", requires.version);
+        this.json.endObject();
+      }
+      this.json.endArray();
+    }
+    if (module.exports != null && !module.exports.isEmpty()) {
+      this.json.name("exports").beginArray();
+      module.exports.forEach(exports -> this.writeModulePackage(exports.packaze, exports.modules));
+      this.json.endArray();
+    }
+    if (module.opens != null && !module.opens.isEmpty()) {
+      this.json.name("opens").beginArray();
+      module.opens.forEach(opens -> this.writeModulePackage(opens.packaze, opens.modules));
+      this.json.endArray();
+    }
+    if (module.uses != null && !module.uses.isEmpty()) {
+      this.json.name("uses").beginArray();
+      module.uses.forEach(service -> this.json.value(JsonFormatter.typeName(service)));
+      this.json.endArray();
+    }
+    if (module.provides != null && !module.provides.isEmpty()) {
+      this.json.name("provides").beginArray();
+      for (final var provides : module.provides) {
+        this.json.beginObject();
+        this.json.name("service").value(JsonFormatter.typeName(provides.service));
+        this.json.name("providers").beginArray();
+        provides.providers.forEach(provider -> this.json.value(JsonFormatter.typeName(provider)));
+        this.json.endArray();
+        this.json.endObject();
+      }
+      this.json.endArray();
+    }
+  }
+
+  private void writeModulePackage(@NotNull String packageName, @Nullable List<String> modules) {
+    this.json.beginObject();
+    this.json.name("package").value(packageName.replace('/', '.'));
+    if (modules != null && !modules.isEmpty()) {
+      this.json.name("to").beginArray();
+      modules.forEach(this.json::value);
+      this.json.endArray();
+    }
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeNestedClassListFooter(@NotNull Collection<JavaClass> list) {
+    this.json.endArray();
+  }
+
+  @Override
+  protected void writeNestedClassListHeader(@NotNull Collection<JavaClass> list) {
+    this.json.name("nestedClasses").beginArray();
+  }
+
+  @Override
+  protected void writeNull() {
+    this.json.nullValue();
+  }
+
+  @Override
+  protected void writePackage(@NotNull JavaPackage jp) {
+    this.json.beginObject();
+    this.json.name("kind").value("package");
+    this.json.name("name").value(jp.name.replace('/', '.'));
+    this.writePackageHeader(jp);
+    this.json.endObject();
+    this.currentPackage = jp;
+    this.writePackageContents(jp);
+    this.currentPackage = null;
+    this.writePackageFooter(jp);
+  }
+
+  @Override
+  protected void writePackageHeader(@NotNull JavaPackage jp) {
+    if (jp.info != null) {
+      this.writeAnnotations(jp.info);
+    }
+  }
+
+  private void writeParameter(@NotNull String type, @Nullable String name) {
+    this.json.beginObject();
+    this.json.name("type").value(type);
+    this.json.optionalProperty("name", name);
+    this.json.endObject();
+  }
+
+  @Override
+  protected void writeTypeName(@NotNull Type type) {
+    this.json.value(type.getClassName());
+  }
+
+  private void writeTypeNames(@NotNull String name, @NotNull TypeReference @Nullable [] types) {
+    if (types == null || types.length == 0) {
+      return;
+    }
+    this.json.name(name).beginArray();
+    for (final var type : types) {
+      this.json.value(JsonFormatter.typeName(type));
+    }
+    this.json.endArray();
+  }
+
+  private void writeTypeParameters(@NotNull FormalTypeParameter @Nullable [] typeParameters) {
+    if (typeParameters == null || typeParameters.length == 0) {
+      return;
+    }
+    this.json.name("typeParameters").beginArray();
+    for (final var typeParameter : typeParameters) {
+      this.json.beginObject();
+      this.json.name("name").value(typeParameter.name);
+      var bound = typeParameter.classBound;
+      if (bound != null && !bound.isTypeVariable && WellKnown.Descriptors.OBJECT.equals(bound.name)) {
+        bound = null;
+      }
+      if (bound != null || typeParameter.interfaceBounds != null) {
+        this.json.name("bounds").beginArray();
+        if (bound != null) {
+          this.json.value(JsonFormatter.typeName(bound));
+        }
+        if (typeParameter.interfaceBounds != null) {
+          for (final var interfaceBound : typeParameter.interfaceBounds) {
+            this.json.value(JsonFormatter.typeName(interfaceBound));
+          }
+        }
+        this.json.endArray();
+      }
+      this.json.endObject();
+    }
+    this.json.endArray();
+  }
+
+}
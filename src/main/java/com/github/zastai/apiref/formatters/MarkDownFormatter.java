@@ -1,5 +1,6 @@
 package com.github.zastai.apiref.formatters;
 
+import com.github.zastai.apiref.model.ApiListener;
 import com.github.zastai.apiref.model.JavaApplication;
 import com.github.zastai.apiref.model.JavaClass;
 import com.github.zastai.apiref.model.JavaPackage;
@@ -30,6 +31,18 @@ public class MarkDownFormatter extends JavaFormatter {
     formatter.writePublicApi(application);
   }
 
+  /**
+   * Creates a listener that formats the public API it receives as MarkDown (with Java pseudocode blocks) and writes it to the specified stream.
+   *
+   * @param out The stream to write the public API to.
+   *
+   * @return A listener formatting the public API it receives.
+   */
+  @NotNull
+  public static ApiListener publicApiListener(@NotNull PrintStream out) {
+    return new MarkDownFormatter(out).publicApiListener();
+  }
+
   @Override
   protected void writeFileHeader() {
     this.out.println("# Java API Reference");
@@ -0,0 +1,104 @@
+package com.github.zastai.apiref.formatters;
+
+import com.github.zastai.apiref.model.ApiListener;
+import com.github.zastai.apiref.model.JavaApplication;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/** The supported output formats for an API reference. */
+public enum OutputFormat {
+
+  /** Java pseudocode (see {@link JavaFormatter}). */
+  JAVA(JavaFormatter::formatPublicApi, JavaFormatter::publicApiListener),
+
+  /** JSON Lines (see {@link JsonFormatter}). */
+  JSON(JsonFormatter::formatPublicApi, JsonFormatter::publicApiListener),
+
+  /** MarkDown with Java pseudocode blocks (see {@link MarkDownFormatter}). */
+  MARKDOWN(MarkDownFormatter::formatPublicApi, MarkDownFormatter::publicApiListener);
+
+  @NotNull
+  private final BiConsumer<PrintStream, JavaApplication> formatter;
+
+  @NotNull
+  private final Function<PrintStream, ApiListener> listenerFactory;
+
+  OutputFormat(@NotNull BiConsumer<PrintStream, JavaApplication> formatter,
+               @NotNull Function<PrintStream, ApiListener> listenerFactory) {
+    this.formatter = formatter;
+    this.listenerFactory = listenerFactory;
+  }
+
+  /**
+   * Gets the name of this format, as used on the command line.
+   *
+   * @return The name of this format.
+   */
+  @NotNull
+  public String formatName() {
+    return this.name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Describes the names of all supported formats, for use in diagnostics.
+   *
+   * @return A description of the names of all supported formats (e.g. "'a', 'b' or 'c'").
+   */
+  @NotNull
+  public static String formatNames() {
+    final var sb = new StringBuilder();
+    final var values = OutputFormat.values();
+    for (var i = 0; i < values.length; ++i) {
+      if (i > 0) {
+        sb.append(i == values.length - 1 ? " or " : ", ");
+      }
+      sb.append('\'').append(values[i].formatName()).append('\'');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Formats the public API for a Java application in this format and writes it to the specified stream.
+   *
+   * @param out         The stream to write the public API to.
+   * @param application The application whose public API should be formatted.
+   */
+  public void formatPublicApi(@NotNull PrintStream out, @NotNull JavaApplication application) {
+    this.formatter.accept(out, application);
+  }
+
+  /**
+   * Looks up a format by name.
+   *
+   * @param name The name of the format (case-insensitive).
+   *
+   * @return The format with the specified name, or {@code null} if there is no such format.
+   */
+  @Nullable
+  public static OutputFormat fromName(@NotNull String name) {
+    for (final var format : OutputFormat.values()) {
+      if (format.formatName().equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates a listener that formats the public API it receives in this format and writes it to the specified stream.
+   *
+   * @param out The stream to write the public API to.
+   *
+   * @return A listener formatting the public API it receives.
+   */
+  @NotNull
+  public ApiListener publicApiListener(@NotNull PrintStream out) {
+    return this.listenerFactory.apply(out);
+  }
+
+}
@@ -2,16 +2,12 @@ package com.github.zastai.apiref.internal;
 
 import org.jetbrains.annotations.NotNull;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-
 /** Interface providing ASM-related utility methods. */
 public interface ASMUtil {
 
@@ -93,20 +89,48 @@ public interface ASMUtil {
   }
 
   /**
-   * Reads a class file into an ASM class node object.
+   * Parses class file contents into an ASM class node object.
    *
-   * @param file The class file to read.
+   * @param contents The contents of a class file.
    *
    * @return The ASM {@link ClassNode} representing the class file's contents.
+   */
+  @NotNull
+  static ClassNode readClass(byte @NotNull [] contents) {
+    return ASMUtil.readClass(contents, contents.length);
+  }
+
+  /**
+   * Parses class file contents into an ASM class node object.
+   * <p>
+   * This allows parsing directly from a (reused) buffer, like a {@link ReadBuffer}; the class node does not reference the buffer.
+   *
+   * @param contents A buffer starting with the contents of a class file.
+   * @param length   The length of the class file.
    *
-   * @throws IOException When {@code file} could not be read from.
+   * @return The ASM {@link ClassNode} representing the class file's contents.
    */
   @NotNull
-  static ClassNode readClassFile(@NotNull Path file) throws IOException {
+  static ClassNode readClass(byte @NotNull [] contents, int length) {
     final ClassNode cn = new ClassNode(Constants.API_VERSION);
-    try (InputStream is = Files.newInputStream(file)) {
-      new ClassReader(is).accept(cn, ClassReader.EXPAND_FRAMES);
-    }
+    new ClassReader(contents, 0, length).accept(cn, ClassReader.EXPAND_FRAMES);
+    return cn;
+  }
+
+  /**
+   * Parses class file contents into an ASM class node object, using canonical instances for its class and member names and
+   * descriptors.
+   *
+   * @param contents A buffer starting with the contents of a class file.
+   * @param length   The length of the class file.
+   * @param strings  The string table to get the canonical instances from.
+   *
+   * @return The ASM {@link ClassNode} representing the class file's contents.
+   */
+  @NotNull
+  static ClassNode readClass(byte @NotNull [] contents, int length, @NotNull StringTable strings) {
+    final ClassNode cn = new ClassNode(Constants.API_VERSION);
+    new ClassReader(contents, 0, length).accept(new StringTable.Interner(cn, strings), ClassReader.EXPAND_FRAMES);
     return cn;
   }
 
@@ -123,4 +147,19 @@ public interface ASMUtil {
     return slash >= 0 ? name.substring(slash + 1) : name;
   }
 
+  /**
+   * Serializes an ASM class node object back into class file contents.
+   * <p>
+   * No frames or maximums are recomputed, so {@link #readClass(byte[])} yields an equivalent class node for the result.
+   *
+   * @param cn The class node to serialize.
+   *
+   * @return The class file contents.
+   */
+  static byte @NotNull [] writeClass(@NotNull ClassNode cn) {
+    final var cw = new ClassWriter(0);
+    cn.accept(cw);
+    return cw.toByteArray();
+  }
+
 }
@@ -0,0 +1,214 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An output stream that gzip-compresses its contents on a separate thread.
+ * <p>
+ * Two buffers are used: while one is being filled by the writer, the other is being compressed, so that compression overlaps with
+ * the generation of the data instead of adding to it.
+ */
+public final class AsyncGZipOutputStream extends OutputStream {
+
+  /** The default size for each of the two buffers. */
+  private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+  /** A filled buffer, handed off to the compressor thread. */
+  private record Chunk(byte @Nullable [] buffer, int length) {
+  }
+
+  /** The marker chunk signaling the end of the data. */
+  private static final Chunk END = new Chunk(null, 0);
+
+  /** The buffer currently being filled. */
+  private byte @Nullable [] buffer;
+
+  /** Indicates whether this stream has been closed. */
+  private boolean closed = false;
+
+  /** The thread doing the compression. */
+  @NotNull
+  private final Thread compressor;
+
+  /** The number of bytes in {@link #buffer}. */
+  private int count = 0;
+
+  /** The first error encountered by the compressor thread, if any. */
+  @Nullable
+  private volatile Throwable failure;
+
+  /** Buffers that have been compressed, and are available for reuse. */
+  @NotNull
+  private final BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(2);
+
+  /** Buffers waiting to be compressed. */
+  @NotNull
+  private final BlockingQueue<Chunk> pendingChunks = new ArrayBlockingQueue<>(2);
+
+  /**
+   * Creates a new asynchronously compressing output stream, using the default buffer size.
+   *
+   * @param out The stream to write the compressed data to; it will be closed when this stream is closed.
+   */
+  public AsyncGZipOutputStream(@NotNull OutputStream out) {
+    this(out, AsyncGZipOutputStream.DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Creates a new asynchronously compressing output stream.
+   *
+   * @param out        The stream to write the compressed data to; it will be closed when this stream is closed.
+   * @param bufferSize The size to use for each of the two buffers.
+   */
+  public AsyncGZipOutputStream(@NotNull OutputStream out, int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("The buffer size must be positive.");
+    }
+    this.buffer = new byte[bufferSize];
+    this.freeBuffers.add(new byte[bufferSize]);
+    this.compressor = new Thread(() -> this.compress(out), "gzip-compressor");
+    this.compressor.setDaemon(true);
+    this.compressor.start();
+  }
+
+  private void checkFailure() throws IOException {
+    final var failure = this.failure;
+    if (failure != null) {
+      // Always wrap: the same failure can be reported by both a write and the subsequent close.
+      throw new IOException("Compression failed.", failure);
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("Stream closed.");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    try {
+      this.handOff();
+      this.pendingChunks.put(AsyncGZipOutputStream.END);
+      this.compressor.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while finishing compression.");
+    }
+    finally {
+      this.closed = true;
+      this.buffer = null;
+    }
+    this.checkFailure();
+  }
+
+  private void compress(@NotNull OutputStream out) {
+    OutputStream gzip = out;
+    try {
+      gzip = new GZIPOutputStream(out, AsyncGZipOutputStream.DEFAULT_BUFFER_SIZE);
+    }
+    catch (Throwable t) {
+      this.failure = t;
+    }
+    try {
+      while (true) {
+        final var chunk = this.pendingChunks.take();
+        if (chunk == AsyncGZipOutputStream.END) {
+          break;
+        }
+        // After a failure, keep draining (without writing) so that the writer never blocks.
+        if (this.failure == null) {
+          try {
+            gzip.write(chunk.buffer, 0, chunk.length);
+          }
+          catch (Throwable t) {
+            this.failure = t;
+          }
+        }
+        this.freeBuffers.put(Objects.requireNonNull(chunk.buffer));
+      }
+    }
+    catch (InterruptedException e) {
+      this.failure = e;
+    }
+    finally {
+      try {
+        gzip.close();
+      }
+      catch (Throwable t) {
+        if (this.failure == null) {
+          this.failure = t;
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands off any buffered data to the compressor thread; this does not wait for it to be compressed.
+   *
+   * @throws IOException When the stream has been closed, or compression has failed.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.checkOpen();
+    try {
+      this.handOff();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while handing off data for compression.");
+    }
+    this.checkFailure();
+  }
+
+  private void handOff() throws InterruptedException {
+    if (this.count == 0) {
+      return;
+    }
+    this.pendingChunks.put(new Chunk(this.buffer, this.count));
+    this.buffer = this.freeBuffers.take();
+    this.count = 0;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    this.checkOpen();
+    final var buffer = Objects.requireNonNull(this.buffer);
+    if (this.count == buffer.length) {
+      this.flush();
+    }
+    Objects.requireNonNull(this.buffer)[this.count++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte @NotNull [] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    this.checkOpen();
+    while (len > 0) {
+      var buffer = Objects.requireNonNull(this.buffer);
+      if (this.count == buffer.length) {
+        this.flush();
+        buffer = Objects.requireNonNull(this.buffer);
+      }
+      final var n = Math.min(len, buffer.length - this.count);
+      System.arraycopy(b, off, buffer, this.count, n);
+      this.count += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+}
@@ -0,0 +1,218 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An on-disk, content-addressed cache of extracted class information, shared between processes.
+ * <p>
+ * Entries are keyed by the {@linkplain Fingerprints#forContents(byte[]) fingerprint} of the original class file. Each entry is itself
+ * a class file, holding only what is needed to document the class: method bodies are reduced to the local variable table (which
+ * provides parameter names), and the members of rejected classes are omitted entirely. Reading such an entry is much cheaper than
+ * parsing the original class file.
+ * <p>
+ * The cache is safe for concurrent use, by multiple threads and by multiple processes: entries are written to a temporary file
+ * first and then atomically renamed into place, so readers never see a partial entry. As entries are immutable (the same key
+ * always maps to the same contents), concurrent writers of the same entry do not conflict. When the cache grows beyond its maximum
+ * size, the least recently used entries (based on their modification time, which is updated on use) are deleted when it is closed.
+ */
+public final class ClassCache implements AutoCloseable {
+
+  /** The version of the entry format; entries written for a different version are ignored. */
+  private static final String FORMAT_VERSION = "v1";
+
+  /** The age after which temporary files are assumed to be left over from a crashed process. */
+  @NotNull
+  private static final Duration STALE_AGE = Duration.ofHours(1);
+
+  /** The folder containing the entries. */
+  @NotNull
+  private final Path folder;
+
+  /** The maximum size of the cache, in bytes. */
+  private final long maxSize;
+
+  /** Indicates whether entries were added since this cache was opened (and so eviction may be needed). */
+  @NotNull
+  private final AtomicBoolean modified = new AtomicBoolean();
+
+  /**
+   * Opens a class cache.
+   *
+   * @param folder  The folder containing the cache; it is created if needed.
+   * @param maxSize The maximum size of the cache, in bytes.
+   *
+   * @throws IOException When the cache folder could not be created.
+   */
+  public ClassCache(@NotNull Path folder, long maxSize) throws IOException {
+    this.folder = Files.createDirectories(folder.resolve(ClassCache.FORMAT_VERSION));
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Evicts least recently used entries when the cache has grown beyond its maximum size; also removes temporary files left behind
+   * by processes that did not complete normally.
+   *
+   * @throws IOException When the contents of the cache folder could not be listed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!this.modified.getAndSet(false)) {
+      return;
+    }
+    record CacheFile(@NotNull Path path, @NotNull FileTime lastModified, long size) {
+    }
+    final var entries = new ArrayList<CacheFile>();
+    final var stale = FileTime.from(Instant.now().minus(ClassCache.STALE_AGE));
+    var totalSize = 0L;
+    try (final var files = Files.find(this.folder, 2, (path, attributes) -> attributes.isRegularFile())) {
+      for (final var file : (Iterable<Path>) files::iterator) {
+        final BasicFileAttributes attributes;
+        try {
+          attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        }
+        catch (NoSuchFileException e) {
+          // Evicted by another process.
+          continue;
+        }
+        if (file.getFileName().toString().endsWith(".tmp")) {
+          if (attributes.lastModifiedTime().compareTo(stale) < 0) {
+            Files.deleteIfExists(file);
+          }
+          continue;
+        }
+        entries.add(new CacheFile(file, attributes.lastModifiedTime(), attributes.size()));
+        totalSize += attributes.size();
+      }
+    }
+    if (totalSize <= this.maxSize) {
+      return;
+    }
+    // Evict down to 90% of the maximum, so that this does not need to happen again on the next run.
+    final var targetSize = this.maxSize / 10 * 9;
+    entries.sort(Comparator.comparing(CacheFile::lastModified));
+    for (final var entry : entries) {
+      if (totalSize <= targetSize) {
+        break;
+      }
+      Files.deleteIfExists(entry.path);
+      totalSize -= entry.size;
+    }
+  }
+
+  @NotNull
+  private Path entryPath(@NotNull String fingerprint) {
+    return this.folder.resolve(fingerprint.substring(0, 2)).resolve(fingerprint + ".class");
+  }
+
+  /**
+   * Looks up an entry.
+   *
+   * @param fingerprint The fingerprint of the original class file.
+   *
+   * @return The contents of the entry (a class file), or {@code null} if there is no entry for {@code fingerprint}.
+   *
+   * @throws IOException When the entry exists but could not be read.
+   */
+  public byte @Nullable [] get(@NotNull String fingerprint) throws IOException {
+    final var path = this.entryPath(fingerprint);
+    try {
+      final var contents = Files.readAllBytes(path);
+      // Mark it as recently used, for eviction purposes.
+      Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+      return contents;
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Adds an entry.
+   *
+   * @param fingerprint The fingerprint of the original class file.
+   * @param cn          The class parsed from the original class file; it is not modified.
+   * @param selected    Indicates whether the class was selected for inclusion in the API reference; if not, its members are not
+   *                    stored.
+   *
+   * @throws IOException When the entry could not be written.
+   */
+  public void put(@NotNull String fingerprint, @NotNull ClassNode cn, boolean selected) throws IOException {
+    final var path = this.entryPath(fingerprint);
+    final var contents = ASMUtil.writeClass(ClassCache.strip(cn, selected));
+    final var parent = Files.createDirectories(path.getParent());
+    final var temporary = Files.createTempFile(parent, fingerprint, ".tmp");
+    try {
+      Files.write(temporary, contents);
+      try {
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        // Should not happen within a single folder, but a plain rename is still atomic on most file systems.
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      this.modified.set(true);
+    }
+    finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  @NotNull
+  private static ClassNode strip(@NotNull ClassNode cn, boolean selected) {
+    final var copy = new ClassNode(Constants.API_VERSION);
+    cn.accept(copy);
+    if (!selected) {
+      copy.fields.clear();
+      copy.methods.clear();
+      return copy;
+    }
+    for (final var mn : copy.methods) {
+      if (mn.instructions.size() == 0) {
+        continue;
+      }
+      // Keep a single instruction, with all local variables (in their original order) covering it.
+      final var start = new LabelNode(new Label());
+      final var end = new LabelNode(new Label());
+      final var instructions = new InsnList();
+      instructions.add(start);
+      instructions.add(new InsnNode(Opcodes.NOP));
+      instructions.add(end);
+      mn.instructions = instructions;
+      if (mn.localVariables != null) {
+        final var localVariables = new ArrayList<LocalVariableNode>(mn.localVariables.size());
+        for (final var lv : mn.localVariables) {
+          localVariables.add(new LocalVariableNode(lv.name, lv.desc, lv.signature, start, end, lv.index));
+        }
+        mn.localVariables = localVariables;
+      }
+      mn.tryCatchBlocks.clear();
+      mn.visibleLocalVariableAnnotations = null;
+      mn.invisibleLocalVariableAnnotations = null;
+      mn.maxStack = 0;
+    }
+    return copy;
+  }
+
+}
@@ -0,0 +1,153 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.util.List;
+
+/**
+ * Summary information about a class, for lookups of types that are not part of the documented classes (like annotation types
+ * defined in dependencies).
+ *
+ * @param name       The (internal) name of the class.
+ * @param access     The access flags for the class.
+ * @param superName  The (internal) name of the class' superclass, if any.
+ * @param interfaces The (internal) names of the interfaces the class implements.
+ * @param documented Indicates whether the class is annotated with {@link Documented @Documented}.
+ * @param retention  The retention policy specified via {@link Retention @Retention}, if any.
+ */
+public record ClassInfo(@NotNull String name, int access, @Nullable String superName, @NotNull List<@NotNull String> interfaces,
+                        boolean documented, @Nullable String retention) {
+
+  private static final String DOCUMENTED = Type.getDescriptor(Documented.class);
+
+  private static final String RETENTION = Type.getDescriptor(Retention.class);
+
+  /**
+   * Creates summary information for a fully loaded class.
+   *
+   * @param cn The class.
+   *
+   * @return Summary information for {@code cn}.
+   */
+  @NotNull
+  public static ClassInfo of(@NotNull ClassNode cn) {
+    var documented = false;
+    String retention = null;
+    final List<AnnotationNode> visible = cn.visibleAnnotations == null ? List.of() : cn.visibleAnnotations;
+    final List<AnnotationNode> invisible = cn.invisibleAnnotations == null ? List.of() : cn.invisibleAnnotations;
+    for (final var annotations : List.of(visible, invisible)) {
+      for (final var an : annotations) {
+        if (ClassInfo.DOCUMENTED.equals(an.desc)) {
+          documented = true;
+        }
+        else if (ClassInfo.RETENTION.equals(an.desc) && an.values != null && an.values.size() == 2
+                 && an.values.get(1) instanceof String[] enumValue) {
+          retention = enumValue[1];
+        }
+      }
+    }
+    final List<String> interfaces = cn.interfaces == null ? List.of() : List.copyOf(cn.interfaces);
+    return new ClassInfo(cn.name, cn.access, cn.superName, interfaces, documented, retention);
+  }
+
+  /**
+   * Reads summary information from a class file; method bodies and debug information are skipped.
+   *
+   * @param classFile The contents of the class file.
+   *
+   * @return Summary information for the class.
+   */
+  @NotNull
+  public static ClassInfo read(byte @NotNull [] classFile) {
+    return ClassInfo.read(classFile, classFile.length);
+  }
+
+  /**
+   * Reads summary information from a class file held at the start of a buffer; method bodies and debug information are skipped.
+   *
+   * @param classFile A buffer starting with the contents of the class file.
+   * @param length    The length of the class file.
+   *
+   * @return Summary information for the class.
+   */
+  @NotNull
+  public static ClassInfo read(byte @NotNull [] classFile, int length) {
+    final var reader = new Reader();
+    new ClassReader(classFile, 0, length).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    return reader.info();
+  }
+
+  /**
+   * Determines whether this is an annotation type.
+   *
+   * @return {@code true} when this is an annotation type; {@code false} otherwise.
+   */
+  public boolean isAnnotation() {
+    return (this.access & Opcodes.ACC_ANNOTATION) != 0;
+  }
+
+  /** A class visitor collecting only what is needed for a {@link ClassInfo}. */
+  private static final class Reader extends ClassVisitor {
+
+    private int access;
+
+    private boolean documented;
+
+    private List<String> interfaces = List.of();
+
+    private String name;
+
+    private String retention;
+
+    private String superName;
+
+    Reader() {
+      super(Opcodes.ASM9);
+    }
+
+    @NotNull
+    ClassInfo info() {
+      return new ClassInfo(this.name, this.access, this.superName, this.interfaces, this.documented, this.retention);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      this.access = access;
+      this.name = name;
+      this.superName = superName;
+      if (interfaces != null) {
+        this.interfaces = List.of(interfaces);
+      }
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+      if (ClassInfo.DOCUMENTED.equals(descriptor)) {
+        this.documented = true;
+      }
+      else if (ClassInfo.RETENTION.equals(descriptor)) {
+        return new AnnotationVisitor(Opcodes.ASM9) {
+
+          @Override
+          public void visitEnum(String name, String descriptor, String value) {
+            Reader.this.retention = value;
+          }
+
+        };
+      }
+      return null;
+    }
+
+  }
+
+}
@@ -1,5 +1,6 @@
 package com.github.zastai.apiref.internal;
 
+import com.github.zastai.apiref.model.ApiListener;
 import com.github.zastai.apiref.model.JavaApplication;
 import com.github.zastai.apiref.model.JavaModule;
 import com.github.zastai.apiref.model.JavaPackage;
@@ -7,14 +8,29 @@ import com.github.zastai.apiref.model.JavaType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Documented;
+import java.net.URI;
 import java.nio.file.FileSystem;
+import java.nio.file.FileVisitResult;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,210 +38,1494 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.zip.ZipInputStream;
 
 /** A Java "class path", used to create a {@link JavaApplication} instance. */
 public final class ClassPath implements AutoCloseable {
 
+  /** The number of class files per thread that may be loaded ahead of being selected, when loading them in parallel. */
+  private static final int LOADS_PER_THREAD = 32;
+
+  /** The maximum number of platform threads to use for scanning jar files and folders concurrently, without virtual threads. */
+  private static final int MAX_PLATFORM_SCANNERS = 16;
+
+  /** The folder containing the application's own classes in a Spring Boot "fat jar". */
+  @NotNull
+  private static final String BOOT_CLASSES = "BOOT-INF/classes";
+
+  /** The approximate factor between the size of a class file and the heap used by the corresponding (parsed) class node. */
+  private static final int RETAINED_SIZE_FACTOR = 5;
+
   /** The class files found so far. */
   @NotNull
-  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> classFiles = new HashMap<>();
+  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> classFiles = new HashMap<>();
+
+  /** Classes that were found multiple times, with the location of the instance that will be used (per version). */
+  @NotNull
+  private final Map<@NotNull String, Map<@NotNull String, @NotNull Location>> duplicates = new HashMap<>();
+
+  /**
+   * The classes selected so far, by the fingerprint of their class file. Identical class files (shaded copies, the same library in
+   * several jars, unchanged multi-release entries) then reuse the existing class node instead of being parsed again.
+   */
+  @NotNull
+  private final Map<@NotNull String, @NotNull ClassNode> knownClasses = new ConcurrentHashMap<>();
+
+  /** The reasons for rejecting the classes rejected so far, by the fingerprint of their class file. */
+  @NotNull
+  private final Map<@NotNull String, @NotNull String> knownRejections = new ConcurrentHashMap<>();
+
+  /** The file systems created for jar files; these need to stay alive until we're done processing all their {@link Path}s. */
+  @NotNull
+  private final List<@NotNull FileSystem> jarFileSystems = Collections.synchronizedList(new ArrayList<>());
+
+  @NotNull
+  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> packageInfo = new HashMap<>();
+
+  @NotNull
+  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> moduleInfo = new HashMap<>();
+
+  /** Matches the paths (within an archive) of the nested archives whose classes should be included. */
+  @NotNull
+  private List<@NotNull PathMatcher> nestedArchives = List.of();
+
+  /** The class files that were moved to disk to stay within the memory budget; these are only loaded again when needed. */
+  @NotNull
+  private final Map<@NotNull String, Map<@NotNull Integer, SpillStore.@NotNull Entry>> spilledClassFiles = new HashMap<>();
+
+  /** The on-disk cache of extracted class information to use, if any. */
+  @Nullable
+  private ClassCache classCache = null;
+
+  /** Looks up classes that are not part of the class path (like annotation types from dependencies), if set. */
+  @Nullable
+  private Function<@NotNull String, @Nullable ClassInfo> dependencies = null;
+
+  /** Indicates whether only annotations whose types are marked {@link Documented @Documented} should be retained. */
+  private boolean documentedAnnotationsOnly = false;
+
+  /** Indicates whether undocumented annotations have been dropped from all classes loaded so far. */
+  private boolean undocumentedAnnotationsDropped = false;
+
+  /** For class files loaded from folders, the class they provided; only tracked when changes can be applied incrementally. */
+  @Nullable
+  private Map<@NotNull Path, @NotNull ClassNode> sources = null;
+
+  /** The number of threads to use for loading class files from folders; 1 means they are loaded on the calling thread. */
+  private int parallelism = 1;
+
+  /** The pool used to load class files in parallel; created on first use. */
+  @Nullable
+  private ForkJoinPool pool = null;
+
+  /** The statistics to update. */
+  @NotNull
+  private Statistics statistics = Statistics.DISABLED;
+
+  /** The timer used to track the time spent in each phase. */
+  @NotNull
+  private Statistics.Timer timer = Statistics.DISABLED.timer();
+
+  /** The reporter for diagnostics. */
+  @NotNull
+  private Diagnostics diagnostics = Diagnostics.NONE;
+
+  /** The (approximate) amount of heap to use for class files before moving them to disk; 0 means there is no limit. */
+  private long memoryBudget = 0;
+
+  /** The estimated amount of heap used by the class files in {@link #classFiles}; only tracked when there is a memory budget. */
+  private long retainedSize = 0;
+
+  /** The store holding the class files that were moved to disk; created on first use. */
+  @Nullable
+  private SpillStore spillStore = null;
+
+  /** The canonical instances of the names and descriptors read from class files, so that each is only held in memory once. */
+  @NotNull
+  private final StringTable strings = new StringTable();
+
+  /** Something to do with a class file that was found. */
+  @FunctionalInterface
+  private interface ClassFileAction {
+
+    /**
+     * Performs this action.
+     *
+     * @param file      The full path of the class file.
+     * @param size      The size of the class file, or -1 if not known.
+     * @param classPath The path of the class file, relative to the folder (or jar file) containing it.
+     *
+     * @throws IOException When something went wrong.
+     */
+    void accept(@NotNull Path file, long size, @NotNull Path classPath) throws IOException;
+
+  }
+
+  /**
+   * A class file that was read and parsed, but not yet considered for inclusion.
+   *
+   * @param fullPath    The full path of the class file.
+   * @param event       The event for the class file; it is committed once the class has been selected or rejected.
+   * @param size        The size of the class file, in bytes.
+   * @param fingerprint The fingerprint of the class file, if one was computed.
+   * @param cn          The class, or {@code null} if it could not be loaded or is identical to one rejected before.
+   * @param parsed      The class as parsed from the class file, if it needs to be added to the class cache.
+   * @param failure     The reason the class could not be loaded, if applicable.
+   */
+  private record LoadedClass(@NotNull Path fullPath, Events.@NotNull ClassParsed event, int size, @Nullable String fingerprint,
+                             @Nullable ClassNode cn, @Nullable ClassNode parsed, @Nullable Exception failure) {
+  }
+
+  /**
+   * The location of a class file.
+   *
+   * @param path    The path of the class file (relative to its context).
+   * @param context The jar file or folder containing the class file.
+   */
+  private record Location(@NotNull Path path, @NotNull Path context) {
+
+    @Override
+    public String toString() {
+      return "%s (in %s)".formatted(this.path, this.context);
+    }
+
+  }
+
+  /**
+   * The classes loaded from a nested archive (including those in any archives nested inside it) or from a module in a runtime image.
+   *
+   * @param context The nested archive or module.
+   * @param classes The class files loaded from it.
+   * @param failure The problem that prevented (fully) reading it, if any.
+   */
+  private record LoadedClasses(@NotNull Path context, @NotNull List<@NotNull LocatedClass> classes, @Nullable IOException failure) {
+  }
+
+  /**
+   * A class file that was read and parsed, along with its location.
+   *
+   * @param loaded  The class file, read and parsed.
+   * @param path    The path of the class file, relative to its context (or its class folder).
+   * @param context The nested archive or module containing the class file.
+   */
+  private record LocatedClass(@NotNull LoadedClass loaded, @NotNull Path path, @NotNull Path context) {
+  }
+
+  /**
+   * A class file found while scanning a jar file or folder (see {@link #addConcurrently(List)}), or the end of such a scan.
+   *
+   * @param load    The loading of the class file; {@code null} at the end of the scan.
+   * @param path    The path of the class file (relative to its jar file or folder); at the end of the scan, the root of the archive
+   *                (so that it can be checked for nested archives), or {@code null} if a folder was scanned.
+   * @param failure At the end of the scan, the problem that ended it early, if any.
+   */
+  private record ScannedClass(@Nullable CompletableFuture<@NotNull LoadedClass> load, @Nullable Path path,
+                              @Nullable IOException failure) {
+  }
+
+  /**
+   * The names of all class files, grouped by package.
+   *
+   * @param topLevelTypes The names of the top-level types (i.e. those not in any package), sorted.
+   * @param packages      For each package, the names of all class files in it (including those for nested types), sorted.
+   */
+  private record TypeIndex(@NotNull List<String> topLevelTypes, @NotNull SortedMap<String, List<String>> packages) {
+  }
+
+  /**
+   * Gathers all class files into modules and packages and constructs a Java application from them.
+   *
+   * @return A Java application containing all discovered class files, grouped into modules and packages.
+   */
+  @NotNull
+  public JavaApplication buildApplication() {
+    final var phase = this.timer.enter(Statistics.Phase.GROUP);
+    this.reportDuplicates();
+    this.dropUndocumentedAnnotations();
+    final var modules = this.buildModules();
+    if (modules != null) {
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Found %d module(s).", modules.size());
+    }
+    final var index = this.indexTypes(true);
+    SortedMap<String, JavaType> topLevelTypes = null;
+    for (final var name : index.topLevelTypes) {
+      final var jt = this.buildType(name, null);
+      if (jt != null) {
+        if (topLevelTypes == null) {
+          topLevelTypes = new TreeMap<>();
+        }
+        topLevelTypes.put(name, jt);
+      }
+    }
+    SortedMap<String, JavaPackage> packages = null;
+    for (final var entry : index.packages.entrySet()) {
+      final var jp = this.buildPackage(entry.getKey(), entry.getValue());
+      if (jp != null) {
+        if (packages == null) {
+          packages = new TreeMap<>();
+        }
+        packages.put(entry.getKey(), jp);
+      }
+    }
+    this.reportCounts(packages == null ? 0 : packages.size(), topLevelTypes == null ? 0 : topLevelTypes.size());
+    this.close();
+    this.timer.enter(phase);
+    return new JavaApplication(modules, packages, topLevelTypes);
+  }
+
+  @Nullable
+  private SortedMap<String, JavaModule> buildModules() {
+    if (this.moduleInfo.isEmpty()) {
+      return null;
+    }
+    final SortedMap<String, JavaModule> modules = new TreeMap<>();
+    for (final var entry : this.moduleInfo.entrySet()) {
+      final var name = entry.getKey();
+      final var info = entry.getValue().get(0);
+      modules.put(name, new JavaModule(name, info));
+    }
+    return modules;
+  }
+
+  @Nullable
+  private JavaPackage buildPackage(@NotNull String name, @NotNull List<String> classNames) {
+    final var event = new Events.PackageBuilt();
+    event.begin();
+    final SortedMap<String, JavaType> types = new TreeMap<>();
+    final ClassNode info;
+    {
+      final var infoName = name.isEmpty() ? WellKnown.Names.PACKAGE_INFO : name + '/' + WellKnown.Names.PACKAGE_INFO;
+      final var infoFiles = this.packageInfo.get(infoName);
+      info = infoFiles == null ? null : infoFiles.get(0);
+    }
+    final var jp = new JavaPackage(name, info, types);
+    for (final var className : classNames) {
+      final var jt = this.buildType(className, jp);
+      if (jt != null) {
+        types.put(className, jt);
+      }
+    }
+    if (event.shouldCommit()) {
+      event.packageName = name;
+      event.types = types.size();
+      event.commit();
+    }
+    // A package containing only nested types (of non-public classes) and no package-info is not relevant.
+    return types.isEmpty() && info == null ? null : jp;
+  }
+
+  @Nullable
+  private JavaType buildType(@NotNull String name, @Nullable JavaPackage jp) {
+    final var classFiles = this.instances(name);
+    if (classFiles == null) {
+      return null;
+    }
+    JavaType jt = null;
+    for (final var cn : classFiles.values()) {
+      // If it's nested in a class or method, we don't want it at this level.
+      if (ClassPath.isNested(cn)) {
+        continue;
+      }
+      if (jt == null) {
+        jt = new JavaType(name, jp);
+      }
+      jt.addClass(cn, this.diagnostics);
+    }
+    // No non-nested classes -> no type
+    if (jt != null) {
+      final var phase = this.timer.enter(Statistics.Phase.NESTED);
+      this.resolveNestedTypes(jt);
+      this.timer.enter(phase);
+    }
+    return jt;
+  }
+
+  private static void dropAnnotations(@NotNull ClassNode cn, @NotNull Predicate<AnnotationNode> predicate) {
+    ClassPath.removeIf(cn.visibleAnnotations, predicate);
+    ClassPath.removeIf(cn.invisibleAnnotations, predicate);
+    for (final var fn : cn.fields) {
+      ClassPath.removeIf(fn.visibleAnnotations, predicate);
+      ClassPath.removeIf(fn.invisibleAnnotations, predicate);
+    }
+    for (final var mn : cn.methods) {
+      ClassPath.removeIf(mn.visibleAnnotations, predicate);
+      ClassPath.removeIf(mn.invisibleAnnotations, predicate);
+    }
+  }
+
+  private void dropUndocumentedAnnotations() {
+    if (!this.documentedAnnotationsOnly || this.undocumentedAnnotationsDropped) {
+      return;
+    }
+    final var phase = this.timer.enter(Statistics.Phase.FILTER);
+    final var undocumented = this.undocumentedAnnotations();
+    for (final var files : List.of(this.classFiles, this.moduleInfo, this.packageInfo)) {
+      for (final var instances : files.values()) {
+        for (final var cn : instances.values()) {
+          ClassPath.dropAnnotations(cn, undocumented);
+        }
+      }
+    }
+    if (!this.spilledClassFiles.isEmpty()) {
+      // This needs to happen now, while all annotation types can still be looked up, so spilled classes are rewritten.
+      this.timer.enter(Statistics.Phase.SPILL);
+      for (final var spilled : this.spilledClassFiles.entrySet()) {
+        for (final var instance : spilled.getValue().entrySet()) {
+          final var cn = this.loadSpilledClass(spilled.getKey(), instance.getValue());
+          if (cn != null) {
+            ClassPath.dropAnnotations(cn, undocumented);
+            final var entry = this.spillClass(cn);
+            if (entry != null) {
+              instance.setValue(entry);
+            }
+          }
+        }
+      }
+    }
+    this.undocumentedAnnotationsDropped = true;
+    this.timer.enter(phase);
+  }
+
+  /**
+   * Gathers all class files into modules and packages, reporting them to a listener.
+   * <p>
+   * Unlike {@link #buildApplication()}, this never holds a model of the entire application: each package is built, reported and
+   * then released, along with its class files. Combined with a memory budget (see {@link #setMemoryBudget(long)}), this keeps heap
+   * usage bounded regardless of the number of classes.
+   *
+   * @param listener The listener to report the application's modules, top-level types and packages to.
+   */
+  public void emit(@NotNull ApiListener listener) {
+    this.emit(listener, null);
+  }
+
+  /**
+   * Gathers all class files into modules and packages, reporting them to a listener.
+   * <p>
+   * Unlike {@link #buildApplication()}, this never holds a model of the entire application: each package is built, reported and
+   * then released, along with its class files.
+   *
+   * @param listener       The listener to report the application's modules, top-level types and packages to.
+   * @param outputPosition Provides the number of bytes written by the listener so far (if known); this is only used for
+   *                       diagnostic purposes (see {@link Events.PackageRendered}).
+   */
+  public void emit(@NotNull ApiListener listener, @Nullable LongSupplier outputPosition) {
+    final var phase = this.timer.enter(Statistics.Phase.GROUP);
+    this.reportDuplicates();
+    this.dropUndocumentedAnnotations();
+    final var modules = this.buildModules();
+    if (modules != null) {
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Found %d module(s).", modules.size());
+    }
+    final var index = this.indexTypes(true);
+    this.timer.enter(Statistics.Phase.FORMAT);
+    listener.startApplication();
+    if (modules != null) {
+      modules.values().forEach(jm -> jm.replay(listener));
+    }
+    var topLevelTypes = 0;
+    for (final var name : index.topLevelTypes) {
+      this.timer.enter(Statistics.Phase.GROUP);
+      final var jt = this.buildType(name, null);
+      this.timer.enter(Statistics.Phase.FORMAT);
+      if (jt != null) {
+        jt.replay(listener);
+        ++topLevelTypes;
+      }
+    }
+    var packages = 0;
+    for (final var entry : index.packages.entrySet()) {
+      this.timer.enter(Statistics.Phase.GROUP);
+      final var jp = this.buildPackage(entry.getKey(), entry.getValue());
+      this.timer.enter(Statistics.Phase.FORMAT);
+      if (jp != null) {
+        final var event = new Events.PackageRendered();
+        event.begin();
+        final var start = outputPosition == null ? -1 : outputPosition.getAsLong();
+        jp.replay(listener);
+        if (event.shouldCommit()) {
+          event.bytesWritten = outputPosition == null ? -1 : outputPosition.getAsLong() - start;
+          event.packageName = jp.name;
+          event.commit();
+        }
+        ++packages;
+      }
+      entry.getValue().forEach(name -> {
+        this.classFiles.remove(name);
+        this.spilledClassFiles.remove(name);
+      });
+    }
+    listener.endApplication();
+    this.timer.enter(Statistics.Phase.GROUP);
+    this.reportCounts(packages, topLevelTypes);
+    this.close();
+    this.timer.enter(phase);
+  }
+
+  /**
+   * Groups the names of all class files by package.
+   *
+   * @return The names of all class files, grouped by package.
+   */
+  @NotNull
+  private TypeIndex indexTypes(boolean report) {
+    var names = this.classFiles.keySet();
+    if (!this.spilledClassFiles.isEmpty()) {
+      names = new HashSet<>(names);
+      names.addAll(this.spilledClassFiles.keySet());
+    }
+    if (report && !names.isEmpty()) {
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Grouping %d class files into packages...",
+                              names.size());
+    }
+    // Sort all names once, then append them to per-package lists (which therefore end up sorted too), instead of inserting every
+    // name into a tree; only the (far fewer) packages go into one.
+    final var sortedNames = names.toArray(String[]::new);
+    Arrays.parallelSort(sortedNames);
+    final var topLevelTypes = new ArrayList<String>();
+    final var packages = new HashMap<String, List<String>>();
+    for (final var name : this.packageInfo.keySet()) {
+      final int slash = name.lastIndexOf('/');
+      packages.computeIfAbsent(slash >= 0 ? this.strings.intern(name.substring(0, slash)) : "", n -> new ArrayList<>());
+    }
+    for (final var name : sortedNames) {
+      final var slash = name.lastIndexOf('/');
+      if (slash <= 0) {
+        topLevelTypes.add(name);
+      }
+      else {
+        packages.computeIfAbsent(this.strings.intern(name.substring(0, slash)), n -> new ArrayList<>()).add(name);
+      }
+    }
+    return new TypeIndex(topLevelTypes, new TreeMap<>(packages));
+  }
+
+  /**
+   * Gets all instances (per version) of a class, loading any that were moved to disk.
+   *
+   * @param name The (internal) name of the class.
+   *
+   * @return The instances of the class, or {@code null} if it is not part of this class path.
+   */
+  @Nullable
+  private Map<@NotNull Integer, @NotNull ClassNode> instances(@NotNull String name) {
+    final var instances = this.classFiles.get(name);
+    final var spilled = this.spilledClassFiles.get(name);
+    if (spilled == null) {
+      return instances;
+    }
+    final var merged = new HashMap<Integer, ClassNode>();
+    for (final var entry : spilled.entrySet()) {
+      final var cn = this.loadSpilledClass(name, entry.getValue());
+      if (cn != null) {
+        merged.put(entry.getKey(), cn);
+      }
+    }
+    if (instances != null) {
+      merged.putAll(instances);
+    }
+    return merged;
+  }
+
+  private boolean isDocumented(@NotNull String descriptor) {
+    final var name = Type.getType(descriptor).getInternalName();
+    ClassInfo info = null;
+    final var instances = this.instances(name);
+    if (instances != null && !instances.isEmpty()) {
+      info = ClassInfo.of(instances.values().iterator().next());
+    }
+    else if (this.dependencies != null) {
+      info = this.dependencies.apply(name);
+    }
+    if (info == null) {
+      // If we cannot tell, err on the side of caution.
+      this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.ANNOTATIONS,
+                              "Annotation type %s not found; assuming it is @Documented.", name);
+      return true;
+    }
+    if (!info.documented()) {
+      this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.ANNOTATIONS,
+                              "Omitting annotations of type %s because it is not @Documented.", name);
+    }
+    return info.documented();
+  }
+
+  private static boolean isNested(@NotNull ClassNode cn) {
+    // It's not always the first entry.
+    return cn.innerClasses != null && cn.innerClasses.stream().anyMatch(innerClass -> innerClass.name.equals(cn.name));
+  }
+
+  private boolean isNestedArchive(@NotNull String path) {
+    if (!PathUtil.isArchiveName(path)) {
+      return false;
+    }
+    final var relativePath = Path.of(path);
+    return this.nestedArchives.stream().anyMatch(matcher -> matcher.matches(relativePath));
+  }
+
+  private static boolean isRelevant(@NotNull Path classPath) {
+    // Filter out some classes based purely on their location.
+    final int parts = classPath.getNameCount();
+    if (parts > 1 && "META-INF".equals(classPath.getName(0).toString())) {
+      // Assumption: nothing under here matters unless it is specifically under a "versions/<integer>" path.
+      // FIXME: This logic should only apply when MANIFEST.MF has 'Multi-Release: true'.
+      return classPath.startsWith("META-INF/versions/") && parts > 3;
+    }
+    // Any other places we should explicitly avoid class files from? Maybe ensure all path parts are valid Java identifiers?
+    return true;
+  }
+
+  /** Gets the key for a class: its name, except for a {@code module-info} pseudo-class, where it is the name of the module. */
+  @NotNull
+  private static String keyOf(boolean isModule, @NotNull ClassNode cn) {
+    return isModule ? Objects.requireNonNull(cn.module).name : cn.name;
+  }
+
+  /**
+   * Looks for class files in a jar file or a folder.
+   * <p>
+   * Besides jar files, this also accepts war files (using the classes in {@code WEB-INF/classes}), ear files and jmod files (using
+   * the classes in {@code classes}). For a Spring Boot "fat jar", only the classes in {@code BOOT-INF/classes} are used. Archives
+   * nested inside these are only looked at when they match one of the patterns set using {@link #setNestedArchives(List)}.
+   *
+   * @param jarOrFolder A path to a jar file (or other archive) or a folder.
+   *
+   * @throws IOException When something went wrong while looking through {@code jarOrFolder}.
+   */
+  public void add(@NotNull Path jarOrFolder) throws IOException {
+    if (PathUtil.isDirectory(jarOrFolder)) {
+      this.add(jarOrFolder, jarOrFolder);
+    }
+    else if (PathUtil.isArchive(jarOrFolder)) {
+      final var jarFileSystem = ClassPath.openJar(jarOrFolder);
+      final var root = jarFileSystem.getPath("/");
+      final var classRoot = ClassPath.classRoot(jarOrFolder, root);
+      if (classRoot != null) {
+        this.add(jarOrFolder, classRoot);
+      }
+      this.addNestedArchives(jarOrFolder, root);
+      this.jarFileSystems.add(jarFileSystem);
+    }
+  }
+
+  private void add(@NotNull Path context, @NotNull Path path) throws IOException {
+    this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.DISCOVERY, "Looking for class files in %s...", context);
+    final var phase = this.timer.enter(Statistics.Phase.DISCOVERY);
+    try {
+      if (this.parallelism > 1) {
+        this.addInParallel(context, path);
+        return;
+      }
+      this.walk(path, this.timer, (file, size, classPath) -> this.addClass(file, size, classPath, context));
+    }
+    finally {
+      this.timer.enter(phase);
+    }
+  }
+
+  /**
+   * Looks for class files using a {@link DirectoryWalker}, reading and parsing them on the pool as they are found. They are still
+   * selected on this thread, in the order in which they were found, so the result is the same as for a sequential walk. As only a
+   * limited number of class files can be waiting to be selected, discovery and loading cannot run arbitrarily far ahead.
+   */
+  private void addInParallel(@NotNull Path context, @NotNull Path path) throws IOException {
+    record PendingClass(@NotNull ForkJoinTask<@NotNull LoadedClass> load, @NotNull Path path) {
+    }
+    final var pool = this.pool();
+    final var window = this.parallelism * ClassPath.LOADS_PER_THREAD;
+    final var pending = new ArrayDeque<PendingClass>(window);
+    try {
+      final var walker = new DirectoryWalker(path, pool, window, this.statistics);
+      while (walker.hasNext()) {
+        final var classFile = walker.next();
+        this.statistics.count(Statistics.Counter.CLASS_FILES, 1);
+        final var classPath = path.relativize(classFile.path());
+        if (!ClassPath.isRelevant(classPath)) {
+          continue;
+        }
+        if (pending.size() == window) {
+          final var next = pending.remove();
+          this.select(next.load.join(), next.path, context);
+          this.timer.enter(Statistics.Phase.DISCOVERY);
+        }
+        pending.add(new PendingClass(pool.submit(() -> {
+          final var timer = this.statistics.timer();
+          try {
+            return this.load(classFile.path(), classFile.size(), timer);
+          }
+          finally {
+            timer.enter(null);
+          }
+        }), classPath));
+      }
+    }
+    catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+    finally {
+      // Like for a sequential walk, the class files found before any problem are still added.
+      for (final var next : pending) {
+        this.select(next.load.join(), next.path, context);
+      }
+      this.timer.enter(Statistics.Phase.DISCOVERY);
+    }
+  }
+
+  /**
+   * Looks for class files in several jar files and/or folders at the same time.
+   * <p>
+   * Each jar file or folder is scanned on its own thread, which opens it, walks it and reads its class files, so that waiting for
+   * I/O on one of them does not hold up the others. When running on Java 21 or later, these are virtual threads, so that even
+   * hundreds of inputs do not require as many platform threads; on earlier versions, a limited number of platform threads is used.
+   * Parsing the class files is CPU-bound, so that is done on a pool with as many threads as set using {@link #setParallelism(int)}.
+   * <p>
+   * The classes found are still added in order (all classes from the first jar file or folder, then those from the second, and so
+   * on), so the result is the same as calling {@link #add(Path)} for each of them in turn. To bound memory use, each scan can only
+   * get a limited number of class files ahead of that.
+   *
+   * @param jarsOrFolders Paths to jar files and/or folders.
+   *
+   * @throws IOException When something went wrong while looking through any of {@code jarsOrFolders}; the message identifies the
+   *                     jar file or folder involved.
+   */
+  public void addConcurrently(@NotNull List<@NotNull Path> jarsOrFolders) throws IOException {
+    final var phase = this.timer.enter(Statistics.Phase.DISCOVERY);
+    final var pool = this.pool();
+    final var scans = new ArrayList<BlockingQueue<@NotNull ScannedClass>>();
+    final var scanners = ClassPath.newScannerExecutor(jarsOrFolders.size());
+    try {
+      for (final var jarOrFolder : jarsOrFolders) {
+        final var classes = new ArrayBlockingQueue<@NotNull ScannedClass>(ClassPath.LOADS_PER_THREAD);
+        scans.add(classes);
+        scanners.execute(() -> this.scan(jarOrFolder, pool, classes));
+      }
+      for (var i = 0; i < scans.size(); ++i) {
+        final var context = jarsOrFolders.get(i);
+        if (PathUtil.isDirectory(context) || PathUtil.isArchive(context)) {
+          this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.DISCOVERY, "Looking for class files in %s...", context);
+        }
+        while (true) {
+          final var next = scans.get(i).take();
+          if (next.load == null) {
+            if (next.failure != null) {
+              throw new IOException("Failed to locate class files in %s: %s".formatted(context, next.failure), next.failure);
+            }
+            if (next.path != null) {
+              this.addNestedArchives(context, next.path);
+            }
+            break;
+          }
+          this.select(next.load.join(), Objects.requireNonNull(next.path), context);
+          this.timer.enter(Statistics.Phase.DISCOVERY);
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while looking for class files.");
+    }
+    finally {
+      // When stopping early, this interrupts the scans that are still running.
+      scanners.shutdownNow();
+      try {
+        if (!scanners.awaitTermination(1, TimeUnit.MINUTES)) {
+          this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY,
+                                  "Timed out waiting for the scans of jar files and folders to stop.");
+        }
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      this.timer.enter(phase);
+    }
+  }
+
+  private void addLoaded(@NotNull LoadedClasses loaded) {
+    this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.DISCOVERY, "Looking for class files in %s...", loaded.context);
+    for (final var located : loaded.classes) {
+      this.select(located.loaded, located.path, located.context);
+    }
+    this.timer.enter(Statistics.Phase.DISCOVERY);
+    if (loaded.failure != null) {
+      this.diagnostics.report(Diagnostics.Level.ERROR, Diagnostics.Category.DISCOVERY, "Could not read %s: %s", loaded.context,
+                              loaded.failure);
+    }
+  }
+
+  /**
+   * Loads the class files from a number of sources (nested archives or modules) and adds them, in order.
+   * <p>
+   * With a parallelism greater than 1, a limited number of sources is loaded in parallel; their classes are still added in order.
+   */
+  private <T> void addLoaded(@NotNull List<T> sources, @NotNull BiFunction<T, Statistics.@NotNull Timer, @NotNull LoadedClasses> loader) {
+    if (this.parallelism <= 1) {
+      for (final var source : sources) {
+        this.addLoaded(loader.apply(source, this.timer));
+      }
+      return;
+    }
+    final var pool = this.pool();
+    final var pending = new ArrayDeque<ForkJoinTask<@NotNull LoadedClasses>>(this.parallelism);
+    for (final var source : sources) {
+      if (pending.size() == this.parallelism) {
+        this.addLoaded(pending.remove().join());
+      }
+      pending.add(pool.submit(() -> {
+        final var timer = this.statistics.timer();
+        try {
+          return loader.apply(source, timer);
+        }
+        finally {
+          timer.enter(null);
+        }
+      }));
+    }
+    while (!pending.isEmpty()) {
+      this.addLoaded(pending.remove().join());
+    }
+  }
+
+  /**
+   * Looks for class files in the archives nested inside an archive (like the libraries in a war file), if they match any of the
+   * patterns set using {@link #setNestedArchives(List)}.
+   * <p>
+   * Nested archives are not extracted; each one is read into memory and streamed from there. With a parallelism greater than 1, a
+   * limited number of nested archives is processed in parallel; their classes are still added in order.
+   */
+  private void addNestedArchives(@NotNull Path archive, @NotNull Path root) throws IOException {
+    if (this.nestedArchives.isEmpty()) {
+      return;
+    }
+    final var phase = this.timer.enter(Statistics.Phase.DISCOVERY);
+    try {
+      final List<Path> entries;
+      try (final var files = Files.walk(root)) {
+        entries = files.filter(file -> this.isNestedArchive(root.relativize(file).toString()) && Files.isRegularFile(file)).sorted()
+                       .toList();
+      }
+      this.addLoaded(entries, (entry, timer) -> this.loadNestedArchive(archive, entry, timer));
+    }
+    finally {
+      this.timer.enter(phase);
+    }
+  }
+
+  /**
+   * Looks for class files in the modules of a Java runtime image (as provided by the {@code jrt:/} file system).
+   * <p>
+   * Only the public API of each module is considered: its {@code module-info} and the class files in the packages it exports. Only
+   * unqualified exports are included; packages that are not exported, or only to specific modules, are skipped without reading
+   * them. With a parallelism greater than 1, a limited number of modules is processed in parallel; their classes are still added in
+   * order (by module name).
+   *
+   * @param javaHome The Java installation whose runtime image should be used, or {@code null} to use that of the running JVM.
+   * @param modules  The names of the modules to include; an empty set means all modules.
+   *
+   * @throws IOException When the runtime image could not be opened, or does not include one of {@code modules}.
+   */
+  public void addRuntimeImage(@Nullable Path javaHome, @NotNull Set<@NotNull String> modules) throws IOException {
+    final var phase = this.timer.enter(Statistics.Phase.DISCOVERY);
+    try {
+      final var runtimeImage = this.openRuntimeImage(javaHome);
+      final List<Path> moduleRoots;
+      try (final var entries = Files.list(runtimeImage.getPath("/modules"))) {
+        moduleRoots = entries.filter(root -> modules.isEmpty() || modules.contains(root.getFileName().toString())).sorted().toList();
+      }
+      if (moduleRoots.size() < modules.size()) {
+        final var missing = new TreeSet<>(modules);
+        moduleRoots.forEach(root -> missing.remove(root.getFileName().toString()));
+        throw new IOException("Module(s) not found in the runtime image: %s".formatted(String.join(", ", missing)));
+      }
+      this.addLoaded(moduleRoots, this::loadModule);
+    }
+    finally {
+      this.timer.enter(phase);
+    }
+  }
+
+  private void addClass(@NotNull Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> list, @NotNull ClassNode contents,
+                        boolean ignoreVersion, @NotNull Path path, @NotNull Path context) {
+    final var name = ClassPath.keyOf(list == this.moduleInfo, contents);
+    final var instances = list.computeIfAbsent(name, n -> new HashMap<>());
+    final int version = ignoreVersion ? 0 : contents.version;
+    var duplicate = instances.containsKey(version);
+    if (list == this.classFiles) {
+      final var spilled = this.spilledClassFiles.get(contents.name);
+      if (spilled != null && spilled.remove(version) != null) {
+        duplicate = true;
+        if (spilled.isEmpty()) {
+          this.spilledClassFiles.remove(contents.name);
+        }
+      }
+    }
+    if (duplicate) {
+      final var duplicateInstances = this.duplicates.computeIfAbsent(name, n -> new HashMap<>());
+      duplicateInstances.put(ignoreVersion ? "???" : Util.runtimeVersion(version), new Location(path, context));
+    }
+    instances.put(version, contents);
+  }
+
+  private void addClass(@NotNull Path fullPath, long size, @NotNull Path path, @NotNull Path context) {
+    this.select(this.load(fullPath, size, this.timer), path, context);
+  }
+
+  private void cacheClass(@NotNull String fingerprint, @NotNull ClassNode cn, boolean selected) {
+    try {
+      Objects.requireNonNull(this.classCache).put(fingerprint, cn, selected);
+    }
+    catch (IOException ex) {
+      this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY, "Could not add %s to the class cache: %s",
+                              cn.name, ex);
+    }
+  }
+
+  @Nullable
+  private ClassNode cachedClass(@Nullable String fingerprint) {
+    if (this.classCache == null || fingerprint == null) {
+      return null;
+    }
+    try {
+      final var contents = this.classCache.get(fingerprint);
+      return contents == null ? null : ASMUtil.readClass(contents, contents.length, this.strings);
+    }
+    catch (Exception ex) {
+      // Just treat it as a cache miss; the entry will be replaced.
+      this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY, "Could not use class cache entry %s: %s",
+                              fingerprint, ex);
+      return null;
+    }
+  }
+
+  /** Gets the folder (within an archive) holding its classes, based on the archive's name; this ends in a slash unless empty. */
+  @NotNull
+  private static String classPrefix(@NotNull String archiveName) {
+    if (archiveName.endsWith(".jmod")) {
+      return "classes/";
+    }
+    if (archiveName.endsWith(".war")) {
+      return "WEB-INF/classes/";
+    }
+    return "";
+  }
+
+  /** Gets the folder (within an archive) holding its classes, or {@code null} if it has none. */
+  @Nullable
+  private static Path classRoot(@NotNull Path archive, @NotNull Path root) {
+    final var name = archive.getFileName().toString();
+    var classRoot = root.resolve(ClassPath.classPrefix(name));
+    if (name.endsWith(".jar")) {
+      // In a Spring Boot "fat jar", the root only holds the launcher, while the libraries used are in BOOT-INF/lib.
+      final var bootClasses = root.resolve(ClassPath.BOOT_CLASSES);
+      if (Files.isDirectory(bootClasses)) {
+        classRoot = bootClasses;
+      }
+    }
+    return Files.isDirectory(classRoot) ? classRoot : null;
+  }
+
+  @Override
+  public void close() {
+    for (final var fs : this.jarFileSystems) {
+      final var event = new Events.JarClosed();
+      event.begin();
+      try {
+        fs.close();
+        if (event.shouldCommit()) {
+          // For the zip file system, this is the path to the jar file.
+          event.path = fs.toString();
+          event.commit();
+        }
+      }
+      catch (Exception ex) {
+        this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY, "Could not clean up jar file system: %s", ex);
+      }
+    }
+    this.classFiles.clear();
+    this.duplicates.clear();
+    this.jarFileSystems.clear();
+    this.knownClasses.clear();
+    this.knownRejections.clear();
+    this.moduleInfo.clear();
+    this.packageInfo.clear();
+    this.strings.clear();
+    if (this.pool != null) {
+      this.pool.shutdown();
+      this.pool = null;
+    }
+    this.retainedSize = 0;
+    this.spilledClassFiles.clear();
+    if (this.spillStore != null) {
+      try {
+        this.spillStore.close();
+      }
+      catch (IOException ex) {
+        this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.GENERAL, "Could not clean up spilled class files: %s", ex);
+      }
+      this.spillStore = null;
+    }
+    this.diagnostics.flush();
+  }
+
+  /**
+   * Reads and parses a class file, without considering it for inclusion yet. Unlike the rest of the processing, this can be done on
+   * any thread.
+   */
+  @NotNull
+  private LoadedClass load(@NotNull Path fullPath, long size, Statistics.@NotNull Timer timer) {
+    final var event = new Events.ClassParsed();
+    event.begin();
+    try {
+      // Only valid until the next read on this thread, so nothing may hold on to this.
+      final var buffer = this.read(fullPath, size, event, timer);
+      return this.parse(fullPath, event, buffer.bytes(), buffer.length(), timer);
+    }
+    catch (IOException ex) {
+      return new LoadedClass(fullPath, event, 0, null, null, null, ex);
+    }
+  }
+
+  /**
+   * Reads and parses the {@code module-info} of a module in a runtime image, and the class files in the packages it exports. Like
+   * {@link #load(Path, long, Statistics.Timer)}, this can be done on any thread.
+   */
+  @NotNull
+  private LoadedClasses loadModule(@NotNull Path moduleRoot, Statistics.@NotNull Timer timer) {
+    final var classes = new ArrayList<LocatedClass>();
+    try {
+      timer.enter(Statistics.Phase.DISCOVERY);
+      final var infoFile = moduleRoot.resolve(WellKnown.Names.MODULE_INFO + ".class");
+      if (!Files.isRegularFile(infoFile)) {
+        return new LoadedClasses(moduleRoot, classes, null);
+      }
+      this.statistics.count(Statistics.Counter.CLASS_FILES, 1);
+      final var info = this.load(infoFile, -1, timer);
+      classes.add(new LocatedClass(info, moduleRoot.relativize(infoFile), moduleRoot));
+      // If the module information is missing (or could not be loaded), that gets reported when selecting it.
+      final var module = info.cn == null ? null : info.cn.module;
+      if (module == null || module.exports == null) {
+        return new LoadedClasses(moduleRoot, classes, null);
+      }
+      final var packages = new TreeSet<String>();
+      for (final var exports : module.exports) {
+        if (exports.modules == null || exports.modules.isEmpty()) {
+          packages.add(exports.packaze);
+        }
+      }
+      for (final var packageName : packages) {
+        timer.enter(Statistics.Phase.DISCOVERY);
+        final var classFiles = new ArrayList<Path>();
+        // Subpackages are separate packages, so this only needs the class files directly inside the package's folder.
+        try (final var entries = Files.newDirectoryStream(moduleRoot.resolve(packageName), "*.class")) {
+          entries.forEach(classFiles::add);
+        }
+        classFiles.sort(null);
+        this.statistics.count(Statistics.Counter.CLASS_FILES, classFiles.size());
+        for (final var classFile : classFiles) {
+          classes.add(new LocatedClass(this.load(classFile, -1, timer), moduleRoot.relativize(classFile), moduleRoot));
+        }
+      }
+      return new LoadedClasses(moduleRoot, classes, null);
+    }
+    catch (IOException ex) {
+      return new LoadedClasses(moduleRoot, classes, ex);
+    }
+  }
+
+  /**
+   * Reads a nested archive, and reads and parses the class files in it. Like {@link #load(Path, long, Statistics.Timer)}, this can
+   * be done on any thread.
+   */
+  @NotNull
+  private LoadedClasses loadNestedArchive(@NotNull Path archive, @NotNull Path entry, Statistics.@NotNull Timer timer) {
+    final var name = entry.getRoot().relativize(entry).toString();
+    final var context = archive.resolve(name);
+    final var classes = new ArrayList<LocatedClass>();
+    try {
+      timer.enter(Statistics.Phase.READ);
+      this.loadNestedArchive(Files.readAllBytes(entry), name, context, entry, timer, classes);
+      return new LoadedClasses(context, classes, null);
+    }
+    catch (IOException ex) {
+      return new LoadedClasses(context, classes, ex);
+    }
+  }
+
+  private void loadNestedArchive(byte @NotNull [] contents, @NotNull String name, @NotNull Path context, @NotNull Path fullPath,
+                                 Statistics.@NotNull Timer timer, @NotNull List<@NotNull LocatedClass> classes) throws IOException {
+    final var prefix = ClassPath.classPrefix(name);
+    // A jmod file starts with a 4-byte header; the zip contents follow that.
+    final var offset = name.endsWith(".jmod") ? 4 : 0;
+    try (final var zip = new ZipInputStream(new ByteArrayInputStream(contents, offset, contents.length - offset))) {
+      timer.enter(Statistics.Phase.DISCOVERY);
+      for (var entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        final var entryName = entry.getName();
+        if (entry.isDirectory()) {
+          continue;
+        }
+        if (entryName.startsWith(prefix) && entryName.endsWith(".class")) {
+          this.statistics.count(Statistics.Counter.CLASS_FILES, 1);
+          final var classPath = Path.of(entryName.substring(prefix.length()));
+          if (ClassPath.isRelevant(classPath)) {
+            final var classFile = fullPath.resolve(entryName);
+            final var event = new Events.ClassParsed();
+            event.begin();
+            final var buffer = this.read(zip, entry.getSize(), event, timer);
+            classes.add(new LocatedClass(this.parse(classFile, event, buffer.bytes(), buffer.length(), timer), classPath, context));
+          }
+        }
+        else if (this.isNestedArchive(entryName)) {
+          timer.enter(Statistics.Phase.READ);
+          this.loadNestedArchive(zip.readAllBytes(), entryName, context.resolve(entryName), fullPath.resolve(entryName), timer,
+                                 classes);
+        }
+        timer.enter(Statistics.Phase.DISCOVERY);
+      }
+    }
+  }
+
+  @Nullable
+  private ClassNode loadSpilledClass(@NotNull String name, SpillStore.@NotNull Entry entry) {
+    final var phase = this.timer.enter(Statistics.Phase.SPILL);
+    try {
+      final var contents = Objects.requireNonNull(this.spillStore).get(entry);
+      return ASMUtil.readClass(contents, contents.length, this.strings);
+    }
+    catch (IOException ex) {
+      this.diagnostics.report(Diagnostics.Level.ERROR, Diagnostics.Category.GENERAL, "Could not load spilled class %s: %s", name, ex);
+      return null;
+    }
+    finally {
+      this.timer.enter(phase);
+    }
+  }
+
+  /**
+   * Creates the executor used to scan jar files and folders concurrently: one that runs each scan on its own virtual thread when
+   * running on Java 21 or later, and one using a limited number of platform threads otherwise.
+   */
+  @NotNull
+  private static ExecutorService newScannerExecutor(int inputs) {
+    try {
+      // Looked up reflectively, as this is still built for Java 17.
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch (ReflectiveOperationException ex) {
+      // The scans are started in order and their results are consumed in the same order, so a limited number of threads can never
+      // leave the scan being waited for without a thread.
+      return Executors.newFixedThreadPool(Math.max(1, Math.min(inputs, ClassPath.MAX_PLATFORM_SCANNERS)), runnable -> {
+        final var thread = new Thread(runnable, "apiref-scanner");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  @NotNull
+  private static FileSystem openJar(@NotNull Path jar) throws IOException {
+    final var event = new Events.JarOpened();
+    event.begin();
+    final var jarFileSystem = FileSystems.newFileSystem(jar, PathUtil.class.getClassLoader());
+    if (event.shouldCommit()) {
+      event.path = jar.toString();
+      event.commit();
+    }
+    return jarFileSystem;
+  }
+
+  /**
+   * Opens a Java runtime image. That of the running JVM is always available; any other one is closed along with this class path.
+   */
+  @NotNull
+  private FileSystem openRuntimeImage(@Nullable Path javaHome) throws IOException {
+    final var uri = URI.create("jrt:/");
+    if (javaHome == null) {
+      return FileSystems.getFileSystem(uri);
+    }
+    final var runtimeImage = FileSystems.newFileSystem(uri, Map.of("java.home", javaHome.toString()));
+    this.jarFileSystems.add(runtimeImage);
+    return runtimeImage;
+  }
 
-  /** Paths to classes that were found multiple times. */
+  /**
+   * Gets the names of all packages, as of the last update.
+   *
+   * @return The names of all packages (including ones that turn out to contain no public types).
+   */
   @NotNull
-  private final Map<@NotNull String, Map<@NotNull String, @NotNull String>> duplicates = new HashMap<>();
+  public SortedSet<@NotNull String> packageNames() {
+    return new TreeSet<>(this.indexTypes(false).packages.keySet());
+  }
 
-  /** The file systems created for jar files; these need to stay alive until we're done processing all their {@link Path}s. */
   @NotNull
-  private final List<@NotNull FileSystem> jarFileSystems = new ArrayList<>();
+  private static String packageOf(@NotNull String className) {
+    final var slash = className.lastIndexOf('/');
+    return slash < 0 ? "" : className.substring(0, slash);
+  }
 
+  /**
+   * Parses a class file that was already read, unless it is identical to one seen before or available from the class cache. Like
+   * {@link #load(Path, long, Statistics.Timer)}, this can be done on any thread.
+   */
   @NotNull
-  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> packageInfo = new HashMap<>();
+  private LoadedClass parse(@NotNull Path fullPath, Events.@NotNull ClassParsed event, byte @NotNull [] contents, int length,
+                            Statistics.@NotNull Timer timer) {
+    try {
+      // Incremental updates track class nodes per source file, so those must not be shared.
+      final var deduplicate = this.sources == null;
+      final var fingerprint = deduplicate || this.classCache != null ? Fingerprints.forContents(contents, length) : null;
+      final var rejection = deduplicate ? this.knownRejections.get(fingerprint) : null;
+      if (rejection != null) {
+        this.statistics.count(Statistics.Counter.CLASSES_DEDUPLICATED, 1);
+        this.statistics.count(Statistics.Counter.CLASSES_REJECTED, 1);
+        event.deduplicated = true;
+        event.rejectedReason = rejection;
+        return new LoadedClass(fullPath, event, length, fingerprint, null, null, null);
+      }
+      final var known = deduplicate ? this.knownClasses.get(fingerprint) : null;
+      if (known != null) {
+        this.statistics.count(Statistics.Counter.CLASSES_DEDUPLICATED, 1);
+        event.deduplicated = true;
+        return new LoadedClass(fullPath, event, length, fingerprint, known, null, null);
+      }
+      final var cached = this.cachedClass(fingerprint);
+      timer.enter(Statistics.Phase.PARSE);
+      if (cached != null) {
+        this.statistics.count(Statistics.Counter.CLASSES_CACHED, 1);
+        event.cached = true;
+        return new LoadedClass(fullPath, event, length, fingerprint, cached, null, null);
+      }
+      final var cn = ASMUtil.readClass(contents, length, this.strings);
+      this.statistics.count(Statistics.Counter.CLASSES_PARSED, 1);
+      return new LoadedClass(fullPath, event, length, fingerprint, cn, this.classCache == null ? null : cn, null);
+    }
+    catch (Exception ex) {
+      return new LoadedClass(fullPath, event, 0, null, null, null, ex);
+    }
+  }
 
   @NotNull
-  private final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> moduleInfo = new HashMap<>();
+  private ForkJoinPool pool() {
+    if (this.pool == null) {
+      this.pool = new ForkJoinPool(this.parallelism);
+    }
+    return this.pool;
+  }
+
+  @NotNull
+  private ReadBuffer read(@NotNull Path fullPath, long size, Events.@NotNull ClassParsed event, Statistics.@NotNull Timer timer)
+    throws IOException {
+    timer.enter(Statistics.Phase.READ);
+    final var buffer = ReadBuffer.forCurrentThread().read(fullPath, size);
+    event.size = buffer.length();
+    this.statistics.count(Statistics.Counter.BYTES_READ, buffer.length());
+    return buffer;
+  }
+
+  @NotNull
+  private ReadBuffer read(@NotNull InputStream in, long size, Events.@NotNull ClassParsed event, Statistics.@NotNull Timer timer)
+    throws IOException {
+    timer.enter(Statistics.Phase.READ);
+    final var buffer = ReadBuffer.forCurrentThread().read(in, size);
+    event.size = buffer.length();
+    this.statistics.count(Statistics.Counter.BYTES_READ, buffer.length());
+    return buffer;
+  }
 
-  private boolean verbose = false;
+  private void removeClass(@NotNull ClassNode cn) {
+    final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> list;
+    if ((cn.access & Opcodes.ACC_MODULE) != 0) {
+      list = this.moduleInfo;
+    }
+    else if (cn.name.endsWith("/" + WellKnown.Names.PACKAGE_INFO)) {
+      list = this.packageInfo;
+    }
+    else {
+      list = this.classFiles;
+    }
+    final var name = ClassPath.keyOf(list == this.moduleInfo, cn);
+    final var instances = list.get(name);
+    if (instances != null) {
+      instances.values().removeIf(instance -> instance == cn);
+      if (instances.isEmpty()) {
+        list.remove(name);
+      }
+    }
+  }
+
+  private static void removeIf(@Nullable List<AnnotationNode> annotations, @NotNull Predicate<AnnotationNode> predicate) {
+    if (annotations != null) {
+      annotations.removeIf(predicate);
+    }
+  }
 
   /**
-   * Gathers all class files into modules and packages and constructs a Java application from them.
+   * Re-examines all class files in one of the folders that were added to this class path, applying any changes found.
+   * <p>
+   * This is a (relatively expensive) fallback for when the individual changes to a folder are not known.
    *
-   * @return A Java application containing all discovered class files, grouped into modules and packages.
+   * @param folder The folder to rescan (as passed to {@link #add(Path)}).
+   *
+   * @return The (internal) names of the packages affected by the changes ({@code ""} for top-level types).
+   *
+   * @throws IOException           When something went wrong while looking through {@code folder}.
+   * @throws IllegalStateException When incremental updates have not been enabled (see {@link #setIncremental(boolean)}).
    */
   @NotNull
-  public JavaApplication buildApplication() {
+  public SortedSet<@NotNull String> rescan(@NotNull Path folder) throws IOException {
+    if (this.sources == null) {
+      throw new IllegalStateException("Incremental updates have not been enabled.");
+    }
+    final var affected = new TreeSet<String>();
+    for (final var source : List.copyOf(this.sources.keySet())) {
+      if (source.startsWith(folder) && !Files.exists(source)) {
+        affected.addAll(this.update(folder, source));
+      }
+    }
+    final List<Path> classFiles;
+    try (final var files = Files.walk(folder)) {
+      classFiles = files.filter(PathUtil::isClassFile).toList();
+    }
+    for (final var classFile : classFiles) {
+      affected.addAll(this.update(folder, classFile));
+    }
+    return affected;
+  }
+
+  /**
+   * Reports all modules to a listener.
+   * <p>
+   * Unlike {@link #emit(ApiListener)}, this does not release anything, so that it can be used repeatedly (in combination with
+   * {@link #update(Path, Path)}).
+   *
+   * @param listener The listener to report the modules to.
+   */
+  public void replayModules(@NotNull ApiListener listener) {
+    this.dropUndocumentedAnnotations();
+    final var modules = this.buildModules();
+    if (modules != null) {
+      modules.values().forEach(jm -> jm.replay(listener));
+    }
+  }
+
+  /**
+   * Reports a single package to a listener.
+   * <p>
+   * Unlike {@link #emit(ApiListener)}, this does not release anything, so that it can be used repeatedly (in combination with
+   * {@link #update(Path, Path)}).
+   *
+   * @param name     The (internal) name of the package.
+   * @param listener The listener to report the package to.
+   *
+   * @return {@code true} if the package was reported; {@code false} if it is not (or no longer) relevant.
+   */
+  public boolean replayPackage(@NotNull String name, @NotNull ApiListener listener) {
+    this.dropUndocumentedAnnotations();
+    final var prefix = name + '/';
+    final var classNames = new ArrayList<String>();
+    for (final var className : this.classFiles.keySet()) {
+      if (className.startsWith(prefix) && className.indexOf('/', prefix.length()) < 0) {
+        classNames.add(className);
+      }
+    }
+    classNames.sort(null);
+    final var jp = this.buildPackage(name, classNames);
+    if (jp == null) {
+      return false;
+    }
+    jp.replay(listener);
+    return true;
+  }
+
+  /**
+   * Reports all top-level types (i.e. types not in any package) to a listener.
+   * <p>
+   * Unlike {@link #emit(ApiListener)}, this does not release anything, so that it can be used repeatedly (in combination with
+   * {@link #update(Path, Path)}).
+   *
+   * @param listener The listener to report the top-level types to.
+   */
+  public void replayTopLevelTypes(@NotNull ApiListener listener) {
+    this.dropUndocumentedAnnotations();
+    for (final var name : this.indexTypes(false).topLevelTypes) {
+      final var jt = this.buildType(name, null);
+      if (jt != null) {
+        jt.replay(listener);
+      }
+    }
+  }
+
+  private void reportCounts(int packages, int topLevelTypes) {
+    this.statistics.count(Statistics.Counter.STRINGS, this.strings.size());
+    if (packages > 0) {
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Found %d packages(s).", packages);
+    }
+    if (topLevelTypes > 0) {
+      this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Found %d top-level type(s).", topLevelTypes);
+    }
+  }
+
+  private void reportDuplicates() {
+    // All class files have been loaded at this point, so there is no further need to recognize duplicates.
+    this.knownClasses.clear();
+    this.knownRejections.clear();
     for (final var entry : this.duplicates.entrySet()) {
       final var multiRelease = entry.getValue().size() > 1;
       for (final var subEntry : entry.getValue().entrySet()) {
         if (multiRelease) {
-          System.out.printf("[info] Found multiple files defining class %s (for %s); will use the one from %s.%n", entry.getKey(),
-                            subEntry.getKey(), subEntry.getValue());
+          this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.DUPLICATES,
+                                  "Found multiple files defining class %s (for %s); will use the one from %s.", entry.getKey(),
+                                  subEntry.getKey(), subEntry.getValue());
         }
         else {
-          System.out.printf("[info] Found multiple files defining class %s; will use the one from %s.%n", entry.getKey(),
-                            subEntry.getValue());
+          this.diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.DUPLICATES,
+                                  "Found multiple files defining class %s; will use the one from %s.", entry.getKey(),
+                                  subEntry.getValue());
         }
       }
     }
     this.duplicates.clear();
-    SortedMap<String, JavaModule> modules = null;
-    if (!this.moduleInfo.isEmpty()) {
-      modules = new TreeMap<>();
-      for (final var entry : this.moduleInfo.entrySet()) {
-        final var name = entry.getKey();
-        final var info = entry.getValue().get(0);
-        modules.put(name, new JavaModule(name, info));
-      }
-    }
-    if (modules != null) {
-      System.out.printf("[info] Found %d module(s).%n", modules.size());
-    }
-    SortedMap<String, JavaPackage> packages = null;
-    Map<String, SortedMap<String, JavaType>> packageTypes = null;
-    if (!this.packageInfo.isEmpty()) {
-      packages = new TreeMap<>();
-      packageTypes = new HashMap<>();
-      for (final var entry : this.packageInfo.entrySet()) {
-        var name = entry.getKey();
-        {
-          final int slash = name.lastIndexOf('/');
-          if (slash >= 0) {
-            name = name.substring(0, slash);
+  }
+
+  private void resolveNestedTypes(@NotNull JavaType jt) {
+    for (final var jc : jt.classes.values()) {
+      final var cn = jc.contents;
+      if (cn.innerClasses != null) {
+        for (final var innerClass : cn.innerClasses) {
+          if (!Objects.equals(innerClass.outerName, jt.fullName)) {
+            continue;
           }
-          else {
-            name = "";
+          final String nestedName = innerClass.name;
+          final var nestedClassFiles = this.instances(nestedName);
+          if (nestedClassFiles == null) {
+            this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.NESTED_TYPES,
+                                    "Skipping nested type %s (assumed to be neither public nor protected).", nestedName);
+            continue;
           }
+          final var nested = jt.addNestedType(nestedName);
+          nestedClassFiles.values().forEach(ncf -> nested.addClass(ncf, this.diagnostics));
+          this.resolveNestedTypes(nested);
         }
-        final var info = entry.getValue().get(0);
-        packages.put(name, new JavaPackage(name, info, packageTypes.computeIfAbsent(name, n -> new TreeMap<>())));
       }
     }
-    SortedMap<String, JavaType> topLevelTypes = null;
-    if (!this.classFiles.isEmpty()) {
-      System.out.printf("[info] Grouping %d class files into packages...%n", this.classFiles.size());
-      for (final var entry : this.classFiles.entrySet()) {
-        // Find the associated classes, filtering out nested ones.
-        Set<ClassNode> classes = null;
-        for (final var subEntry : entry.getValue().entrySet()) {
-          final var cn = subEntry.getValue();
-          // If it's nested in a class or method, we don't want it at this level.
-          if (cn.innerClasses != null && !cn.innerClasses.isEmpty()) {
-            // It's not always the first entry.
-            if (cn.innerClasses.stream().anyMatch(innerClass -> innerClass.name.equals(cn.name))) {
-              continue;
-            }
+  }
+
+  /** Scans a single jar file or folder, as part of {@link #addConcurrently(List)}. */
+  private void scan(@NotNull Path jarOrFolder, @NotNull ForkJoinPool pool, @NotNull BlockingQueue<@NotNull ScannedClass> classes) {
+    final var timer = this.statistics.timer();
+    timer.enter(Statistics.Phase.DISCOVERY);
+    Path archiveRoot = null;
+    IOException failure = null;
+    try {
+      final Path classRoot;
+      if (PathUtil.isDirectory(jarOrFolder)) {
+        classRoot = jarOrFolder;
+      }
+      else if (PathUtil.isArchive(jarOrFolder)) {
+        final var jarFileSystem = ClassPath.openJar(jarOrFolder);
+        this.jarFileSystems.add(jarFileSystem);
+        archiveRoot = jarFileSystem.getPath("/");
+        classRoot = ClassPath.classRoot(jarOrFolder, archiveRoot);
+      }
+      else {
+        classRoot = null;
+      }
+      if (classRoot != null) {
+        this.walk(classRoot, timer, (file, size, classPath) -> {
+          final var event = new Events.ClassParsed();
+          event.begin();
+          CompletableFuture<@NotNull LoadedClass> load;
+          try {
+            // This needs a copy, as the class file is parsed on another thread.
+            final var contents = this.read(file, size, event, timer).toByteArray();
+            load = CompletableFuture.supplyAsync(() -> {
+              final var parseTimer = this.statistics.timer();
+              try {
+                return this.parse(file, event, contents, contents.length, parseTimer);
+              }
+              finally {
+                parseTimer.enter(null);
+              }
+            }, pool);
           }
-          if (classes == null) {
-            classes = new HashSet<>();
+          catch (IOException ex) {
+            load = CompletableFuture.completedFuture(new LoadedClass(file, event, 0, null, null, null, ex));
           }
-          classes.add(cn);
-        }
-        // No non-nested classes -> no type
-        if (classes == null) {
-          continue;
-        }
-        final var name = entry.getKey();
-        final JavaType jt;
-        {
-          final var slash = name.lastIndexOf('/');
-          if (slash <= 0) {
-            if (topLevelTypes == null) {
-              topLevelTypes = new TreeMap<>();
-            }
-            topLevelTypes.put(name, jt = new JavaType(name, null));
+          timer.enter(null);
+          try {
+            classes.put(new ScannedClass(load, classPath, null));
           }
-          else {
-            if (packages == null) {
-              packages = new TreeMap<>();
-            }
-            if (packageTypes == null) {
-              packageTypes = new HashMap<>();
-            }
-            final var packageName = name.substring(0, slash);
-            final var types = packageTypes.computeIfAbsent(packageName, n -> new TreeMap<>());
-            final var jp = packages.computeIfAbsent(packageName, n -> new JavaPackage(n, null, types));
-            types.put(name, jt = new JavaType(name, jp));
+          catch (InterruptedException ex) {
+            // Keep the interrupt, so that the scan is not just stopped but also abandoned (see below).
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning %s.".formatted(jarOrFolder));
           }
-        }
-        for (final var cn : classes) {
-          jt.addClass(cn, this.verbose);
-        }
+        });
       }
     }
-    if (packages != null) {
-      System.out.printf("[info] Found %d packages(s).%n", packages.size());
-    }
-    if (topLevelTypes != null) {
-      System.out.printf("[info] Found %d top-level type(s).%n", topLevelTypes.size());
-    }
-    System.out.println("[info] Resolving nested types...");
-    this.resolveNestedTypesInPackages(packages);
-    this.resolveNestedTypes(topLevelTypes);
-    this.close();
-    return new JavaApplication(modules, packages, topLevelTypes);
-  }
-
-  /**
-   * Looks for class files in a jar file or a folder.
-   *
-   * @param jarOrFolder A path to a jar file or a folder.
-   *
-   * @throws IOException When something went wrong while looking through {@code jarOrFolder}.
-   */
-  public void add(@NotNull Path jarOrFolder) throws IOException {
-    if (PathUtil.isDirectory(jarOrFolder)) {
-      this.add(jarOrFolder, jarOrFolder);
+    catch (IOException ex) {
+      failure = ex;
     }
-    else if (PathUtil.isJarFile(jarOrFolder)) {
-      final FileSystem jarFileSystem = FileSystems.newFileSystem(jarOrFolder, PathUtil.class.getClassLoader());
-      this.add(jarOrFolder, jarFileSystem.getPath("/"));
-      this.jarFileSystems.add(jarFileSystem);
+    finally {
+      timer.enter(null);
     }
-  }
-
-  private void add(@NotNull Path context, @NotNull Path path) throws IOException {
-    System.out.printf("[info] Looking for class files in %s...%n", context);
-    try (final var classes = Files.walk(path).filter(PathUtil::isClassFile)) {
-      classes.forEach(classFile -> {
-        // Filter out some classes based purely on their location.
-        var classPath = path.relativize(classFile);
-        final int parts = classPath.getNameCount();
-        if (parts > 1 && "META-INF".equals(classPath.getName(0).toString())) {
-          // Assumption: nothing under here matters unless it is specifically under a "versions/<integer>" path.
-          // FIXME: This logic should only apply when MANIFEST.MF has 'Multi-Release: true'.
-          if (!classPath.startsWith("META-INF/versions/") || parts <= 3) {
-            return;
-          }
-        }
-        // Any other places we should explicitly avoid class files from? Maybe ensure all path parts are valid Java identifiers?
-        this.addClass(classFile, classPath, context);
-      });
+    try {
+      // Nested archives are handled after the contents of the archive itself have been added.
+      classes.put(new ScannedClass(null, failure == null ? archiveRoot : null, failure));
     }
-  }
-
-  private void addClass(@NotNull Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> list, @NotNull ClassNode contents,
-                        boolean ignoreVersion, @NotNull Path path, @NotNull Path context) {
-    final var instances = list.computeIfAbsent(contents.name, n -> new HashMap<>());
-    final int version = ignoreVersion ? 0 : contents.version;
-    if (instances.containsKey(version)) {
-      final var duplicateInstances = this.duplicates.computeIfAbsent(contents.name, n -> new HashMap<>());
-      duplicateInstances.put(ignoreVersion ? "???" : Util.runtimeVersion(version), "%s (in %s)".formatted(path, context));
+    catch (InterruptedException ex) {
+      // The results are no longer wanted.
     }
-    instances.put(version, contents);
   }
 
-  private void addClass(@NotNull Path fullPath, @NotNull Path path, @NotNull Path context) {
+  /** Determines whether a loaded class should be included, adding it to this class path if so. */
+  private void select(@NotNull LoadedClass loaded, @NotNull Path path, @NotNull Path context) {
+    final var event = loaded.event;
+    final var fullPath = loaded.fullPath;
+    var fingerprint = loaded.fingerprint;
+    // A class parsed from the original class file, to be added to the class cache.
+    var parsed = loaded.parsed;
     try {
-      final var cn = ASMUtil.readClassFile(fullPath);
+      final var cn = loaded.cn;
+      if (cn == null) {
+        if (loaded.failure != null) {
+          // Reported below, like any other problem.
+          throw loaded.failure;
+        }
+        // Identical to a class file rejected before.
+        return;
+      }
+      final var deduplicate = this.sources == null;
+      event.className = cn.name;
+      this.timer.enter(Statistics.Phase.FILTER);
       final Map<@NotNull String, Map<@NotNull Integer, @NotNull ClassNode>> list;
       final boolean ignoreVersion;
       if ((cn.access & Opcodes.ACC_MODULE) != 0) {
         if (cn.module == null) {
-          System.out.printf("[warning] Skipping %s because it is a module which contains no module information.%n", cn.name);
+          this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.MODULES,
+                                  "Skipping %s because it is a module which contains no module information.", cn.name);
+          this.statistics.count(Statistics.Counter.CLASSES_REJECTED, 1);
+          event.rejectedReason = "module without module information";
           return;
         }
-        if (!cn.name.endsWith("/" + WellKnown.Names.MODULE_INFO)) {
-          System.out.printf("[warning] Found module in %s but would have expected that to be called 'module-info'.%n", cn.name);
+        if (!WellKnown.Names.MODULE_INFO.equals(cn.name)) {
+          this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.MODULES,
+                                  "Found module in %s but would have expected that to be called 'module-info'.", cn.name);
         }
         // No other reason to exclude a module - we need to document it even if it has no annotations or contents.
         list = this.moduleInfo;
@@ -237,9 +1537,10 @@ public final class ClassPath implements AutoCloseable {
         // We currently only care about any annotations that may be set on the package. Their (run-time) visibility does not matter.
         // FIXME: Do we need to check both regular and type annotations here?
         if (!ASMUtil.isAnnotated(cn)) {
-          if (this.verbose) {
-            System.out.printf("[info] Skipping %s because it includes no annotations.%n", ASMUtil.describe(cn));
-          }
+          this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.SELECTION,
+                                  () -> "Skipping %s because it includes no annotations.".formatted(ASMUtil.describe(cn)));
+          this.statistics.count(Statistics.Counter.CLASSES_REJECTED, 1);
+          event.rejectedReason = "package-info without annotations";
           return;
         }
         list = this.packageInfo;
@@ -249,93 +1550,310 @@ public final class ClassPath implements AutoCloseable {
       else {
         // We only want public classes.
         if ((cn.access & Constants.ACC_VISIBLE) == 0) {
-          if (this.verbose) {
-            System.out.printf("[info] Skipping %s because it is not externally visible.%n", ASMUtil.describe(cn));
-          }
+          this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.SELECTION,
+                                  () -> "Skipping %s because it is not externally visible.".formatted(ASMUtil.describe(cn)));
+          this.statistics.count(Statistics.Counter.CLASSES_REJECTED, 1);
+          event.rejectedReason = "not externally visible";
           return;
         }
         if ((cn.access & Opcodes.ACC_SYNTHETIC) != 0) {
-          if (this.verbose) {
-            System.out.printf("[info] Skipping %s because it is synthetic.%n", ASMUtil.describe(cn));
-          }
+          this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.SELECTION,
+                                  () -> "Skipping %s because it is synthetic.".formatted(ASMUtil.describe(cn)));
+          this.statistics.count(Statistics.Counter.CLASSES_REJECTED, 1);
+          event.rejectedReason = "synthetic";
           return;
         }
         // Any other reasons to exclude?
         list = this.classFiles;
         ignoreVersion = false;
       }
-      if (this.verbose) {
-        System.out.printf("[info] Selected %s for inclusion in the public API.%n", ASMUtil.describe(cn));
+      this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.SELECTION,
+                              () -> "Selected %s for inclusion in the public API.".formatted(ASMUtil.describe(cn)));
+      this.statistics.count(Statistics.Counter.CLASSES_SELECTED, 1);
+      this.statistics.count(Statistics.Counter.FIELDS, cn.fields.size());
+      this.statistics.count(Statistics.Counter.METHODS, cn.methods.size());
+      if (parsed != null) {
+        // This must happen before anything (like dropping undocumented annotations) modifies the class.
+        this.cacheClass(fingerprint, parsed, true);
+        parsed = null;
       }
       this.addClass(list, cn, ignoreVersion, path, context);
+      if (deduplicate) {
+        this.knownClasses.put(fingerprint, cn);
+      }
+      // Spilling is not compatible with incremental updates, which need the class nodes to stay around.
+      if (list == this.classFiles && this.memoryBudget > 0 && this.sources == null && !event.deduplicated) {
+        this.retainedSize += (long) loaded.size * ClassPath.RETAINED_SIZE_FACTOR;
+        if (this.retainedSize > this.memoryBudget) {
+          this.spill();
+        }
+      }
+      if (this.sources != null && fullPath.getFileSystem() == FileSystems.getDefault()) {
+        this.sources.put(fullPath, cn);
+      }
+      if (this.undocumentedAnnotationsDropped) {
+        ClassPath.dropAnnotations(cn, this.undocumentedAnnotations());
+      }
     }
     catch (Exception ex) {
-      System.err.printf("[error] Could not load class from %s: %s%n", fullPath, ex);
+      this.diagnostics.report(Diagnostics.Level.ERROR, Diagnostics.Category.DISCOVERY, "Could not load class from %s: %s", fullPath, ex);
+      this.statistics.count(Statistics.Counter.CLASSES_FAILED, 1);
+      event.rejectedReason = "could not be loaded: " + ex;
+      // Report the problem for every copy.
+      fingerprint = null;
     }
-  }
-
-  @Override
-  public void close() {
-    for (final var fs : this.jarFileSystems) {
-      try {
-        fs.close();
+    finally {
+      if (fingerprint != null && event.rejectedReason != null && this.sources == null) {
+        this.knownRejections.putIfAbsent(fingerprint, event.rejectedReason);
       }
-      catch (Exception ex) {
-        System.out.printf("[warning] Could not clean up jar file system: %s%n", ex);
+      if (fingerprint != null && parsed != null) {
+        this.cacheClass(fingerprint, parsed, false);
+      }
+      if (event.shouldCommit()) {
+        event.source = fullPath.toUri().toString();
+        event.commit();
       }
     }
-    this.classFiles.clear();
-    this.duplicates.clear();
-    this.jarFileSystems.clear();
-    this.moduleInfo.clear();
-    this.packageInfo.clear();
   }
 
-  private void resolveNestedTypes(@NotNull JavaType jt) {
-    for (final var jc : jt.classes.values()) {
-      final var cn = jc.contents;
-      if (cn.innerClasses != null) {
-        for (final var innerClass : cn.innerClasses) {
-          if (!Objects.equals(innerClass.outerName, jt.fullName)) {
-            continue;
-          }
-          final String nestedName = innerClass.name;
-          final var nestedClassFiles = this.classFiles.get(nestedName);
-          if (nestedClassFiles == null) {
-            System.out.printf("[warning] Skipping nested type %s (assumed to be neither public nor protected).%n", nestedName);
-            continue;
-          }
-          final var nested = jt.addNestedType(nestedName);
-          nestedClassFiles.values().forEach(ncf -> nested.addClass(ncf, this.verbose));
-          this.resolveNestedTypes(nested);
+  /**
+   * Sets the on-disk cache of extracted class information to use.
+   * <p>
+   * Class files found in the cache are not parsed; all others are added to it. The cache is not closed along with this class path.
+   *
+   * @param classCache The class cache to use, or {@code null} to not use one.
+   */
+  public void setClassCache(@Nullable ClassCache classCache) {
+    this.classCache = classCache;
+  }
+
+  /**
+   * Sets the lookup to use for classes that are not part of this class path, like annotation types defined in dependencies.
+   *
+   * @param dependencies The lookup to use (typically backed by a {@link DependencyIndex}); it takes an internal class name and
+   *                     returns information about that class, or {@code null} if it is not known.
+   */
+  public void setDependencies(@Nullable Function<@NotNull String, @Nullable ClassInfo> dependencies) {
+    this.dependencies = dependencies;
+  }
+
+  /**
+   * Sets the reporter to use for diagnostics.
+   * <p>
+   * It is flushed whenever this class path is {@linkplain #close() closed}.
+   *
+   * @param diagnostics The reporter to use for diagnostics.
+   */
+  public void setDiagnostics(@NotNull Diagnostics diagnostics) {
+    this.diagnostics = diagnostics;
+  }
+
+  /**
+   * Enables or disables the omission of annotations whose types are not marked {@link Documented @Documented}.
+   * <p>
+   * Annotation types are looked up in this class path first, then via the lookup set using {@link #setDependencies(Function)}.
+   * Annotations of unknown types are always retained.
+   *
+   * @param yes Indicates whether only annotations whose types are marked {@link Documented @Documented} should be retained.
+   */
+  public void setDocumentedAnnotationsOnly(boolean yes) {
+    this.documentedAnnotationsOnly = yes;
+  }
+
+  /**
+   * Enables or disables support for incremental updates (via {@link #update(Path, Path)}).
+   * <p>
+   * This must be enabled before adding any folders.
+   *
+   * @param yes Indicates whether incremental updates should be supported.
+   */
+  public void setIncremental(boolean yes) {
+    this.sources = yes ? new HashMap<>() : null;
+  }
+
+  /**
+   * Sets the (approximate) amount of heap to use for class files.
+   * <p>
+   * Whenever the estimated heap usage of the selected class files exceeds this budget, they are moved to a temporary file on disk
+   * (grouped by package), to be loaded again only when their package is processed. This is most effective in combination with
+   * {@link #emit(ApiListener)}; {@link #buildApplication()} necessarily holds the entire model in memory. It is also ignored when
+   * incremental updates are enabled.
+   *
+   * @param bytes The memory budget, in bytes; 0 (the default) means there is no limit.
+   */
+  public void setMemoryBudget(long bytes) {
+    this.memoryBudget = Math.max(0, bytes);
+  }
+
+  /**
+   * Sets which archives nested inside the jar files (and other archives) added to this class path should be looked at.
+   * <p>
+   * This applies to archives nested at any depth (like jar files inside a war file inside an ear file); the patterns are matched
+   * against their paths relative to the archive containing them. Nested archives are read into memory rather than extracted. For
+   * a nested war or jmod file, only the classes in {@code WEB-INF/classes} or {@code classes} are used; unlike for top-level jar
+   * files, nested Spring Boot "fat jars" are not recognized as such.
+   *
+   * @param globs Glob patterns (as for {@link FileSystem#getPathMatcher(String)}, without the {@code glob:} prefix), like
+   *              {@code BOOT-INF/lib/*.jar} or {@code WEB-INF/lib/*.jar}; an empty list (the default) means nested archives are
+   *              ignored.
+   */
+  public void setNestedArchives(@NotNull List<@NotNull String> globs) {
+    final var fileSystem = FileSystems.getDefault();
+    this.nestedArchives = globs.stream().map(glob -> fileSystem.getPathMatcher("glob:" + glob)).toList();
+  }
+
+  /**
+   * Sets the number of threads to use for loading class files.
+   * <p>
+   * With more than one thread, folders (including the contents of jar files) are traversed in parallel, and the class files found
+   * are read and parsed in parallel too. Deciding which classes to include remains sequential, and is done in a fixed order, so
+   * this does not affect the result. The time spent in each phase is then the total over all threads, so it can exceed the
+   * elapsed time.
+   *
+   * @param threads The number of threads to use; 1 (the default) means everything is done on the calling thread.
+   */
+  public void setParallelism(int threads) {
+    this.parallelism = Math.max(1, threads);
+  }
+
+  /**
+   * Sets the statistics to update while processing.
+   * <p>
+   * Timing information is tracked for the current thread (and for any threads used for loading class files); so all other
+   * processing should be done on the thread that calls this.
+   *
+   * @param statistics The statistics to update.
+   */
+  public void setStatistics(@NotNull Statistics statistics) {
+    this.statistics = statistics;
+    this.timer = statistics.timer();
+  }
+
+
+  /** Moves all class files currently held in memory to disk. */
+  private void spill() {
+    final var phase = this.timer.enter(Statistics.Phase.SPILL);
+    var spilled = 0;
+    // Sorted, so that the classes in each package end up close together in the spill store.
+    for (final var entry : new TreeMap<>(this.classFiles).entrySet()) {
+      final var name = entry.getKey();
+      final var entries = this.spilledClassFiles.computeIfAbsent(name, n -> new HashMap<>());
+      for (final var instance : entry.getValue().entrySet()) {
+        final var spillEntry = this.spillClass(instance.getValue());
+        if (spillEntry == null) {
+          // Keep everything else in memory from now on.
+          this.memoryBudget = 0;
+          this.timer.enter(phase);
+          return;
         }
+        entries.put(instance.getKey(), spillEntry);
       }
+      this.classFiles.remove(name);
+      spilled += entry.getValue().size();
     }
+    this.retainedSize = 0;
+    // Those would otherwise keep the spilled class nodes alive.
+    this.knownClasses.clear();
+    this.diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.GENERAL,
+                            "Moved %d class(es) to disk to stay within the memory budget (%,d bytes spilled so far).", spilled,
+                            Objects.requireNonNull(this.spillStore).size());
+    this.timer.enter(phase);
   }
 
-  private void resolveNestedTypes(@Nullable SortedMap<String, JavaType> types) {
-    if (types == null) {
-      return;
+  @Nullable
+  private SpillStore.Entry spillClass(@NotNull ClassNode cn) {
+    final var phase = this.timer.enter(Statistics.Phase.SPILL);
+    try {
+      if (this.spillStore == null) {
+        this.spillStore = new SpillStore();
+      }
+      final var contents = ASMUtil.writeClass(cn);
+      final var entry = this.spillStore.put(contents);
+      this.statistics.count(Statistics.Counter.CLASSES_SPILLED, 1);
+      this.statistics.count(Statistics.Counter.BYTES_SPILLED, contents.length);
+      return entry;
+    }
+    catch (IOException ex) {
+      this.diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.GENERAL,
+                              "Could not move class %s to disk; keeping class files in memory instead: %s", cn.name, ex);
+      return null;
+    }
+    finally {
+      this.timer.enter(phase);
     }
-    types.values().forEach(this::resolveNestedTypes);
   }
 
-  private void resolveNestedTypesInPackages(@Nullable SortedMap<String, JavaPackage> packages) {
-    if (packages == null) {
-      return;
+  /**
+   * Applies a change to a class file in one of the folders that were added to this class path.
+   * <p>
+   * Any class previously loaded from the file is removed; if the file (still) exists, it is then loaded again.
+   *
+   * @param folder    The folder containing the class file (as passed to {@link #add(Path)}).
+   * @param classFile The class file that was created, modified or deleted.
+   *
+   * @return The (internal) names of the packages affected by the change ({@code ""} for top-level types).
+   *
+   * @throws IllegalStateException When incremental updates have not been enabled (see {@link #setIncremental(boolean)}).
+   */
+  @NotNull
+  public SortedSet<@NotNull String> update(@NotNull Path folder, @NotNull Path classFile) {
+    if (this.sources == null) {
+      throw new IllegalStateException("Incremental updates have not been enabled.");
     }
-    for (final var jp : packages.values()) {
-      this.resolveNestedTypes(jp.types);
+    final var affected = new TreeSet<String>();
+    final var previous = this.sources.remove(classFile);
+    if (previous != null) {
+      this.removeClass(previous);
+      affected.add(ClassPath.packageOf(previous.name));
+    }
+    final var relativePath = folder.relativize(classFile);
+    if (PathUtil.isClassFile(classFile) && ClassPath.isRelevant(relativePath)) {
+      this.addClass(classFile, -1, relativePath, folder);
+      final var current = this.sources.get(classFile);
+      if (current != null) {
+        affected.add(ClassPath.packageOf(current.name));
+      }
     }
+    return affected;
   }
 
   /**
-   * Enables or disables verbose output.
-   *
-   * @param yes Indicates whether verbose output should be enabled.
+   * Walks a folder (or the root of a jar file), passing each relevant class file to an action.
+   * <p>
+   * The attributes obtained while walking are used as-is, so that each class file is only opened once, with a known size. This
+   * matters most for large exploded folders, where per-file system calls dominate.
    */
-  public void setVerbose(boolean yes) {
-    this.verbose = yes;
+  private void walk(@NotNull Path path, Statistics.@NotNull Timer timer, @NotNull ClassFileAction action) throws IOException {
+    Files.walkFileTree(path, new SimpleFileVisitor<>() {
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+        final long size;
+        if (attributes.isRegularFile() && file.getFileName().toString().endsWith(".class")) {
+          size = attributes.size();
+        }
+        else if (attributes.isSymbolicLink() && PathUtil.isClassFile(file)) {
+          size = -1;
+        }
+        else {
+          return FileVisitResult.CONTINUE;
+        }
+        ClassPath.this.statistics.count(Statistics.Counter.CLASS_FILES, 1);
+        final var classPath = path.relativize(file);
+        if (ClassPath.isRelevant(classPath)) {
+          action.accept(file, size, classPath);
+          timer.enter(Statistics.Phase.DISCOVERY);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+  }
+
+  @NotNull
+  private Predicate<AnnotationNode> undocumentedAnnotations() {
+    final var documented = new HashMap<String, Boolean>();
+    return an -> !documented.computeIfAbsent(an.desc, this::isDocumented);
   }
 
 }
@@ -0,0 +1,193 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipFile;
+
+/**
+ * A thread-safe index of class metadata for dependencies (jar files and folders), and the Java platform classes.
+ * <p>
+ * Jar files are indexed lazily, as a whole, on the first lookup that needs them; after that, their index is shared by all users of
+ * this instance. A single instance can therefore be shared by many concurrent API generations (like all modules in a Maven reactor),
+ * so that each jar is read at most once. A jar file that changes (in size or modification time) is re-indexed. Folders are not
+ * indexed (their contents tend to be in flux during a build); lookups in them read the relevant class file directly.
+ */
+public final class DependencyIndex {
+
+  /** Creates a new, empty, dependency index. */
+  public DependencyIndex() {
+  }
+
+  /** The indexes for the jar files seen so far. */
+  @NotNull
+  private final ConcurrentMap<@NotNull Path, @NotNull JarIndex> jars = new ConcurrentHashMap<>();
+
+  /** The number of times a jar file was actually read. */
+  @NotNull
+  private final AtomicInteger jarsRead = new AtomicInteger();
+
+  /** Platform classes looked up so far. */
+  @NotNull
+  private final ConcurrentMap<@NotNull String, @NotNull Optional<ClassInfo>> platformClasses = new ConcurrentHashMap<>();
+
+  /**
+   * Looks up a class, first in the specified dependencies (in order), then in the Java platform.
+   *
+   * @param dependencies The jar files and/or folders to look in.
+   * @param name         The (internal) name of the class to look for.
+   * @param diagnostics  The reporter to use for problems reading the dependencies; when a jar file is indexed as part of this
+   *                     lookup, problems reading any of its classes are reported here too.
+   *
+   * @return Information about the class, or {@code null} if it could not be found.
+   */
+  @Nullable
+  public ClassInfo find(@NotNull List<@NotNull Path> dependencies, @NotNull String name, @NotNull Diagnostics diagnostics) {
+    for (final var dependency : dependencies) {
+      final ClassInfo info;
+      if (PathUtil.isDirectory(dependency)) {
+        info = DependencyIndex.readClass(dependency.resolve(name + ".class"), diagnostics);
+      }
+      else {
+        info = this.jar(dependency).find(name, diagnostics);
+      }
+      if (info != null) {
+        return info;
+      }
+    }
+    return this.platformClasses.computeIfAbsent(name, DependencyIndex::readPlatformClass).orElse(null);
+  }
+
+  @NotNull
+  private JarIndex jar(@NotNull Path jarFile) {
+    final var stamp = DependencyIndex.stamp(jarFile);
+    return this.jars.compute(jarFile, (path, existing) -> {
+      if (existing != null && existing.stamp.equals(stamp)) {
+        return existing;
+      }
+      return new JarIndex(path, stamp);
+    });
+  }
+
+  /**
+   * Gets the number of times a jar file was read (and indexed) by this instance.
+   *
+   * @return The number of times a jar file was read.
+   */
+  public int jarsRead() {
+    return this.jarsRead.get();
+  }
+
+  @Nullable
+  private static ClassInfo readClass(@NotNull Path classFile, @NotNull Diagnostics diagnostics) {
+    if (!Files.isRegularFile(classFile)) {
+      return null;
+    }
+    try {
+      final var buffer = ReadBuffer.forCurrentThread().read(classFile);
+      return ClassInfo.read(buffer.bytes(), buffer.length());
+    }
+    catch (IOException | RuntimeException e) {
+      diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY, "Could not read class information from %s: %s",
+                         classFile, e);
+      return null;
+    }
+  }
+
+  @NotNull
+  private static Optional<ClassInfo> readPlatformClass(@NotNull String name) {
+    try (final InputStream in = ClassLoader.getSystemResourceAsStream(name + ".class")) {
+      return in == null ? Optional.empty() : Optional.of(ClassInfo.read(in.readAllBytes()));
+    }
+    catch (IOException | RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  @NotNull
+  private static String stamp(@NotNull Path file) {
+    try {
+      final var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+    }
+    catch (IOException e) {
+      return "";
+    }
+  }
+
+  /** The (lazily populated) index for a single jar file. */
+  private final class JarIndex {
+
+    @Nullable
+    private volatile Map<@NotNull String, @NotNull ClassInfo> classes;
+
+    @NotNull
+    private final Path path;
+
+    @NotNull
+    final String stamp;
+
+    JarIndex(@NotNull Path path, @NotNull String stamp) {
+      this.path = path;
+      this.stamp = stamp;
+    }
+
+    @Nullable
+    ClassInfo find(@NotNull String name, @NotNull Diagnostics diagnostics) {
+      var classes = this.classes;
+      if (classes == null) {
+        synchronized (this) {
+          classes = this.classes;
+          if (classes == null) {
+            classes = this.load(diagnostics);
+            this.classes = classes;
+          }
+        }
+      }
+      return classes.get(name);
+    }
+
+    @NotNull
+    private Map<@NotNull String, @NotNull ClassInfo> load(@NotNull Diagnostics diagnostics) {
+      DependencyIndex.this.jarsRead.incrementAndGet();
+      final var classes = new HashMap<String, ClassInfo>();
+      try (final var zip = new ZipFile(this.path.toFile())) {
+        final var entries = zip.entries();
+        while (entries.hasMoreElements()) {
+          final var entry = entries.nextElement();
+          // Versioned (META-INF/versions/N/...) entries are not relevant for the metadata we are interested in.
+          if (entry.isDirectory() || !entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/")) {
+            continue;
+          }
+          try (final var in = zip.getInputStream(entry)) {
+            final var buffer = ReadBuffer.forCurrentThread().read(in, entry.getSize());
+            final var info = ClassInfo.read(buffer.bytes(), buffer.length());
+            classes.put(info.name(), info);
+          }
+          catch (RuntimeException e) {
+            diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY,
+                               "Could not read class information from %s (in %s): %s", entry.getName(), this.path, e);
+          }
+        }
+      }
+      catch (IOException e) {
+        diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.DISCOVERY, "Could not index %s: %s", this.path, e);
+      }
+      return classes;
+    }
+
+  }
+
+}
@@ -0,0 +1,252 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+/**
+ * A leveled diagnostics reporter.
+ * <p>
+ * Messages below the configured level are not constructed at all: they are either passed as a {@link Supplier} (only invoked when
+ * the message will actually be written) or as a format string plus arguments (only formatted when the message will actually be
+ * written). Either way, a per-category counter is updated, so that a summary of what was suppressed can be reported.
+ */
+public final class Diagnostics {
+
+  /** Diagnostics that are discarded (but still counted). */
+  @NotNull
+  public static final Diagnostics NONE = new Diagnostics((level, message) -> {}, Level.ERROR);
+
+  /** The size (in characters) at which batched output is flushed. */
+  private static final int BATCH_SIZE = 8192;
+
+  /** A diagnostic level, from most to least severe. */
+  public enum Level {
+
+    /** Something went wrong, and the result will be incomplete. */
+    ERROR,
+
+    /** Something is unusual, but processing continues. */
+    WARNING,
+
+    /** General progress information. */
+    INFO,
+
+    /** Detailed information about decisions made for individual classes. */
+    DEBUG,
+
+    /** Detailed information about decisions made for individual members. */
+    TRACE;
+
+    /** The prefix used for this level in textual output. */
+    @NotNull
+    public final String prefix = "[" + this.name().toLowerCase(Locale.ROOT) + "] ";
+
+  }
+
+  /** A diagnostic category. */
+  public enum Category {
+
+    /** Annotation handling. */
+    ANNOTATIONS("annotations"),
+
+    /** Looking for and loading class files. */
+    DISCOVERY("class file discovery"),
+
+    /** Classes defined multiple times. */
+    DUPLICATES("duplicate classes"),
+
+    /** General information. */
+    GENERAL("general processing"),
+
+    /** Module information. */
+    MODULES("modules"),
+
+    /** Nested types. */
+    NESTED_TYPES("nested types"),
+
+    /** Selection of classes and members for inclusion in the API reference. */
+    SELECTION("class and member selection");
+
+    /** A description of the category, for use in summaries. */
+    @NotNull
+    public final String description;
+
+    Category(@NotNull String description) {
+      this.description = description;
+    }
+
+  }
+
+  /** The destination for diagnostics. */
+  @FunctionalInterface
+  public interface Sink {
+
+    /** Writes out any buffered diagnostics. */
+    default void flush() {
+    }
+
+    /**
+     * Writes a diagnostic.
+     *
+     * @param level   The diagnostic level.
+     * @param message The message.
+     */
+    void write(@NotNull Level level, @NotNull String message);
+
+  }
+
+  /** The level at or above which diagnostics are written. */
+  @NotNull
+  private final Level level;
+
+  /** The sink receiving the diagnostics. */
+  @NotNull
+  private final Sink sink;
+
+  /** The number of suppressed diagnostics, per category. */
+  @NotNull
+  private final AtomicIntegerArray suppressed = new AtomicIntegerArray(Category.values().length);
+
+  /** The number of written diagnostics, per category. */
+  @NotNull
+  private final AtomicIntegerArray written = new AtomicIntegerArray(Category.values().length);
+
+  /**
+   * Creates a diagnostics reporter.
+   *
+   * @param sink  The sink to write diagnostics to.
+   * @param level The least severe level that should be written.
+   */
+  public Diagnostics(@NotNull Sink sink, @NotNull Level level) {
+    this.level = level;
+    this.sink = sink;
+  }
+
+  /**
+   * Creates a sink writing to print streams, in batches.
+   * <p>
+   * Errors are written to {@code err} right away (after flushing anything already batched for {@code out}); everything else is
+   * batched, and written to {@code out} when enough has been collected, or when the sink is flushed.
+   *
+   * @param out The stream to write non-error diagnostics to.
+   * @param err The stream to write errors to.
+   *
+   * @return A new sink.
+   */
+  @NotNull
+  public static Sink batched(@NotNull PrintStream out, @NotNull PrintStream err) {
+    return new Sink() {
+
+      @NotNull
+      private final StringBuilder batch = new StringBuilder();
+
+      @Override
+      public synchronized void flush() {
+        if (!this.batch.isEmpty()) {
+          out.append(this.batch);
+          out.flush();
+          this.batch.setLength(0);
+        }
+      }
+
+      @Override
+      public synchronized void write(@NotNull Level level, @NotNull String message) {
+        if (level == Level.ERROR) {
+          this.flush();
+          err.append(level.prefix).append(message).append(System.lineSeparator());
+          err.flush();
+          return;
+        }
+        this.batch.append(level.prefix).append(message).append(System.lineSeparator());
+        if (this.batch.length() >= Diagnostics.BATCH_SIZE) {
+          this.flush();
+        }
+      }
+
+    };
+  }
+
+  /**
+   * Gets the number of diagnostics reported for a category (whether they were written or not).
+   *
+   * @param category The category.
+   *
+   * @return The number of diagnostics reported for the category.
+   */
+  public int count(@NotNull Category category) {
+    return this.suppressed.get(category.ordinal()) + this.written.get(category.ordinal());
+  }
+
+  /** Writes out any buffered diagnostics. */
+  public void flush() {
+    this.sink.flush();
+  }
+
+  /**
+   * Determines whether diagnostics at a particular level are written.
+   *
+   * @param level The level to check.
+   *
+   * @return {@code true} when diagnostics at {@code level} are written; {@code false} when they are suppressed.
+   */
+  public boolean isEnabled(@NotNull Level level) {
+    return level.compareTo(this.level) <= 0;
+  }
+
+  /**
+   * Reports a diagnostic.
+   *
+   * @param level    The diagnostic level.
+   * @param category The diagnostic category.
+   * @param format   The format string for the message; it is only formatted when the diagnostic is actually written.
+   * @param args     The arguments for the format string.
+   */
+  public void report(@NotNull Level level, @NotNull Category category, @NotNull String format, Object... args) {
+    if (this.isEnabled(level)) {
+      this.written.incrementAndGet(category.ordinal());
+      this.sink.write(level, args.length == 0 ? format : format.formatted(args));
+    }
+    else {
+      this.suppressed.incrementAndGet(category.ordinal());
+    }
+  }
+
+  /**
+   * Reports a diagnostic.
+   *
+   * @param level    The diagnostic level.
+   * @param category The diagnostic category.
+   * @param message  Provides the message; it is only invoked when the diagnostic is actually written.
+   */
+  public void report(@NotNull Level level, @NotNull Category category, @NotNull Supplier<@NotNull String> message) {
+    if (this.isEnabled(level)) {
+      this.written.incrementAndGet(category.ordinal());
+      this.sink.write(level, message.get());
+    }
+    else {
+      this.suppressed.incrementAndGet(category.ordinal());
+    }
+  }
+
+  /**
+   * Writes (at {@link Level#INFO}) a summary of the diagnostics that were suppressed, per category, if any.
+   * <p>
+   * This does nothing when informational diagnostics are themselves suppressed.
+   */
+  public void reportSuppressed() {
+    if (!this.isEnabled(Level.INFO)) {
+      return;
+    }
+    for (final var category : Category.values()) {
+      final var count = this.suppressed.get(category.ordinal());
+      if (count > 0) {
+        this.sink.write(Level.INFO, "Suppressed %d detailed diagnostic(s) about %s.".formatted(count, category.description));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds class files in a folder tree, listing its folders in parallel.
+ * <p>
+ * Each folder is listed by a separate task on a fork/join pool; a task forks tasks for the subfolders it finds, so that (idle)
+ * workers can steal those and a deep tree is spread over all workers. The class files found are produced in a fixed order (sorted
+ * by name, with the contents of a folder preceding those of its subfolders), regardless of the order in which the folders were
+ * actually listed.
+ * <p>
+ * To keep discovery from running arbitrarily far ahead of its consumer, subfolders are only listed eagerly while the number of
+ * class files found but not yet consumed is below a limit; beyond that, they are only listed once the consumer reaches them.
+ */
+public final class DirectoryWalker implements Iterator<DirectoryWalker.@NotNull ClassFile> {
+
+  /** The number of class files found but not yet consumed. */
+  @NotNull
+  private final AtomicInteger backlog = new AtomicInteger();
+
+  /** The class files of the folder being consumed. */
+  @NotNull
+  private Iterator<@NotNull ClassFile> files = List.<ClassFile>of().iterator();
+
+  /** The maximum number of class files found but not yet consumed before discovery stops listing folders ahead of the consumer. */
+  private final int maxBacklog;
+
+  /** The pool to list folders on. */
+  @NotNull
+  private final ForkJoinPool pool;
+
+  /** The folders still to be consumed, in order. */
+  @NotNull
+  private final Deque<@NotNull Listing> remaining = new ArrayDeque<>();
+
+  /** The statistics to update. */
+  @NotNull
+  private final Statistics statistics;
+
+  /**
+   * A class file that was found.
+   *
+   * @param path The path of the class file.
+   * @param size The size of the class file, or -1 if not known (as is the case for symbolic links).
+   */
+  public record ClassFile(@NotNull Path path, long size) {
+  }
+
+  /** The listing of a single folder. */
+  private final class Listing extends RecursiveAction {
+
+    /** Listings are never serialized, but fork/join tasks are serializable. */
+    private static final long serialVersionUID = 1L;
+
+    /** The problem encountered while listing the folder, if any. */
+    @Nullable
+    private IOException failure = null;
+
+    /** The class files in the folder, sorted by name. */
+    @NotNull
+    private final List<@NotNull ClassFile> files = new ArrayList<>();
+
+    /** The folder to list. */
+    @NotNull
+    private final Path folder;
+
+    /** Indicates whether this listing has been started. */
+    private boolean started = false;
+
+    /** The listings of the subfolders, sorted by name. */
+    @NotNull
+    private final List<@NotNull Listing> subfolders = new ArrayList<>();
+
+    Listing(@NotNull Path folder) {
+      this.folder = folder;
+    }
+
+    @Override
+    protected void compute() {
+      final var timer = DirectoryWalker.this.statistics.timer();
+      timer.enter(Statistics.Phase.DISCOVERY);
+      try (final var entries = Files.newDirectoryStream(this.folder)) {
+        for (final var entry : entries) {
+          final var attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+          if (attributes.isDirectory()) {
+            this.subfolders.add(new Listing(entry));
+          }
+          else if (attributes.isRegularFile() && entry.getFileName().toString().endsWith(".class")) {
+            this.files.add(new ClassFile(entry, attributes.size()));
+          }
+          else if (attributes.isSymbolicLink() && PathUtil.isClassFile(entry)) {
+            this.files.add(new ClassFile(entry, -1));
+          }
+        }
+      }
+      catch (IOException ex) {
+        this.failure = ex;
+        return;
+      }
+      finally {
+        timer.enter(null);
+      }
+      this.files.sort(Comparator.comparing(file -> file.path.getFileName().toString()));
+      this.subfolders.sort(Comparator.comparing(listing -> listing.folder.getFileName().toString()));
+      if (DirectoryWalker.this.backlog.addAndGet(this.files.size()) < DirectoryWalker.this.maxBacklog) {
+        for (final var subfolder : this.subfolders) {
+          subfolder.started = true;
+          subfolder.fork();
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Starts looking for class files in a folder tree.
+   *
+   * @param folder     The root of the folder tree.
+   * @param pool       The pool to list folders on.
+   * @param maxBacklog The number of class files that may be found ahead of their consumption; beyond that, discovery waits for the
+   *                   consumer.
+   * @param statistics The statistics to update; the time spent listing folders is charged to {@link Statistics.Phase#DISCOVERY}.
+   */
+  public DirectoryWalker(@NotNull Path folder, @NotNull ForkJoinPool pool, int maxBacklog, @NotNull Statistics statistics) {
+    this.maxBacklog = maxBacklog;
+    this.pool = pool;
+    this.statistics = statistics;
+    final var root = new Listing(folder);
+    this.start(root);
+    this.remaining.add(root);
+  }
+
+  /**
+   * Determines whether there are more class files.
+   *
+   * @return {@code true} if there are more class files; {@code false} otherwise.
+   *
+   * @throws UncheckedIOException When a folder could not be listed.
+   */
+  @Override
+  public boolean hasNext() {
+    while (!this.files.hasNext()) {
+      final var listing = this.remaining.poll();
+      if (listing == null) {
+        return false;
+      }
+      listing.join();
+      if (listing.failure != null) {
+        throw new UncheckedIOException(listing.failure);
+      }
+      // Joining guarantees that the decision whether to start the subfolder listings has been made.
+      for (var i = listing.subfolders.size() - 1; i >= 0; --i) {
+        final var subfolder = listing.subfolders.get(i);
+        this.start(subfolder);
+        this.remaining.push(subfolder);
+      }
+      this.files = listing.files.iterator();
+    }
+    return true;
+  }
+
+  /**
+   * Gets the next class file.
+   *
+   * @return The next class file.
+   *
+   * @throws NoSuchElementException When there are no more class files.
+   * @throws UncheckedIOException   When a folder could not be listed.
+   */
+  @NotNull
+  @Override
+  public ClassFile next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException();
+    }
+    this.backlog.decrementAndGet();
+    return this.files.next();
+  }
+
+  private void start(@NotNull Listing listing) {
+    if (!listing.started) {
+      listing.started = true;
+      this.pool.execute(listing);
+    }
+  }
+
+}
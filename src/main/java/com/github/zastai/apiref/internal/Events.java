@@ -0,0 +1,120 @@
+package com.github.zastai.apiref.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the hot paths of API reference generation.
+ * <p>
+ * These follow the usual JFR idiom: an event is created and {@linkplain Event#begin() begun} unconditionally, but any expensive
+ * field values are only computed when {@link Event#shouldCommit()} returns {@code true}. When no recording is active (or these
+ * events are disabled), the JIT eliminates the event objects, so this costs next to nothing.
+ */
+public final class Events {
+
+  private Events() {
+  }
+
+  /** The category for all events. */
+  private static final String CATEGORY = "API Reference";
+
+  /** Loading of a single class file (reading, parsing and filtering). */
+  @Category(Events.CATEGORY)
+  @Description("A class file was read and parsed, and either selected or rejected.")
+  @Label("Class File Parsed")
+  @Name("com.github.zastai.apiref.ClassParsed")
+  public static final class ClassParsed extends Event {
+
+    /** Indicates whether the class was loaded from the class cache, instead of being parsed. */
+    @Label("Cached")
+    public boolean cached;
+
+    /** The (internal) name of the class. */
+    @Label("Class Name")
+    public String className;
+
+    /** Indicates whether the class file was identical to one seen before, so that its earlier outcome was reused. */
+    @Label("Deduplicated")
+    public boolean deduplicated;
+
+    /** The reason the class was rejected, or {@code null} if it was selected. */
+    @Label("Rejected Reason")
+    public String rejectedReason;
+
+    /** The size of the class file. */
+    @DataAmount
+    @Label("Size")
+    public long size;
+
+    /** The class file. */
+    @Label("Source")
+    public String source;
+
+  }
+
+  /** Closing of a jar file. */
+  @Category(Events.CATEGORY)
+  @Description("A jar file that was scanned for class files was closed.")
+  @Label("Jar File Closed")
+  @Name("com.github.zastai.apiref.JarClosed")
+  public static final class JarClosed extends Event {
+
+    /** The jar file. */
+    @Label("Path")
+    public String path;
+
+  }
+
+  /** Opening of a jar file. */
+  @Category(Events.CATEGORY)
+  @Description("A jar file was opened, to scan it for class files.")
+  @Label("Jar File Opened")
+  @Name("com.github.zastai.apiref.JarOpened")
+  public static final class JarOpened extends Event {
+
+    /** The jar file. */
+    @Label("Path")
+    public String path;
+
+  }
+
+  /** Building of the model for a package. */
+  @Category(Events.CATEGORY)
+  @Description("The model for a package (with all its types) was built.")
+  @Label("Package Built")
+  @Name("com.github.zastai.apiref.PackageBuilt")
+  public static final class PackageBuilt extends Event {
+
+    /** The (internal) name of the package. */
+    @Label("Package Name")
+    public String packageName;
+
+    /** The number of (top-level) types in the package. */
+    @Label("Types")
+    public int types;
+
+  }
+
+  /** Rendering of a package to an output format. */
+  @Category(Events.CATEGORY)
+  @Description("A package was rendered to the output.")
+  @Label("Package Rendered")
+  @Name("com.github.zastai.apiref.PackageRendered")
+  public static final class PackageRendered extends Event {
+
+    /** The number of bytes written for the package, or -1 if not known. */
+    @DataAmount
+    @Label("Bytes Written")
+    public long bytesWritten;
+
+    /** The (internal) name of the package. */
+    @Label("Package Name")
+    public String packageName;
+
+  }
+
+}
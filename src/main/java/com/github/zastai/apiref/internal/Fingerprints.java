@@ -0,0 +1,152 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/** Methods for computing fingerprints of the inputs for an API reference, to determine whether it needs to be regenerated. */
+public interface Fingerprints {
+
+  /**
+   * Computes a fingerprint for a set of inputs and settings.
+   * <p>
+   * The fingerprint is based on the contents of the inputs (not their timestamps), so that rebuilding classes without changing them
+   * does not invalidate it. For a folder, all class files in it (and their paths relative to the folder) contribute.
+   *
+   * @param inputs   The jar files and/or folders used as input.
+   * @param settings Any settings affecting the generated reference (e.g. the output format).
+   *
+   * @return The fingerprint, as a string of hexadecimal digits.
+   *
+   * @throws IOException When one of the inputs could not be read.
+   */
+  @NotNull
+  static String compute(@NotNull List<@NotNull Path> inputs, @NotNull List<@NotNull String> settings) throws IOException {
+    return Fingerprints.compute(inputs, List.of(), settings);
+  }
+
+  /**
+   * Computes a fingerprint for a set of inputs, dependencies and settings.
+   * <p>
+   * Inputs contribute their contents, as for {@link #compute(List, List)}. Dependencies are only consulted, not documented, so they
+   * contribute just their paths, sizes and modification times (for a folder, those of all class files in it); this avoids reading
+   * every dependency jar in full on each build, while still noticing when one is rebuilt or replaced in place.
+   *
+   * @param inputs       The jar files and/or folders used as input.
+   * @param dependencies The jar files and/or folders consulted as dependencies.
+   * @param settings     Any settings affecting the generated reference (e.g. the output format).
+   *
+   * @return The fingerprint, as a string of hexadecimal digits.
+   *
+   * @throws IOException When one of the inputs or dependencies could not be read.
+   */
+  @NotNull
+  static String compute(@NotNull List<@NotNull Path> inputs, @NotNull List<@NotNull Path> dependencies,
+                        @NotNull List<@NotNull String> settings) throws IOException {
+    final var digest = Fingerprints.newDigest();
+    for (final var setting : settings) {
+      Fingerprints.update(digest, "setting:" + setting);
+    }
+    for (final var input : inputs) {
+      if (PathUtil.isDirectory(input)) {
+        Fingerprints.update(digest, "folder:");
+        final List<Path> classFiles;
+        try (final var files = Files.walk(input)) {
+          classFiles = files.filter(PathUtil::isClassFile).sorted().toList();
+        }
+        for (final var classFile : classFiles) {
+          Fingerprints.update(digest, "class:" + input.relativize(classFile).toString().replace('\\', '/'));
+          Fingerprints.update(digest, classFile);
+        }
+      }
+      else {
+        Fingerprints.update(digest, "file:");
+        Fingerprints.update(digest, input);
+      }
+    }
+    for (final var dependency : dependencies) {
+      Fingerprints.update(digest, "dependency:" + dependency);
+      if (PathUtil.isDirectory(dependency)) {
+        final List<Path> classFiles;
+        try (final var files = Files.walk(dependency)) {
+          classFiles = files.filter(PathUtil::isClassFile).sorted().toList();
+        }
+        for (final var classFile : classFiles) {
+          Fingerprints.update(digest, "class:" + dependency.relativize(classFile).toString().replace('\\', '/'));
+          Fingerprints.stamp(digest, classFile);
+        }
+      }
+      else {
+        Fingerprints.stamp(digest, dependency);
+      }
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Computes a fingerprint for a single class file (or any other content).
+   *
+   * @param contents The contents to compute the fingerprint for.
+   *
+   * @return The fingerprint, as a string of hexadecimal digits.
+   */
+  @NotNull
+  static String forContents(byte @NotNull [] contents) {
+    return Fingerprints.forContents(contents, contents.length);
+  }
+
+  /**
+   * Computes a fingerprint for a single class file (or any other content), held at the start of a buffer.
+   *
+   * @param contents A buffer starting with the contents to compute the fingerprint for.
+   * @param length   The length of the contents.
+   *
+   * @return The fingerprint, as a string of hexadecimal digits.
+   */
+  @NotNull
+  static String forContents(byte @NotNull [] contents, int length) {
+    final var digest = Fingerprints.newDigest();
+    digest.update(contents, 0, length);
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  @NotNull
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this Java runtime.", e);
+    }
+  }
+
+  private static void stamp(@NotNull MessageDigest digest, @NotNull Path file) throws IOException {
+    final var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    Fingerprints.update(digest, "size:" + attributes.size());
+    Fingerprints.update(digest, "modified:" + attributes.lastModifiedTime().toMillis());
+  }
+
+  private static void update(@NotNull MessageDigest digest, @NotNull Path file) throws IOException {
+    try (final InputStream in = Files.newInputStream(file)) {
+      final var size = in.transferTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+      Fingerprints.update(digest, "size:" + size);
+    }
+  }
+
+  private static void update(@NotNull MessageDigest digest, @NotNull String text) {
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+}
@@ -0,0 +1,307 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * A minimal streaming JSON writer.
+ * <p>
+ * Nothing is buffered beyond the current nesting state, so memory use does not depend on the size of the document. Each top-level
+ * value is terminated by a newline, making a sequence of top-level values usable as JSON Lines.
+ */
+public final class JsonWriter {
+
+  /** For each open array or object, whether it already contains at least one element. */
+  private boolean @NotNull [] hasElements = new boolean[16];
+
+  /** The number of currently open arrays and objects. */
+  private int depth = 0;
+
+  /** Indicates whether a property name has been written, and we are now expecting its value. */
+  private boolean expectingValue = false;
+
+  /** For each open array or object, whether it is an object. */
+  private boolean @NotNull [] isObject = new boolean[16];
+
+  /** The stream to write to. */
+  @NotNull
+  private final PrintStream out;
+
+  /**
+   * Creates a new JSON writer.
+   *
+   * @param out The stream to write to.
+   */
+  public JsonWriter(@NotNull PrintStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Starts an array.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter beginArray() {
+    return this.begin(false, '[');
+  }
+
+  /**
+   * Starts an object.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter beginObject() {
+    return this.begin(true, '{');
+  }
+
+  @NotNull
+  private JsonWriter begin(boolean object, char c) {
+    this.beforeValue();
+    if (this.depth == this.hasElements.length) {
+      this.hasElements = Arrays.copyOf(this.hasElements, this.depth * 2);
+      this.isObject = Arrays.copyOf(this.isObject, this.depth * 2);
+    }
+    this.hasElements[this.depth] = false;
+    this.isObject[this.depth] = object;
+    ++this.depth;
+    this.out.print(c);
+    return this;
+  }
+
+  private void beforeValue() {
+    if (this.depth == 0) {
+      return;
+    }
+    if (this.isObject[this.depth - 1]) {
+      if (!this.expectingValue) {
+        throw new IllegalStateException("A value inside a JSON object must be preceded by a property name.");
+      }
+      this.expectingValue = false;
+    }
+    else {
+      this.separate();
+    }
+  }
+
+  /**
+   * Gets the current nesting depth (i.e. the number of arrays and objects that have been started but not yet ended).
+   *
+   * @return The current nesting depth.
+   */
+  public int depth() {
+    return this.depth;
+  }
+
+  /**
+   * Ends the current array.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter endArray() {
+    return this.end(false, ']');
+  }
+
+  /**
+   * Ends the current object.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter endObject() {
+    return this.end(true, '}');
+  }
+
+  @NotNull
+  private JsonWriter end(boolean object, char c) {
+    if (this.depth == 0 || this.isObject[this.depth - 1] != object) {
+      throw new IllegalStateException("Mismatched end of JSON %s.".formatted(object ? "object" : "array"));
+    }
+    if (this.expectingValue) {
+      throw new IllegalStateException("A JSON property name was not followed by a value.");
+    }
+    --this.depth;
+    this.out.print(c);
+    this.afterValue();
+    return this;
+  }
+
+  private void afterValue() {
+    if (this.depth == 0) {
+      this.out.println();
+    }
+  }
+
+  /**
+   * Writes a property name; this must be followed by a value.
+   *
+   * @param name The property name.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter name(@NotNull String name) {
+    if (this.depth == 0 || !this.isObject[this.depth - 1]) {
+      throw new IllegalStateException("A JSON property name can only be written inside an object.");
+    }
+    if (this.expectingValue) {
+      throw new IllegalStateException("A JSON property name was not followed by a value.");
+    }
+    this.separate();
+    this.writeString(name);
+    this.out.print(':');
+    this.expectingValue = true;
+    return this;
+  }
+
+  /**
+   * Writes a {@code null} value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter nullValue() {
+    this.beforeValue();
+    this.out.print("null");
+    this.afterValue();
+    return this;
+  }
+
+  /**
+   * Writes a property, but only if its value is not {@code null}.
+   *
+   * @param name  The property name.
+   * @param value The property value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter optionalProperty(@NotNull String name, @Nullable String value) {
+    if (value != null) {
+      this.name(name).value(value);
+    }
+    return this;
+  }
+
+  private void separate() {
+    if (this.hasElements[this.depth - 1]) {
+      this.out.print(',');
+    }
+    else {
+      this.hasElements[this.depth - 1] = true;
+    }
+  }
+
+  /**
+   * Writes a boolean value.
+   *
+   * @param value The value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter value(boolean value) {
+    this.beforeValue();
+    this.out.print(value);
+    this.afterValue();
+    return this;
+  }
+
+  /**
+   * Writes a floating-point value; as JSON has no representation for infinities and NaN, those are written as strings.
+   *
+   * @param value The value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter value(double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return this.value(Double.toString(value));
+    }
+    this.beforeValue();
+    this.out.print(value);
+    this.afterValue();
+    return this;
+  }
+
+  /**
+   * Writes an integral value.
+   *
+   * @param value The value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter value(long value) {
+    this.beforeValue();
+    this.out.print(value);
+    this.afterValue();
+    return this;
+  }
+
+  /**
+   * Writes a string value (or {@code null}).
+   *
+   * @param value The value.
+   *
+   * @return This writer.
+   */
+  @NotNull
+  public JsonWriter value(@Nullable String value) {
+    if (value == null) {
+      return this.nullValue();
+    }
+    this.beforeValue();
+    this.writeString(value);
+    this.afterValue();
+    return this;
+  }
+
+  private void writeString(@NotNull String value) {
+    this.out.print('"');
+    final int length = value.length();
+    var start = 0;
+    for (var i = 0; i < length; ++i) {
+      final char c = value.charAt(i);
+      final String escape;
+      if (c == '"') {
+        escape = "\\\"";
+      }
+      else if (c == '\\') {
+        escape = "\\\\";
+      }
+      else if (c >= 0x20) {
+        continue;
+      }
+      else {
+        escape = switch (c) {
+          case '\b' -> "\\b";
+          case '\f' -> "\\f";
+          case '\n' -> "\\n";
+          case '\r' -> "\\r";
+          case '\t' -> "\\t";
+          default -> "\\u%04x".formatted((int) c);
+        };
+      }
+      if (i > start) {
+        this.out.append(value, start, i);
+      }
+      this.out.print(escape);
+      start = i + 1;
+    }
+    if (start == 0) {
+      this.out.print(value);
+    }
+    else if (start < length) {
+      this.out.append(value, start, length);
+    }
+    this.out.print('"');
+  }
+
+}
@@ -8,6 +8,32 @@ import java.nio.file.Path;
 /** Path-related utility methods. */
 public interface PathUtil {
 
+  /**
+   * Determines whether a given path refers to an archive that can contain class files.
+   * <p>
+   * This means that it must refer to an existing regular file whose name ends in {@code .jar}, {@code .war}, {@code .ear} or
+   * {@code .jmod}.
+   *
+   * @param path The path to check.
+   *
+   * @return {@code true} when {@code path} refers to an archive; {@code false} otherwise.
+   */
+  static boolean isArchive(@NotNull Path path) {
+    return Files.isRegularFile(path) && PathUtil.isArchiveName(path.getFileName().toString());
+  }
+
+  /**
+   * Determines whether a file name is that of an archive that can contain class files.
+   *
+   * @param name The file name (or path) to check.
+   *
+   * @return {@code true} when {@code name} ends in {@code .jar}, {@code .war}, {@code .ear} or {@code .jmod}; {@code false}
+   * otherwise.
+   */
+  static boolean isArchiveName(@NotNull String name) {
+    return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".jmod");
+  }
+
   /**
    * Determines whether a given path refers to a class file.
    * <p>
@@ -0,0 +1,177 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A reusable buffer for reading class files into, one per thread.
+ * <p>
+ * Reading a class file into a fresh array (or via {@link InputStream#readAllBytes()}, which grows temporary arrays as needed)
+ * creates garbage proportional to the size of every class file read. Instead, class files are read into this buffer, sized from the
+ * file or zip entry size when known, and parsed from there.
+ * <p>
+ * The contents are only valid until the next read on the same thread; anything that needs to keep them must copy them.
+ */
+public final class ReadBuffer {
+
+  /** The initial size of a buffer. */
+  private static final int INITIAL_SIZE = 16 * 1024;
+
+  /** The largest buffer size that is kept around for reuse; buffers grown beyond this are discarded after one use. */
+  private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+  /** The buffer for each thread. */
+  @NotNull
+  private static final ThreadLocal<ReadBuffer> BUFFERS = ThreadLocal.withInitial(ReadBuffer::new);
+
+  /** The buffer. */
+  private byte @NotNull [] bytes = new byte[ReadBuffer.INITIAL_SIZE];
+
+  /** The number of bytes in the buffer that are in use. */
+  private int length = 0;
+
+  private ReadBuffer() {
+  }
+
+  /**
+   * Gets the buffer's current contents; only the first {@link #length()} bytes are valid.
+   *
+   * @return The buffer's current contents.
+   */
+  public byte @NotNull [] bytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Gets the read buffer for the current thread.
+   *
+   * @return The read buffer for the current thread.
+   */
+  @NotNull
+  public static ReadBuffer forCurrentThread() {
+    return ReadBuffer.BUFFERS.get();
+  }
+
+  private void grow(int minimumSize) {
+    this.bytes = Arrays.copyOf(this.bytes, Math.max(minimumSize, Math.min(2 * this.bytes.length, Integer.MAX_VALUE - 8)));
+  }
+
+  /**
+   * Gets the number of valid bytes in the buffer.
+   *
+   * @return The number of valid bytes in the buffer.
+   */
+  public int length() {
+    return this.length;
+  }
+
+  /**
+   * Reads a file into this buffer, replacing its current contents.
+   *
+   * @param file The file to read.
+   *
+   * @return This buffer.
+   *
+   * @throws IOException When the file could not be read.
+   */
+  @NotNull
+  public ReadBuffer read(@NotNull Path file) throws IOException {
+    return this.read(file, -1);
+  }
+
+  /**
+   * Reads a file into this buffer, replacing its current contents.
+   * <p>
+   * When the size of the file is already known (for example from the attributes returned while walking a folder), this avoids
+   * having to query it again; for small files, the contents are then typically read using a single read operation.
+   *
+   * @param file The file to read.
+   * @param size The size of the file, or -1 if not known.
+   *
+   * @return This buffer.
+   *
+   * @throws IOException When the file could not be read.
+   */
+  @NotNull
+  public ReadBuffer read(@NotNull Path file, long size) throws IOException {
+    try (final var channel = Files.newByteChannel(file)) {
+      final var expectedSize = size < 0 ? channel.size() : size;
+      this.reset(expectedSize);
+      var buffer = ByteBuffer.wrap(this.bytes);
+      while (channel.read(buffer) >= 0) {
+        // Stop as soon as the expected amount was read, saving a read operation just to detect the end of the file.
+        if (buffer.position() == expectedSize) {
+          break;
+        }
+        if (!buffer.hasRemaining()) {
+          // The file is larger than reported (or is growing); make room for more.
+          final var position = buffer.position();
+          this.grow(position + 1);
+          buffer = ByteBuffer.wrap(this.bytes);
+          buffer.position(position);
+        }
+      }
+      this.length = buffer.position();
+    }
+    return this;
+  }
+
+  /**
+   * Reads a stream into this buffer, replacing its current contents.
+   *
+   * @param in   The stream to read; it is read to its end, but not closed.
+   * @param size The expected number of bytes (for example from a zip entry), or -1 if not known.
+   *
+   * @return This buffer.
+   *
+   * @throws IOException When the stream could not be read.
+   */
+  @NotNull
+  public ReadBuffer read(@NotNull InputStream in, long size) throws IOException {
+    this.reset(size);
+    var position = 0;
+    while (true) {
+      if (position == this.bytes.length) {
+        this.grow(position + 1);
+      }
+      final var read = in.read(this.bytes, position, this.bytes.length - position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+    this.length = position;
+    return this;
+  }
+
+  private void reset(long expectedSize) throws IOException {
+    if (expectedSize > Integer.MAX_VALUE - 8) {
+      throw new IOException("File too large to read (%d bytes).".formatted(expectedSize));
+    }
+    this.length = 0;
+    // Leave room for one more byte, so that reaching the end of the data does not require growing the buffer.
+    final var required = (int) Math.max(expectedSize + 1, 0);
+    if (this.bytes.length > ReadBuffer.MAX_RETAINED_SIZE && required <= ReadBuffer.MAX_RETAINED_SIZE) {
+      this.bytes = new byte[Math.max(ReadBuffer.INITIAL_SIZE, required)];
+    }
+    else if (this.bytes.length < required) {
+      this.bytes = new byte[Math.max(required, Math.min(2 * this.bytes.length, ReadBuffer.MAX_RETAINED_SIZE))];
+    }
+  }
+
+  /**
+   * Gets a copy of the valid contents of this buffer.
+   *
+   * @return A new array holding the valid contents of this buffer.
+   */
+  public byte @NotNull [] toByteArray() {
+    return Arrays.copyOf(this.bytes, this.length);
+  }
+
+}
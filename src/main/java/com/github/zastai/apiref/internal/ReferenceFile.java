@@ -0,0 +1,218 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An output file for a generated API reference.
+ * <p>
+ * The reference is written to a temporary file next to the target; {@link #commit()} then only replaces the target when the
+ * contents actually differ, so that its timestamp can serve as an up-to-date signal for build tools.
+ */
+public final class ReferenceFile implements AutoCloseable {
+
+  /** Counts the (uncompressed) bytes written to the reference. */
+  @NotNull
+  private final CountingOutputStream counter;
+
+  /** Indicates whether {@link #commit()} has been called. */
+  private boolean committed = false;
+
+  /** The file that should end up containing the reference. */
+  @NotNull
+  private final Path path;
+
+  /** The stream writing to {@link #temporaryPath}. */
+  @NotNull
+  private final PrintStream stream;
+
+  /** The temporary file receiving the reference while it is being generated. */
+  @NotNull
+  private final Path temporaryPath;
+
+  private ReferenceFile(@NotNull Path path, @NotNull Path temporaryPath, boolean compressed) throws IOException {
+    this.path = path;
+    this.temporaryPath = temporaryPath;
+    final var fileStream = Files.newOutputStream(temporaryPath);
+    final OutputStream os = compressed ? new AsyncGZipOutputStream(fileStream) : new BufferedOutputStream(fileStream);
+    this.counter = new CountingOutputStream(os);
+    this.stream = new PrintStream(this.counter, false, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates a new reference file.
+   *
+   * @param path The path of the reference file; its parent folder must exist.
+   *
+   * @return A new reference file.
+   *
+   * @throws IOException When the temporary file could not be created.
+   */
+  @NotNull
+  public static ReferenceFile create(@NotNull Path path) throws IOException {
+    return ReferenceFile.create(path, false);
+  }
+
+  /**
+   * Creates a new reference file.
+   * <p>
+   * When compression is requested, the contents are gzip-compressed on a separate thread while the reference is being written. As
+   * the compressed form is deterministic, unchanged contents are still detected by {@link #commit()}.
+   *
+   * @param path       The path of the reference file; its parent folder must exist.
+   * @param compressed Indicates whether the contents should be gzip-compressed.
+   *
+   * @return A new reference file.
+   *
+   * @throws IOException When the temporary file could not be created.
+   */
+  @NotNull
+  public static ReferenceFile create(@NotNull Path path, boolean compressed) throws IOException {
+    final var temporaryPath = ReferenceFile.createTemporaryFile(path);
+    try {
+      return new ReferenceFile(path, temporaryPath, compressed);
+    }
+    catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryPath);
+      throw e;
+    }
+  }
+
+  @NotNull
+  private static Path createTemporaryFile(@NotNull Path path) throws IOException {
+    final var folder = path.toAbsolutePath().getParent();
+    final var fileName = path.getFileName().toString();
+    // Not using Files.createTempFile(), because that restricts the permissions to the owner, and the file will end up in place.
+    while (true) {
+      final var suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+      try {
+        return Files.createFile(folder.resolve("." + fileName + "." + suffix + ".tmp"));
+      }
+      catch (FileAlreadyExistsException e) {
+        // Try again with another name.
+      }
+    }
+  }
+
+  /**
+   * Gets the number of bytes written to the reference so far (before any compression).
+   *
+   * @return The number of bytes written to the reference so far.
+   */
+  public long bytesWritten() {
+    return this.counter.count;
+  }
+
+  /**
+   * Finishes writing the reference, replacing the target file if (and only if) its contents have changed.
+   *
+   * @return {@code true} when the target file was created or replaced; {@code false} when it was already up to date.
+   *
+   * @throws IOException When writing the reference failed, or when the target file could not be replaced.
+   */
+  public boolean commit() throws IOException {
+    if (this.committed) {
+      throw new IllegalStateException("This reference file has already been committed.");
+    }
+    this.committed = true;
+    this.stream.close();
+    try {
+      // PrintStream swallows I/O errors, so check explicitly; we must not replace a good reference with a truncated one.
+      if (this.stream.checkError()) {
+        throw new IOException("Failed to write the reference to %s.".formatted(this.temporaryPath));
+      }
+      if (Files.isRegularFile(this.path) && Files.mismatch(this.temporaryPath, this.path) == -1) {
+        return false;
+      }
+      try {
+        Files.move(this.temporaryPath, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      }
+      catch (AtomicMoveNotSupportedException e) {
+        Files.move(this.temporaryPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      return true;
+    }
+    finally {
+      ReferenceFile.deleteQuietly(this.temporaryPath);
+    }
+  }
+
+  /**
+   * Closes the reference file; if it has not been committed (via {@link #commit()}), the generated contents are discarded and the
+   * target file is left untouched.
+   */
+  @Override
+  public void close() {
+    if (!this.committed) {
+      this.committed = true;
+      this.stream.close();
+      ReferenceFile.deleteQuietly(this.temporaryPath);
+    }
+  }
+
+  private static void deleteQuietly(@NotNull Path path) {
+    try {
+      Files.deleteIfExists(path);
+    }
+    catch (IOException ignored) {
+      // nothing we can do about it
+    }
+  }
+
+  /**
+   * Gets the target path for this reference file.
+   *
+   * @return The target path for this reference file.
+   */
+  @NotNull
+  public Path path() {
+    return this.path;
+  }
+
+  /**
+   * Gets the stream to which the reference should be written.
+   *
+   * @return The stream to which the reference should be written.
+   */
+  @NotNull
+  public PrintStream stream() {
+    return this.stream;
+  }
+
+  /** An output stream that counts the bytes written through it. */
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    /** The number of bytes written so far. */
+    private long count = 0;
+
+    CountingOutputStream(@NotNull OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      this.out.write(b);
+      ++this.count;
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) throws IOException {
+      this.out.write(b, off, len);
+      this.count += len;
+    }
+
+  }
+
+}
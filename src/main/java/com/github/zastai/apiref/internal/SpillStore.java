@@ -0,0 +1,138 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only store for blobs of data, backed by a temporary file.
+ * <p>
+ * This is used to move data out of the heap when it will not be needed for a while. Writes are buffered; reads are positional, so
+ * entries can be read back in any order. The file is deleted when the store is closed (or, failing that, when the JVM exits).
+ */
+public final class SpillStore implements AutoCloseable {
+
+  /** The size of the write buffer. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The write buffer; its contents logically start at {@link #flushed}. */
+  @NotNull
+  private final ByteBuffer buffer = ByteBuffer.allocate(SpillStore.BUFFER_SIZE);
+
+  /** The channel for the backing file. */
+  @NotNull
+  private final FileChannel channel;
+
+  /** The number of bytes written to the backing file so far. */
+  private long flushed = 0;
+
+  /**
+   * An entry in a spill store.
+   *
+   * @param offset The offset of the entry's data in the store.
+   * @param length The length of the entry's data.
+   */
+  public record Entry(long offset, int length) {
+  }
+
+  /**
+   * Creates a new spill store, backed by a new file in the given folder.
+   *
+   * @param folder The folder in which to create the backing file.
+   *
+   * @throws IOException When the backing file could not be created.
+   */
+  public SpillStore(@NotNull Path folder) throws IOException {
+    final var file = Files.createTempFile(folder, "apiref-", ".spill");
+    file.toFile().deleteOnExit();
+    this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  /**
+   * Creates a new spill store, backed by a new file in the system's temporary folder.
+   *
+   * @throws IOException When the backing file could not be created.
+   */
+  public SpillStore() throws IOException {
+    this(Path.of(System.getProperty("java.io.tmpdir")));
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.buffer.clear();
+    this.channel.close();
+  }
+
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.flushed += this.channel.write(this.buffer, this.flushed);
+    }
+    this.buffer.clear();
+  }
+
+  /**
+   * Reads an entry's data.
+   *
+   * @param entry The entry (as returned by {@link #put(byte[])}).
+   *
+   * @return The entry's data.
+   *
+   * @throws IOException When the data could not be read.
+   */
+  public byte @NotNull [] get(@NotNull Entry entry) throws IOException {
+    if (entry.offset + entry.length > this.flushed) {
+      this.flush();
+    }
+    final var data = ByteBuffer.allocate(entry.length);
+    while (data.hasRemaining()) {
+      if (this.channel.read(data, entry.offset + data.position()) < 0) {
+        throw new EOFException("Spill store entry at offset %d extends beyond the end of the store.".formatted(entry.offset));
+      }
+    }
+    return data.array();
+  }
+
+  /**
+   * Appends data to the store.
+   *
+   * @param data The data to store.
+   *
+   * @return The entry to use to read the data back (using {@link #get(Entry)}).
+   *
+   * @throws IOException When the data could not be written.
+   */
+  @NotNull
+  public Entry put(byte @NotNull [] data) throws IOException {
+    final var entry = new Entry(this.size(), data.length);
+    if (data.length > this.buffer.remaining()) {
+      this.flush();
+    }
+    if (data.length > this.buffer.remaining()) {
+      final var contents = ByteBuffer.wrap(data);
+      while (contents.hasRemaining()) {
+        this.flushed += this.channel.write(contents, this.flushed);
+      }
+    }
+    else {
+      this.buffer.put(data);
+    }
+    return entry;
+  }
+
+  /**
+   * Gets the total size of the data in this store.
+   *
+   * @return The total size of the data in this store, in bytes.
+   */
+  public long size() {
+    return this.flushed + this.buffer.position();
+  }
+
+}
@@ -0,0 +1,326 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-phase timing and throughput statistics for an API reference generation.
+ * <p>
+ * Time is tracked using {@linkplain Timer timers}, each of which belongs to a single thread. A timer is always in (at most) one
+ * phase, so that time spent in nested activities is only counted once. For each phase, wall-clock time, thread CPU time and
+ * allocated memory are recorded (the latter two only when supported by the JVM).
+ * <p>
+ * When statistics are not enabled, timers and counters do nothing; in particular, no timing information is queried.
+ */
+public final class Statistics {
+
+  /** Statistics that are not enabled. */
+  @NotNull
+  public static final Statistics DISABLED = new Statistics(false);
+
+  /** A processing phase. */
+  public enum Phase {
+
+    /** Looking for class files in jar files and folders. */
+    DISCOVERY("discovery"),
+
+    /** Reading class files. */
+    READ("read"),
+
+    /** Parsing class files. */
+    PARSE("parse"),
+
+    /** Determining which classes (and annotations) are relevant. */
+    FILTER("filter"),
+
+    /** Moving classes to disk (when over the memory budget), and loading them back. */
+    SPILL("spill"),
+
+    /** Grouping classes into modules, packages and types. */
+    GROUP("group"),
+
+    /** Resolving nested types. */
+    NESTED("nested"),
+
+    /** Producing output. */
+    FORMAT("format");
+
+    /** The key used for this phase in JSON output. */
+    @NotNull
+    public final String key;
+
+    Phase(@NotNull String key) {
+      this.key = key;
+    }
+
+  }
+
+  /** A counted quantity. */
+  public enum Counter {
+
+    /** The number of class files found. */
+    CLASS_FILES("classFiles", "class file(s) found"),
+
+    /** The number of bytes of class file data read. */
+    BYTES_READ("bytesRead", "byte(s) read"),
+
+    /** The number of class files parsed successfully. */
+    CLASSES_PARSED("classesParsed", "class(es) parsed"),
+
+    /** The number of classes loaded from the class cache (instead of being parsed). */
+    CLASSES_CACHED("classesCached", "class(es) loaded from the class cache"),
+
+    /** The number of class files that were identical to one seen before, so did not need to be parsed. */
+    CLASSES_DEDUPLICATED("classesDeduplicated", "class(es) identical to one seen before (not parsed again)"),
+
+    /** The number of class files that could not be read or parsed. */
+    CLASSES_FAILED("classesFailed", "class(es) failed to load"),
+
+    /** The number of classes that were rejected (for not being externally visible, for example). */
+    CLASSES_REJECTED("classesRejected", "class(es) rejected"),
+
+    /** The number of classes that were selected for inclusion in the API reference. */
+    CLASSES_SELECTED("classesSelected", "class(es) selected"),
+
+    /** The number of fields in the selected classes. */
+    FIELDS("fields", "field(s) in selected classes"),
+
+    /** The number of methods in the selected classes. */
+    METHODS("methods", "method(s) in selected classes"),
+
+    /** The number of selected classes that were moved to disk, to stay within the memory budget. */
+    CLASSES_SPILLED("classesSpilled", "class(es) spilled to disk"),
+
+    /** The number of bytes of class file data moved to disk. */
+    BYTES_SPILLED("bytesSpilled", "byte(s) spilled to disk"),
+
+    /** The number of distinct names and descriptors read from the class files (see {@link StringTable}). */
+    STRINGS("strings", "distinct name(s) and descriptor(s) in class files");
+
+    /** A description of this counter, for use in a summary. */
+    @NotNull
+    public final String description;
+
+    /** The key used for this counter in JSON output. */
+    @NotNull
+    public final String key;
+
+    Counter(@NotNull String key, @NotNull String description) {
+      this.description = description;
+      this.key = key;
+    }
+
+  }
+
+  /** Field offset for allocated bytes, in {@link #phases}. */
+  private static final int ALLOCATED = 2;
+
+  /** Field offset for CPU time, in {@link #phases}. */
+  private static final int CPU = 1;
+
+  /** The number of values recorded per phase, in {@link #phases}. */
+  private static final int PHASE_FIELDS = 3;
+
+  /** Field offset for wall-clock time, in {@link #phases}. */
+  private static final int WALL = 0;
+
+  /** The counters. */
+  @NotNull
+  private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+  /** Indicates whether statistics are enabled. */
+  private final boolean enabled;
+
+  /** The recorded values for each phase (wall-clock time, CPU time and allocated bytes). */
+  @NotNull
+  private final AtomicLongArray phases = new AtomicLongArray(Phase.values().length * Statistics.PHASE_FIELDS);
+
+  /** The time at which these statistics were created. */
+  private final long start;
+
+  /** Used to get CPU time and allocation information for the current thread, if enabled. */
+  @Nullable
+  private final ThreadMXBean threads;
+
+  /**
+   * Creates new statistics.
+   *
+   * @param enabled Indicates whether statistics should actually be collected.
+   */
+  public Statistics(boolean enabled) {
+    this.enabled = enabled;
+    this.start = System.nanoTime();
+    // Only touch the management classes when actually needed.
+    this.threads = enabled ? ManagementFactory.getThreadMXBean() : null;
+  }
+
+  private long allocatedBytes() {
+    if (this.threads instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemoryEnabled()) {
+      return threads.getCurrentThreadAllocatedBytes();
+    }
+    return 0;
+  }
+
+  /**
+   * Increments a counter.
+   *
+   * @param counter The counter to increment.
+   * @param amount  The amount to add to the counter.
+   */
+  public void count(@NotNull Counter counter, long amount) {
+    if (this.enabled) {
+      this.counters.addAndGet(counter.ordinal(), amount);
+    }
+  }
+
+  private long cpuTime() {
+    if (this.threads != null && this.threads.isCurrentThreadCpuTimeSupported()) {
+      return this.threads.getCurrentThreadCpuTime();
+    }
+    return 0;
+  }
+
+  /**
+   * Gets the current value of a counter.
+   *
+   * @param counter The counter.
+   *
+   * @return The counter's current value.
+   */
+  public long get(@NotNull Counter counter) {
+    return this.counters.get(counter.ordinal());
+  }
+
+  private long get(@NotNull Phase phase, int field) {
+    return this.phases.get(phase.ordinal() * Statistics.PHASE_FIELDS + field);
+  }
+
+  /**
+   * Indicates whether statistics are enabled.
+   *
+   * @return {@code true} if statistics are being collected; {@code false} otherwise.
+   */
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  /**
+   * Writes a human-readable summary of these statistics.
+   *
+   * @param out The stream to write the summary to.
+   */
+  public void print(@NotNull PrintStream out) {
+    final var total = System.nanoTime() - this.start;
+    out.println("Statistics:");
+    out.printf("  %-12s %12s %12s %16s%n", "Phase", "Wall (ms)", "CPU (ms)", "Allocated (KiB)");
+    for (final var phase : Phase.values()) {
+      out.printf("  %-12s %12.1f %12.1f %16d%n", phase.key, this.get(phase, Statistics.WALL) / 1e6, this.get(phase, Statistics.CPU) / 1e6,
+                 this.get(phase, Statistics.ALLOCATED) / 1024);
+    }
+    out.printf("  %-12s %12.1f%n", "total", total / 1e6);
+    for (final var counter : Counter.values()) {
+      out.printf("  %,14d %s%n", this.get(counter), counter.description);
+    }
+    final var ingestion = this.get(Phase.DISCOVERY, Statistics.WALL) + this.get(Phase.READ, Statistics.WALL)
+                          + this.get(Phase.PARSE, Statistics.WALL) + this.get(Phase.FILTER, Statistics.WALL);
+    if (ingestion > 0) {
+      out.printf("  Ingestion throughput: %,.0f class file(s)/s, %,.1f MiB/s%n", this.get(Counter.CLASS_FILES) * 1e9 / ingestion,
+                 this.get(Counter.BYTES_READ) * 1e9 / ingestion / (1024 * 1024));
+    }
+  }
+
+  private void record(@NotNull Phase phase, long wall, long cpu, long allocated) {
+    final var base = phase.ordinal() * Statistics.PHASE_FIELDS;
+    this.phases.addAndGet(base + Statistics.WALL, wall);
+    this.phases.addAndGet(base + Statistics.CPU, cpu);
+    this.phases.addAndGet(base + Statistics.ALLOCATED, allocated);
+  }
+
+  /**
+   * Creates a timer, for use on the current thread.
+   *
+   * @return A new timer, not in any phase.
+   */
+  @NotNull
+  public Timer timer() {
+    return new Timer();
+  }
+
+  /**
+   * Writes these statistics as a JSON object.
+   *
+   * @param json The JSON writer to use.
+   */
+  public void writeJson(@NotNull JsonWriter json) {
+    json.beginObject();
+    json.name("totalWallNanos").value(System.nanoTime() - this.start);
+    json.name("phases").beginObject();
+    for (final var phase : Phase.values()) {
+      json.name(phase.key).beginObject();
+      json.name("wallNanos").value(this.get(phase, Statistics.WALL));
+      json.name("cpuNanos").value(this.get(phase, Statistics.CPU));
+      json.name("allocatedBytes").value(this.get(phase, Statistics.ALLOCATED));
+      json.endObject();
+    }
+    json.endObject();
+    json.name("counters").beginObject();
+    for (final var counter : Counter.values()) {
+      json.name(counter.key).value(this.get(counter));
+    }
+    json.endObject();
+    json.endObject();
+  }
+
+  /** Tracks the phase a single thread is in, charging the time spent to that phase. */
+  public final class Timer {
+
+    /** The current phase, if any. */
+    @Nullable
+    private Phase current;
+
+    /** The thread's allocated bytes at the time the current phase was entered. */
+    private long allocated;
+
+    /** The thread's CPU time at the time the current phase was entered. */
+    private long cpu;
+
+    /** The wall-clock time at the time the current phase was entered. */
+    private long wall;
+
+    private Timer() {
+    }
+
+    /**
+     * Switches to another phase, charging the time spent since the last switch to the current phase.
+     *
+     * @param phase The phase to switch to, or {@code null} to stop timing.
+     *
+     * @return The phase that was current before the switch (so that it can be restored later).
+     */
+    @Nullable
+    public Phase enter(@Nullable Phase phase) {
+      final var previous = this.current;
+      if (!Statistics.this.enabled || phase == previous) {
+        return previous;
+      }
+      final var wall = System.nanoTime();
+      final var cpu = Statistics.this.cpuTime();
+      final var allocated = Statistics.this.allocatedBytes();
+      if (previous != null) {
+        Statistics.this.record(previous, wall - this.wall, cpu - this.cpu, allocated - this.allocated);
+      }
+      this.current = phase;
+      this.allocated = allocated;
+      this.cpu = cpu;
+      this.wall = wall;
+      return previous;
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.github.zastai.apiref.internal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of canonical strings (class, member and package names, and descriptors), shared by everything loaded for a single run.
+ * <p>
+ * Class files each hold their own copies of the names they reference, so the same internal name (like {@code java/lang/String}) or
+ * descriptor is otherwise stored once per class that uses it. Passing all such strings through this table means only one instance
+ * of each is retained. Other strings (like string constants in method bodies) are deliberately not added: they are rarely shared,
+ * and would otherwise stay in memory for the entire run.
+ * <p>
+ * This can safely be used from multiple threads.
+ */
+public final class StringTable {
+
+  /** The canonical instances of the strings in the table; this is replaced as a whole when the table is cleared. */
+  @NotNull
+  private volatile Map<@NotNull String, @NotNull String> strings = new ConcurrentHashMap<>();
+
+  /** Removes all strings from the table. */
+  public void clear() {
+    this.strings = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Gets the canonical instance of a string, adding it to the table if needed.
+   *
+   * @param s The string.
+   *
+   * @return The canonical instance of {@code s}; this is {@code s} itself if it was not yet in the table.
+   */
+  @NotNull
+  public String intern(@NotNull String s) {
+    final var strings = this.strings;
+    // Most strings will already be in the table; a plain lookup avoids locking a bin of the map for those.
+    final var canonical = strings.get(s);
+    if (canonical != null) {
+      return canonical;
+    }
+    final var existing = strings.putIfAbsent(s, s);
+    return existing != null ? existing : s;
+  }
+
+  @Nullable
+  private String internNullable(@Nullable String s) {
+    return s == null ? null : this.intern(s);
+  }
+
+  @Nullable
+  private String[] internAll(@Nullable String[] strings) {
+    if (strings != null) {
+      for (var i = 0; i < strings.length; ++i) {
+        strings[i] = this.intern(strings[i]);
+      }
+    }
+    return strings;
+  }
+
+  /**
+   * Gets the number of strings in the table.
+   *
+   * @return The number of strings in the table.
+   */
+  public int size() {
+    return this.strings.size();
+  }
+
+  /**
+   * A class visitor that passes the class, member and annotation type names and descriptors it sees through a string table, before
+   * handing them on to another visitor.
+   */
+  static final class Interner extends ClassVisitor {
+
+    /** The string table to use. */
+    @NotNull
+    private final StringTable table;
+
+    Interner(@NotNull ClassVisitor cv, @NotNull StringTable table) {
+      super(Constants.API_VERSION, cv);
+      this.table = table;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      final var table = this.table;
+      super.visit(version, access, table.intern(name), signature, table.internNullable(superName), table.internAll(interfaces));
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+      return super.visitAnnotation(this.table.intern(descriptor), visible);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+      final var table = this.table;
+      return new FieldVisitor(this.api, super.visitField(access, table.intern(name), table.intern(descriptor), signature, value)) {
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+          return super.visitAnnotation(table.intern(descriptor), visible);
+        }
+
+      };
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+      final var table = this.table;
+      super.visitInnerClass(table.intern(name), table.internNullable(outerName), table.internNullable(innerName), access);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+      final var table = this.table;
+      final var mv = super.visitMethod(access, table.intern(name), table.intern(descriptor), signature, table.internAll(exceptions));
+      return new MethodVisitor(this.api, mv) {
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+          return super.visitAnnotation(table.intern(descriptor), visible);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+          super.visitFieldInsn(opcode, table.intern(owner), table.intern(name), table.intern(descriptor));
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+          super.visitMethodInsn(opcode, table.intern(owner), table.intern(name), table.intern(descriptor), isInterface);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+          super.visitTryCatchBlock(start, end, handler, table.internNullable(type));
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+          super.visitTypeInsn(opcode, table.intern(type));
+        }
+
+      };
+    }
+
+    @Override
+    public void visitNestHost(String nestHost) {
+      super.visitNestHost(this.table.intern(nestHost));
+    }
+
+    @Override
+    public void visitNestMember(String nestMember) {
+      super.visitNestMember(this.table.intern(nestMember));
+    }
+
+    @Override
+    public void visitOuterClass(String owner, String name, String descriptor) {
+      final var table = this.table;
+      super.visitOuterClass(table.intern(owner), table.internNullable(name), table.internNullable(descriptor));
+    }
+
+    @Override
+    public void visitPermittedSubclass(String permittedSubclass) {
+      super.visitPermittedSubclass(this.table.intern(permittedSubclass));
+    }
+
+  }
+
+}
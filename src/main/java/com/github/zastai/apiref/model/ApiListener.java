@@ -0,0 +1,150 @@
+package com.github.zastai.apiref.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Receives events describing the (public) API of a Java application, as it is traversed.
+ * <p>
+ * Events are reported in this order:
+ * <ol>
+ *   <li>{@link #startApplication()}</li>
+ *   <li>all modules ({@link #startModule(JavaModule)} ... {@link #endModule(JavaModule)})</li>
+ *   <li>all top-level types ({@link #startType(JavaType)} ... {@link #endType(JavaType)})</li>
+ *   <li>all packages ({@link #startPackage(JavaPackage)}, then their types, then {@link #endPackage(JavaPackage)})</li>
+ *   <li>{@link #endApplication()}</li>
+ * </ol>
+ * A type reports each of its classes ({@link #startClass(JavaClass)} ... {@link #endClass(JavaClass)}); between those, a class
+ * reports its constructors, fields and methods, followed by its nested classes. Any annotations on a module, package, class or
+ * member are reported (via {@link #annotation(AnnotationNode, boolean)}) directly after the event reporting that element.
+ * <p>
+ * All methods do nothing by default, so implementations only need to override the events they are interested in.
+ */
+public interface ApiListener {
+
+  /**
+   * Creates a listener that forwards all events to each of the specified listeners, in order.
+   *
+   * @param listeners The listeners to forward events to.
+   *
+   * @return A listener forwarding all events to {@code listeners}.
+   */
+  @NotNull
+  static ApiListener fanOut(@NotNull ApiListener @NotNull ... listeners) {
+    if (listeners.length == 1) {
+      return listeners[0];
+    }
+    return new FanOutListener(listeners.clone());
+  }
+
+  /**
+   * Reports an annotation on the element reported by the previous start or member event.
+   *
+   * @param an      The annotation.
+   * @param visible Indicates whether the annotation is visible at run time.
+   */
+  default void annotation(@NotNull AnnotationNode an, boolean visible) {
+  }
+
+  /**
+   * Reports an (externally visible) constructor of the current class.
+   *
+   * @param jc The class declaring the constructor.
+   * @param mn The constructor.
+   */
+  default void constructor(@NotNull JavaClass jc, @NotNull MethodNode mn) {
+  }
+
+  /** Reports the end of the application. */
+  default void endApplication() {
+  }
+
+  /**
+   * Reports the end of a class.
+   *
+   * @param jc The class.
+   */
+  default void endClass(@NotNull JavaClass jc) {
+  }
+
+  /**
+   * Reports the end of a module.
+   *
+   * @param jm The module.
+   */
+  default void endModule(@NotNull JavaModule jm) {
+  }
+
+  /**
+   * Reports the end of a package.
+   *
+   * @param jp The package.
+   */
+  default void endPackage(@NotNull JavaPackage jp) {
+  }
+
+  /**
+   * Reports the end of a type.
+   *
+   * @param jt The type.
+   */
+  default void endType(@NotNull JavaType jt) {
+  }
+
+  /**
+   * Reports an (externally visible) field of the current class.
+   *
+   * @param jc The class declaring the field.
+   * @param fn The field.
+   */
+  default void field(@NotNull JavaClass jc, @NotNull FieldNode fn) {
+  }
+
+  /**
+   * Reports an (externally visible) method of the current class.
+   *
+   * @param jc The class declaring the method.
+   * @param mn The method.
+   */
+  default void method(@NotNull JavaClass jc, @NotNull MethodNode mn) {
+  }
+
+  /** Reports the start of the application. */
+  default void startApplication() {
+  }
+
+  /**
+   * Reports the start of a class.
+   *
+   * @param jc The class.
+   */
+  default void startClass(@NotNull JavaClass jc) {
+  }
+
+  /**
+   * Reports the start of a module.
+   *
+   * @param jm The module.
+   */
+  default void startModule(@NotNull JavaModule jm) {
+  }
+
+  /**
+   * Reports the start of a package.
+   *
+   * @param jp The package; it is complete (i.e. all its types are available).
+   */
+  default void startPackage(@NotNull JavaPackage jp) {
+  }
+
+  /**
+   * Reports the start of a type.
+   *
+   * @param jt The type; it is complete (i.e. all its classes and nested types are available).
+   */
+  default void startType(@NotNull JavaType jt) {
+  }
+
+}
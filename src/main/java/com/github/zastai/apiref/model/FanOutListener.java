@@ -0,0 +1,116 @@
+package com.github.zastai.apiref.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/** An API listener that forwards all events to a set of other listeners. */
+final class FanOutListener implements ApiListener {
+
+  @NotNull
+  private final ApiListener @NotNull [] listeners;
+
+  FanOutListener(@NotNull ApiListener @NotNull [] listeners) {
+    this.listeners = listeners;
+  }
+
+  @Override
+  public void annotation(@NotNull AnnotationNode an, boolean visible) {
+    for (final var listener : this.listeners) {
+      listener.annotation(an, visible);
+    }
+  }
+
+  @Override
+  public void constructor(@NotNull JavaClass jc, @NotNull MethodNode mn) {
+    for (final var listener : this.listeners) {
+      listener.constructor(jc, mn);
+    }
+  }
+
+  @Override
+  public void endApplication() {
+    for (final var listener : this.listeners) {
+      listener.endApplication();
+    }
+  }
+
+  @Override
+  public void endClass(@NotNull JavaClass jc) {
+    for (final var listener : this.listeners) {
+      listener.endClass(jc);
+    }
+  }
+
+  @Override
+  public void endModule(@NotNull JavaModule jm) {
+    for (final var listener : this.listeners) {
+      listener.endModule(jm);
+    }
+  }
+
+  @Override
+  public void endPackage(@NotNull JavaPackage jp) {
+    for (final var listener : this.listeners) {
+      listener.endPackage(jp);
+    }
+  }
+
+  @Override
+  public void endType(@NotNull JavaType jt) {
+    for (final var listener : this.listeners) {
+      listener.endType(jt);
+    }
+  }
+
+  @Override
+  public void field(@NotNull JavaClass jc, @NotNull FieldNode fn) {
+    for (final var listener : this.listeners) {
+      listener.field(jc, fn);
+    }
+  }
+
+  @Override
+  public void method(@NotNull JavaClass jc, @NotNull MethodNode mn) {
+    for (final var listener : this.listeners) {
+      listener.method(jc, mn);
+    }
+  }
+
+  @Override
+  public void startApplication() {
+    for (final var listener : this.listeners) {
+      listener.startApplication();
+    }
+  }
+
+  @Override
+  public void startClass(@NotNull JavaClass jc) {
+    for (final var listener : this.listeners) {
+      listener.startClass(jc);
+    }
+  }
+
+  @Override
+  public void startModule(@NotNull JavaModule jm) {
+    for (final var listener : this.listeners) {
+      listener.startModule(jm);
+    }
+  }
+
+  @Override
+  public void startPackage(@NotNull JavaPackage jp) {
+    for (final var listener : this.listeners) {
+      listener.startPackage(jp);
+    }
+  }
+
+  @Override
+  public void startType(@NotNull JavaType jt) {
+    for (final var listener : this.listeners) {
+      listener.startType(jt);
+    }
+  }
+
+}
@@ -73,4 +73,23 @@ public final class JavaApplication {
     throw new RuntimeException("Not yet implemented.");
   }
 
+  /**
+   * Reports this application's modules, top-level types and packages to a listener.
+   *
+   * @param listener The listener to report to.
+   */
+  public void replay(@NotNull ApiListener listener) {
+    listener.startApplication();
+    for (final var jm : this.modules.values()) {
+      jm.replay(listener);
+    }
+    for (final var jt : this.topLevelTypes.values()) {
+      jt.replay(listener);
+    }
+    for (final var jp : this.packages.values()) {
+      jp.replay(listener);
+    }
+    listener.endApplication();
+  }
+
 }
@@ -2,11 +2,13 @@ package com.github.zastai.apiref.model;
 
 import com.github.zastai.apiref.internal.ASMUtil;
 import com.github.zastai.apiref.internal.Constants;
+import com.github.zastai.apiref.internal.Diagnostics;
 import com.github.zastai.apiref.internal.Util;
 import com.github.zastai.apiref.internal.WellKnown;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -14,6 +16,7 @@ import org.objectweb.asm.tree.MethodNode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -51,7 +54,7 @@ public class JavaClass {
   /** The class file version for this class. */
   public final int version;
 
-  JavaClass(@NotNull ClassNode cn, @NotNull JavaType parent, boolean verbose) {
+  JavaClass(@NotNull ClassNode cn, @NotNull JavaType parent, @NotNull Diagnostics diagnostics) {
     this.contents = cn;
     this.fullName = cn.name;
     this.parent = parent;
@@ -71,7 +74,7 @@ public class JavaClass {
     }
     if (cn.fields != null) {
       this.fields = new TreeSet<>(JavaClass::compare);
-      cn.fields.stream().filter(fn -> JavaClass.isRelevant(cn, fn, verbose)).forEach(this.fields::add);
+      cn.fields.stream().filter(fn -> JavaClass.isRelevant(cn, fn, diagnostics)).forEach(this.fields::add);
     }
     else {
       this.fields = Collections.emptySortedSet();
@@ -79,7 +82,7 @@ public class JavaClass {
     if (cn.methods != null) {
       this.constructors = new TreeSet<>(JavaClass::compare);
       this.methods = new TreeSet<>(JavaClass::compare);
-      cn.methods.stream().filter(mn -> JavaClass.isRelevant(cn, mn, verbose)).forEach(mn -> {
+      cn.methods.stream().filter(mn -> JavaClass.isRelevant(cn, mn, diagnostics)).forEach(mn -> {
         if (WellKnown.Names.CONSTRUCTOR.equals(mn.name)) {
           this.constructors.add(mn);
         }
@@ -121,33 +124,29 @@ public class JavaClass {
     return cmp;
   }
 
-  private static boolean isRelevant(@NotNull ClassNode cn, @NotNull FieldNode fn, boolean verbose) {
+  private static boolean isRelevant(@NotNull ClassNode cn, @NotNull FieldNode fn, @NotNull Diagnostics diagnostics) {
     if ((fn.access & Constants.ACC_VISIBLE) == 0) {
-      if (verbose) {
-        System.out.printf("[trace] Skipping %s because it is not externally visible.%n", ASMUtil.describe(cn, fn));
-      }
+      diagnostics.report(Diagnostics.Level.TRACE, Diagnostics.Category.SELECTION,
+                         () -> "Skipping %s because it is not externally visible.".formatted(ASMUtil.describe(cn, fn)));
       return false;
     }
     if ((fn.access & Opcodes.ACC_SYNTHETIC) != 0) {
-      if (verbose) {
-        System.out.printf("[trace] Skipping %s because it is synthetic.%n", ASMUtil.describe(cn, fn));
-      }
+      diagnostics.report(Diagnostics.Level.TRACE, Diagnostics.Category.SELECTION,
+                         () -> "Skipping %s because it is synthetic.".formatted(ASMUtil.describe(cn, fn)));
       return false;
     }
     return true;
   }
 
-  private static boolean isRelevant(@NotNull ClassNode cn, @NotNull MethodNode mn, boolean verbose) {
+  private static boolean isRelevant(@NotNull ClassNode cn, @NotNull MethodNode mn, @NotNull Diagnostics diagnostics) {
     if ((mn.access & Constants.ACC_VISIBLE) == 0) {
-      if (verbose) {
-        System.out.printf("[trace] Skipping %s because it is not externally visible.%n", ASMUtil.describe(cn, mn));
-      }
+      diagnostics.report(Diagnostics.Level.TRACE, Diagnostics.Category.SELECTION,
+                         () -> "Skipping %s because it is not externally visible.".formatted(ASMUtil.describe(cn, mn)));
       return false;
     }
     if ((mn.access & Opcodes.ACC_SYNTHETIC) != 0) {
-      if (verbose) {
-        System.out.printf("[trace] Skipping %s because it is synthetic.%n", ASMUtil.describe(cn, mn));
-      }
+      diagnostics.report(Diagnostics.Level.TRACE, Diagnostics.Category.SELECTION,
+                         () -> "Skipping %s because it is synthetic.".formatted(ASMUtil.describe(cn, mn)));
       return false;
     }
     return true;
@@ -175,6 +174,42 @@ public class JavaClass {
     return nestedClasses;
   }
 
+  /**
+   * Reports this class, its members and its nested classes to a listener.
+   *
+   * @param listener The listener to report to.
+   */
+  public void replay(@NotNull ApiListener listener) {
+    listener.startClass(this);
+    JavaClass.replayAnnotations(listener, this.contents.visibleAnnotations, this.contents.invisibleAnnotations);
+    for (final var mn : this.constructors) {
+      listener.constructor(this, mn);
+      JavaClass.replayAnnotations(listener, mn.visibleAnnotations, mn.invisibleAnnotations);
+    }
+    for (final var fn : this.fields) {
+      listener.field(this, fn);
+      JavaClass.replayAnnotations(listener, fn.visibleAnnotations, fn.invisibleAnnotations);
+    }
+    for (final var mn : this.methods) {
+      listener.method(this, mn);
+      JavaClass.replayAnnotations(listener, mn.visibleAnnotations, mn.invisibleAnnotations);
+    }
+    for (final var nestedClass : this.nestedClasses()) {
+      nestedClass.replay(listener);
+    }
+    listener.endClass(this);
+  }
+
+  static void replayAnnotations(@NotNull ApiListener listener, @Nullable List<AnnotationNode> visible,
+                                @Nullable List<AnnotationNode> invisible) {
+    if (visible != null) {
+      visible.forEach(an -> listener.annotation(an, true));
+    }
+    if (invisible != null) {
+      invisible.forEach(an -> listener.annotation(an, false));
+    }
+  }
+
   /**
    * Determines the runtime version corresponding to this class' class file version.
    *
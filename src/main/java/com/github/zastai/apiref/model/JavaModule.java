@@ -27,4 +27,18 @@ public class JavaModule {
     this.name = name;
     this.info = info;
   }
+
+  /**
+   * Reports this module to a listener.
+   *
+   * @param listener The listener to report to.
+   */
+  public void replay(@NotNull ApiListener listener) {
+    listener.startModule(this);
+    if (this.info != null) {
+      JavaClass.replayAnnotations(listener, this.info.visibleAnnotations, this.info.invisibleAnnotations);
+    }
+    listener.endModule(this);
+  }
+
 }
@@ -37,4 +37,20 @@ public final class JavaPackage {
     this.types = Util.makeUnmodifiable(types);
   }
 
+  /**
+   * Reports this package and its types to a listener.
+   *
+   * @param listener The listener to report to.
+   */
+  public void replay(@NotNull ApiListener listener) {
+    listener.startPackage(this);
+    if (this.info != null) {
+      JavaClass.replayAnnotations(listener, this.info.visibleAnnotations, this.info.invisibleAnnotations);
+    }
+    for (final var jt : this.types.values()) {
+      jt.replay(listener);
+    }
+    listener.endPackage(this);
+  }
+
 }
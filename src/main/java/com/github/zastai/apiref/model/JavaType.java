@@ -1,6 +1,7 @@
 package com.github.zastai.apiref.model;
 
 import com.github.zastai.apiref.internal.ASMUtil;
+import com.github.zastai.apiref.internal.Diagnostics;
 import com.github.zastai.apiref.internal.Util;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -66,15 +67,15 @@ public class JavaType {
   /**
    * Adds a class to this type.
    *
-   * @param cn      The class to add.
-   * @param verbose Indicates whether verbose output should be enabled.
+   * @param cn          The class to add.
+   * @param diagnostics The reporter to use for diagnostics.
    */
-  public void addClass(@NotNull ClassNode cn, boolean verbose) {
+  public void addClass(@NotNull ClassNode cn, @NotNull Diagnostics diagnostics) {
     if (!Objects.equals(cn.name, this.fullName)) {
       throw new IllegalArgumentException("Cannot add a class with a different name (%s != %s).".formatted(cn.name, this.fullName));
     }
     // FIXME: Should this throw if there already is an entry for this class version?
-    this._classes.put(cn.version, new JavaClass(cn, this, verbose));
+    this._classes.put(cn.version, new JavaClass(cn, this, diagnostics));
   }
 
   /**
@@ -96,4 +97,17 @@ public class JavaType {
     return jt;
   }
 
+  /**
+   * Reports this type and its classes to a listener.
+   *
+   * @param listener The listener to report to.
+   */
+  public void replay(@NotNull ApiListener listener) {
+    listener.startType(this);
+    for (final var jc : this.classes.values()) {
+      jc.replay(listener);
+    }
+    listener.endType(this);
+  }
+
 }
@@ -1,6 +1,263 @@
 package com.github.zastai.apiref.plugin.maven;
 
-/** The main class for the Java API Reference Maven plugin. */
-public class ApiReferencePlugin {
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.DependencyIndex;
+import com.github.zastai.apiref.internal.Diagnostics;
+import com.github.zastai.apiref.internal.Fingerprints;
+import com.github.zastai.apiref.internal.ReferenceFile;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The main class for the Java API Reference Maven plugin.
+ * <p>
+ * This generates a reference file describing the public API of the project's classes. A fingerprint of the inputs is recorded
+ * alongside the reference, so that the (relatively expensive) generation can be skipped when nothing has changed.
+ * <p>
+ * This is the {@code generate} goal, bound to the {@code package} phase by default. As this does not keep any shared state, it is
+ * safe to use in parallel builds. Its descriptor ({@code META-INF/maven/plugin.xml}) is maintained by hand, and must be kept in
+ * sync with the parameters declared here.
+ */
+public class ApiReferencePlugin extends AbstractMojo {
+
+  /** Creates a new instance of the plugin; this is intended for use by Maven only. */
+  public ApiReferencePlugin() {
+  }
+
+  /** Indicates whether the reference file should be gzip-compressed (this is automatic when its name ends in {@code .gz}). */
+  private boolean compress;
+
+  /**
+   * Indicates whether only annotations whose types are marked {@code @Documented} should be included. Annotation types from the
+   * project's dependencies are looked up in an index shared by all modules in the build, so each dependency jar is read at most once.
+   */
+  private boolean documentedAnnotationsOnly;
+
+  /** The folder in which fingerprints of the inputs for generated references are recorded. */
+  private File fingerprintDirectory;
+
+  /** The output format ({@code java}, {@code json} or {@code markdown}). */
+  private String format;
+
+  /**
+   * The jar files and/or folders to document. When not specified, either the project's output folder or its main artifact is used
+   * (see {@link #useArtifact}).
+   */
+  private List<File> inputs;
+
+  /**
+   * The reference file to generate. When not specified, this is {@code <finalName>-api.<ext>} in the project's build folder, where
+   * the extension depends on the output format.
+   */
+  private File outputFile;
+
+  /** The project being built. */
+  private MavenProject project;
+
+  /** The current build session. */
+  private MavenSession session;
+
+  /** Indicates whether generation of the API reference should be skipped. */
+  private boolean skip;
+
+  /** Indicates whether the project's main artifact should be documented, instead of its output folder. */
+  private boolean useArtifact;
+
+  @NotNull
+  private static String defaultExtension(@NotNull OutputFormat format) {
+    return switch (format) {
+      case JAVA -> "java";
+      case JSON -> "jsonl";
+      case MARKDOWN -> "md";
+    };
+  }
+
+  /**
+   * Gets the dependency index for the current build session, creating it if necessary.
+   * <p>
+   * This is stored in the session data of the repository session, which is shared by all projects in the reactor.
+   *
+   * @return The dependency index for the current build session.
+   */
+  @NotNull
+  private DependencyIndex dependencyIndex() {
+    final var data = this.session.getRepositorySession().getData();
+    return (DependencyIndex) data.computeIfAbsent(DependencyIndex.class, DependencyIndex::new);
+  }
+
+  @NotNull
+  private List<Path> dependencyPaths() throws MojoExecutionException {
+    final List<String> elements;
+    try {
+      elements = this.project.getCompileClasspathElements();
+    }
+    catch (DependencyResolutionRequiredException e) {
+      throw new MojoExecutionException("The project's dependencies have not been resolved.", e);
+    }
+    final var outputDirectory = Path.of(this.project.getBuild().getOutputDirectory()).toAbsolutePath().normalize();
+    final var paths = new ArrayList<Path>();
+    for (final var element : elements) {
+      final var path = Path.of(element).toAbsolutePath().normalize();
+      if (!path.equals(outputDirectory) && Files.exists(path)) {
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Creates a reporter that passes diagnostics on to the Maven log; details are only reported when debug logging is enabled.
+   *
+   * @return A new reporter for diagnostics.
+   */
+  @NotNull
+  private Diagnostics diagnostics() {
+    final var log = this.getLog();
+    final Diagnostics.Sink sink = (level, message) -> {
+      switch (level) {
+        case ERROR -> log.error(message);
+        case WARNING -> log.warn(message);
+        case INFO -> log.info(message);
+        default -> log.debug(message);
+      }
+    };
+    return new Diagnostics(sink, log.isDebugEnabled() ? Diagnostics.Level.TRACE : Diagnostics.Level.INFO);
+  }
+
+  /**
+   * Generates the API reference, unless it is up to date.
+   *
+   * @throws MojoExecutionException When the plugin is misconfigured, or generating the reference failed.
+   */
+  @Override
+  public void execute() throws MojoExecutionException {
+    if (this.skip) {
+      this.getLog().info("Skipping API reference generation.");
+      return;
+    }
+    final var format = OutputFormat.fromName(this.format);
+    if (format == null) {
+      throw new MojoExecutionException("Unsupported output format '%s' specified (should be %s).".formatted(this.format,
+                                                                                                          OutputFormat.formatNames()));
+    }
+    final var inputs = this.inputPaths();
+    if (inputs.isEmpty()) {
+      this.getLog().info("No classes to document; skipping API reference generation.");
+      return;
+    }
+    final var outputFile = this.outputPath(format);
+    final var compressed = this.compress || outputFile.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+    final var fingerprintFile = this.fingerprintDirectory.toPath().resolve(outputFile.getFileName() + ".fingerprint");
+    final var dependencies = this.documentedAnnotationsOnly ? this.dependencyPaths() : List.<Path>of();
+    final String fingerprint;
+    try {
+      final var version = Objects.requireNonNullElse(ApiReferencePlugin.class.getPackage().getImplementationVersion(), "dev");
+      final var settings = new ArrayList<>(List.of(version, format.formatName(), Boolean.toString(compressed), outputFile.toString(),
+                                                   Boolean.toString(this.documentedAnnotationsOnly)));
+      fingerprint = Fingerprints.compute(inputs, dependencies, settings);
+      if (Files.isRegularFile(outputFile) && fingerprint.equals(ApiReferencePlugin.readFingerprint(fingerprintFile))) {
+        this.getLog().info("API reference is up to date: " + outputFile);
+        return;
+      }
+    }
+    catch (IOException e) {
+      throw new MojoExecutionException("Failed to compute the fingerprint for the API reference inputs.", e);
+    }
+    try {
+      Files.createDirectories(outputFile.getParent());
+      try (final var classPath = new ClassPath(); final var reference = ReferenceFile.create(outputFile, compressed)) {
+        final var diagnostics = this.diagnostics();
+        classPath.setDiagnostics(diagnostics);
+        if (this.documentedAnnotationsOnly) {
+          final var index = this.dependencyIndex();
+          classPath.setDependencies(name -> index.find(dependencies, name, diagnostics));
+          classPath.setDocumentedAnnotationsOnly(true);
+        }
+        for (final var input : inputs) {
+          classPath.add(input);
+        }
+        classPath.emit(format.publicApiListener(reference.stream()), reference::bytesWritten);
+        if (reference.commit()) {
+          this.getLog().info("Generated API reference: " + outputFile);
+        }
+        else {
+          this.getLog().info("API reference is unchanged: " + outputFile);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new MojoExecutionException("Failed to generate the API reference (%s).".formatted(outputFile), e);
+    }
+    try {
+      Files.createDirectories(fingerprintFile.getParent());
+      Files.writeString(fingerprintFile, fingerprint, StandardCharsets.UTF_8);
+    }
+    catch (IOException e) {
+      // Not fatal: the next build will simply regenerate the reference.
+      this.getLog().warn("Failed to record the fingerprint for the API reference: " + e);
+    }
+  }
+
+  @NotNull
+  private List<Path> inputPaths() throws MojoExecutionException {
+    final var paths = new ArrayList<Path>();
+    if (this.inputs != null && !this.inputs.isEmpty()) {
+      for (final var input : this.inputs) {
+        final var path = input.toPath().toAbsolutePath().normalize();
+        if (!Files.exists(path)) {
+          throw new MojoExecutionException("API reference input does not exist: " + path);
+        }
+        paths.add(path);
+      }
+    }
+    else if (this.useArtifact) {
+      final var artifact = this.project.getArtifact().getFile();
+      if (artifact == null || !artifact.isFile()) {
+        throw new MojoExecutionException("The project's main artifact has not been built (yet).");
+      }
+      paths.add(artifact.toPath().toAbsolutePath().normalize());
+    }
+    else {
+      final var classes = Path.of(this.project.getBuild().getOutputDirectory()).toAbsolutePath().normalize();
+      if (Files.isDirectory(classes)) {
+        paths.add(classes);
+      }
+    }
+    return paths;
+  }
+
+  @NotNull
+  private Path outputPath(@NotNull OutputFormat format) {
+    if (this.outputFile != null) {
+      return this.outputFile.toPath().toAbsolutePath().normalize();
+    }
+    final var build = this.project.getBuild();
+    final var fileName = build.getFinalName() + "-api." + ApiReferencePlugin.defaultExtension(format);
+    return Path.of(build.getDirectory(), fileName).toAbsolutePath().normalize();
+  }
+
+  @Nullable
+  private static String readFingerprint(@NotNull Path fingerprintFile) throws IOException {
+    if (!Files.isRegularFile(fingerprintFile)) {
+      return null;
+    }
+    return Files.readString(fingerprintFile, StandardCharsets.UTF_8).trim();
+  }
 
 }
@@ -0,0 +1,79 @@
+package com.github.zastai.apiref.commandline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Batch is package-private, so these tests live in its package rather than in the tests package.
+class BatchTests {
+
+  private static Path jarContaining(Class<?> c) throws Exception {
+    return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  private static int run(Path folder, String... lines) throws IOException {
+    final var manifest = Files.write(folder.resolve("jobs.txt"), List.of(lines), StandardCharsets.UTF_8);
+    final var bytes = new ByteArrayOutputStream();
+    try (final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      return Batch.run(manifest, folder, out, out);
+    }
+  }
+
+  @Test
+  public void exitCodeIsTheHighestOfAllJobs(@TempDir Path folder) throws Exception {
+    final var jar = BatchTests.jarContaining(ClassVisitor.class).toString();
+    assertEquals(0, BatchTests.run(folder, "--quiet \"%s\" a.java".formatted(jar), "--quiet --format=json \"%s\" b.jsonl".formatted(jar)));
+    assertTrue(Files.size(folder.resolve("a.java")) > 0);
+    assertTrue(Files.size(folder.resolve("b.jsonl")) > 0);
+    assertEquals(2, BatchTests.run(folder, "--quiet \"%s\" c.java".formatted(jar), "--quiet no-such.jar d.java"));
+    assertTrue(Files.size(folder.resolve("c.java")) > 0);
+    assertEquals(0, BatchTests.run(folder, "# Nothing to do."));
+  }
+
+  @Test
+  public void invalidManifestsAreRejected(@TempDir Path folder) throws IOException {
+    final var nowhere = new PrintStream(OutputStream.nullOutputStream());
+    assertEquals(2, Batch.run(folder.resolve("missing.txt"), folder, nowhere, nowhere));
+    // These fail before any job is started (instead of never completing).
+    assertEquals(2, BatchTests.run(folder, "--quiet lib/a.jar a.java", "--watch lib/b.jar b.java"));
+    assertEquals(2, BatchTests.run(folder, "--quiet \"lib/a.jar a.java"));
+  }
+
+  @Test
+  public void linesAreSplitIntoArguments() {
+    final var jobs = Batch.parse(List.of("# A comment.", "", "  --format=json  lib/a.jar out/a.jsonl ", "\"lib/with space.jar\" x\"y z\"",
+                                         "\"\" end"));
+    assertEquals(3, jobs.size());
+    assertEquals(3, jobs.get(0).line());
+    assertArrayEquals(new String[] { "--format=json", "lib/a.jar", "out/a.jsonl" }, jobs.get(0).args());
+    assertEquals(4, jobs.get(1).line());
+    assertArrayEquals(new String[] { "lib/with space.jar", "xy z" }, jobs.get(1).args());
+    assertArrayEquals(new String[] { "", "end" }, jobs.get(2).args());
+  }
+
+  @Test
+  public void unsupportedOptionsAreRejected() {
+    for (final var option : List.of("--batch=other.txt", "--client", "--client=a.socket", "--daemon", "--watch")) {
+      final var e = assertThrows(IllegalArgumentException.class, () -> Batch.parse(List.of("lib/a.jar a.java", option + " lib/b.jar")));
+      assertTrue(e.getMessage().endsWith("(line 2)."), e.getMessage());
+    }
+    assertThrows(IllegalArgumentException.class, () -> Batch.parse(List.of("\"unterminated")));
+    // Only the options themselves are rejected, not arguments that happen to start the same way.
+    assertEquals(1, Batch.parse(List.of("--watchlist.jar out.java")).size());
+  }
+
+}
@@ -0,0 +1,34 @@
+package com.github.zastai.apiref.commandline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassVisitor;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Daemon is package-private, so these tests live in its package rather than in the tests package.
+class DaemonTests {
+
+  @Test
+  public void requestsAreProcessed(@TempDir Path folder) throws Exception {
+    final var socket = folder.resolve("daemon").resolve("daemon.socket");
+    final var daemon = new Thread(() -> Daemon.serve(socket), "apiref-daemon");
+    daemon.setDaemon(true);
+    daemon.start();
+    for (var i = 0; i < 100 && !Files.exists(socket, LinkOption.NOFOLLOW_LINKS); ++i) {
+      Thread.sleep(50);
+    }
+    final var jar = Path.of(ClassVisitor.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    assertEquals(0, Daemon.forward(socket, folder, new String[] { "--quiet", jar, "asm.java" }));
+    assertTrue(Files.size(folder.resolve("asm.java")) > 0);
+    // Requests that would never complete are rejected as a usage error.
+    assertEquals(4, Daemon.forward(socket, folder, new String[] { "--watch", folder.toString(), "watched.java" }));
+    assertEquals(4, Daemon.forward(socket, folder, new String[] { "--batch=jobs.txt" }));
+  }
+
+}
@@ -0,0 +1,109 @@
+package com.github.zastai.apiref.commandline;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ASMUtil;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.Diagnostics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Watcher is package-private, so these tests live in its package rather than in the tests package.
+class WatcherTests {
+
+  /** Extracts the section for a package from a reference in Java format (up to the next package, or the end of the file). */
+  private static String section(String reference, String packageName) {
+    final var start = reference.indexOf("package " + packageName + " {");
+    assertTrue(start >= 0, "package " + packageName + " not found");
+    final var end = reference.indexOf("package ", start + 1);
+    return end < 0 ? reference.substring(start) : reference.substring(start, end);
+  }
+
+  /** Waits until the reference file satisfies a condition, then returns its contents. */
+  private static String waitFor(Path reference, Predicate<String> condition) throws Exception {
+    for (var i = 0; i < 200; ++i) {
+      if (Files.exists(reference)) {
+        final var contents = Files.readString(reference, StandardCharsets.UTF_8);
+        if (condition.test(contents)) {
+          return contents;
+        }
+      }
+      Thread.sleep(50);
+    }
+    throw new AssertionError("The reference file was not updated as expected.");
+  }
+
+  /** Writes a public class with the given public int fields. */
+  private static void writeClass(Path folder, String name, String... fields) throws IOException {
+    final var cn = new ClassNode();
+    cn.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+    for (final var field : fields) {
+      cn.visitField(Opcodes.ACC_PUBLIC, field, "I", null, null).visitEnd();
+    }
+    cn.visitEnd();
+    final var file = folder.resolve(name + ".class");
+    Files.createDirectories(file.getParent());
+    Files.write(file, ASMUtil.writeClass(cn));
+  }
+
+  @Test
+  public void onlyAffectedPackagesAreRendered(@TempDir Path folder) throws Exception {
+    final var classes = folder.resolve("classes");
+    WatcherTests.writeClass(classes, "a/A", "alpha");
+    WatcherTests.writeClass(classes, "b/B", "beta");
+    final var reference = folder.resolve("api.java");
+    final var messages = new CopyOnWriteArrayList<String>();
+    final var diagnostics = new Diagnostics((level, message) -> messages.add(message), Diagnostics.Level.INFO);
+    try (final var classPath = new ClassPath()) {
+      classPath.setIncremental(true);
+      classPath.add(classes);
+      final var watcher = new Thread(() -> Watcher.run(classPath, List.of(classes), OutputFormat.JAVA, reference, false, diagnostics));
+      watcher.setDaemon(true);
+      watcher.start();
+      try {
+        final var initial = WatcherTests.waitFor(reference, contents -> contents.contains("beta"));
+        // Changes are only picked up once the watcher has finished setting up.
+        for (var i = 0; i < 200 && messages.stream().noneMatch(message -> message.startsWith("Watching ")); ++i) {
+          Thread.sleep(50);
+        }
+        final var packageA = WatcherTests.section(initial, "a");
+        assertTrue(packageA.contains("alpha"));
+        // Add a class.
+        WatcherTests.writeClass(classes, "b/C", "gamma");
+        var current = WatcherTests.waitFor(reference, contents -> contents.contains("gamma"));
+        assertEquals(packageA, WatcherTests.section(current, "a"));
+        // Change it.
+        WatcherTests.writeClass(classes, "b/C", "gamma", "delta");
+        current = WatcherTests.waitFor(reference, contents -> contents.contains("delta"));
+        assertEquals(packageA, WatcherTests.section(current, "a"));
+        // Delete it.
+        Files.delete(classes.resolve("b/C.class"));
+        current = WatcherTests.waitFor(reference, contents -> !contents.contains("gamma"));
+        assertEquals(packageA, WatcherTests.section(current, "a"));
+        assertTrue(WatcherTests.section(current, "b").contains("beta"));
+        // Every update only rendered package b again, leaving the section for package a as it was.
+        final var updates = messages.stream().filter(message -> message.startsWith("Re-rendered ")).toList();
+        assertFalse(updates.isEmpty());
+        updates.forEach(message -> assertTrue(message.startsWith("Re-rendered 1 package(s) "), message));
+      }
+      finally {
+        watcher.interrupt();
+        watcher.join(5000);
+      }
+    }
+  }
+
+}
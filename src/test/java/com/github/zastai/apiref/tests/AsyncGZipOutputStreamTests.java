@@ -0,0 +1,56 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.AsyncGZipOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncGZipOutputStreamTests {
+
+  @Test
+  public void failurePropagates() {
+    final var broken = new OutputStream() {
+
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("broken");
+      }
+
+    };
+    assertThrows(IOException.class, () -> {
+      try (final var out = new AsyncGZipOutputStream(broken, 16)) {
+        for (var i = 0; i < 1000; ++i) {
+          out.write(i);
+        }
+      }
+    });
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    final var data = new byte[100_000];
+    new Random(42).nextBytes(data);
+    final var compressed = new ByteArrayOutputStream();
+    // A small buffer size forces many hand-offs between the two buffers.
+    try (final var out = new AsyncGZipOutputStream(compressed, 1000)) {
+      out.write(data, 0, 12345);
+      out.flush();
+      for (var i = 12345; i < 20000; ++i) {
+        out.write(data[i]);
+      }
+      out.write(data, 20000, data.length - 20000);
+    }
+    try (final var in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertArrayEquals(data, in.readAllBytes());
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassCache;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassCacheTests {
+
+  private static String emit(ClassCache classCache, Statistics statistics) throws Exception {
+    final var jar = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var bytes = new ByteArrayOutputStream();
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.setClassCache(classCache);
+      classPath.setStatistics(statistics);
+      classPath.add(jar);
+      classPath.emit(OutputFormat.JSON.publicApiListener(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void cachedClassesProduceTheSameOutput(@TempDir Path folder) throws Exception {
+    final var cold = new Statistics(true);
+    final String expected;
+    try (final var classCache = new ClassCache(folder, Long.MAX_VALUE)) {
+      expected = ClassCacheTests.emit(classCache, cold);
+    }
+    assertEquals(0, cold.get(Statistics.Counter.CLASSES_CACHED));
+    final var warm = new Statistics(true);
+    try (final var classCache = new ClassCache(folder, Long.MAX_VALUE)) {
+      assertEquals(expected, ClassCacheTests.emit(classCache, warm));
+    }
+    assertEquals(0, warm.get(Statistics.Counter.CLASSES_PARSED));
+    assertEquals(cold.get(Statistics.Counter.CLASSES_PARSED), warm.get(Statistics.Counter.CLASSES_CACHED));
+    assertEquals(cold.get(Statistics.Counter.CLASSES_SELECTED), warm.get(Statistics.Counter.CLASSES_SELECTED));
+    assertEquals(expected, ClassCacheTests.emit(null, new Statistics(false)));
+  }
+
+  @Test
+  public void leastRecentlyUsedEntriesAreEvicted(@TempDir Path folder) throws Exception {
+    final var cn = new ClassNode();
+    cn.visit(61, 1, "a/B", null, "java/lang/Object", null);
+    final var old = "00" + "0".repeat(62);
+    final var recent = "ff" + "f".repeat(62);
+    try (final var classCache = new ClassCache(folder, Long.MAX_VALUE)) {
+      classCache.put(old, cn, true);
+      classCache.put(recent, cn, true);
+    }
+    // Make the first entry look old.
+    var entrySize = 0L;
+    try (final var files = Files.find(folder, 3, (path, attributes) -> attributes.isRegularFile()
+                                                                       && path.getFileName().toString().startsWith("00"))) {
+      for (final var file : (Iterable<Path>) files::iterator) {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(3600)));
+        entrySize = Files.size(file);
+      }
+    }
+    // Room for one and a half entries; adding one (even if it already exists) triggers eviction when closing.
+    try (final var classCache = new ClassCache(folder, entrySize * 3 / 2)) {
+      classCache.put(recent, cn, true);
+    }
+    try (final var classCache = new ClassCache(folder, Long.MAX_VALUE)) {
+      assertNull(classCache.get(old));
+      assertNotNull(classCache.get(recent));
+    }
+    try (final var files = Files.find(folder, 3, (path, attributes) -> attributes.isRegularFile())) {
+      assertTrue(files.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+    }
+  }
+
+}
@@ -0,0 +1,189 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassPathTests {
+
+  /** Creates an archive, containing the contents of existing archives (under a prefix) and/or existing files. */
+  private static Path archive(Path archive, Map<String, Path> contents) throws Exception {
+    try (final var fileSystem = FileSystems.newFileSystem(archive, Map.of("create", "true"))) {
+      for (final var entry : contents.entrySet()) {
+        final var target = fileSystem.getPath("/" + entry.getKey());
+        if (entry.getKey().endsWith("/")) {
+          try (final var source = FileSystems.newFileSystem(entry.getValue()); final var files = Files.walk(source.getPath("/"))) {
+            for (final var file : (Iterable<Path>) files::iterator) {
+              if (Files.isRegularFile(file)) {
+                final var copy = target.resolve(file.toString().substring(1));
+                Files.createDirectories(copy.getParent());
+                Files.copy(file, copy);
+              }
+            }
+          }
+        }
+        else {
+          Files.createDirectories(target.getParent());
+          Files.copy(entry.getValue(), target);
+        }
+      }
+    }
+    return archive;
+  }
+
+  private static String emit(List<Path> inputs, Statistics statistics, int threads) throws Exception {
+    return ClassPathTests.emit(inputs, statistics, threads, List.of());
+  }
+
+  private static String emit(List<Path> inputs, Statistics statistics, int threads, List<String> nested) throws Exception {
+    final var bytes = new ByteArrayOutputStream();
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.setNestedArchives(nested);
+      classPath.setParallelism(threads);
+      classPath.setStatistics(statistics);
+      for (final var input : inputs) {
+        classPath.add(input);
+      }
+      classPath.emit(OutputFormat.JAVA.publicApiListener(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  private static String runtimeImage(Set<String> modules, int threads) throws Exception {
+    final var bytes = new ByteArrayOutputStream();
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.setParallelism(threads);
+      classPath.addRuntimeImage(null, modules);
+      classPath.emit(OutputFormat.JAVA.publicApiListener(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void identicalClassFilesAreParsedOnce(@TempDir Path folder) throws Exception {
+    final var jar = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var copy = Files.copy(jar, folder.resolve("copy.jar"));
+    final var single = new Statistics(true);
+    final var expected = ClassPathTests.emit(List.of(jar), single, 1);
+    final var twice = new Statistics(true);
+    assertEquals(expected, ClassPathTests.emit(List.of(jar, copy), twice, 1));
+    final var classFiles = single.get(Statistics.Counter.CLASS_FILES);
+    assertEquals(2 * classFiles, twice.get(Statistics.Counter.CLASS_FILES));
+    assertEquals(single.get(Statistics.Counter.CLASSES_PARSED), twice.get(Statistics.Counter.CLASSES_PARSED));
+    assertEquals(classFiles, twice.get(Statistics.Counter.CLASSES_DEDUPLICATED));
+    assertEquals(2 * single.get(Statistics.Counter.CLASSES_SELECTED), twice.get(Statistics.Counter.CLASSES_SELECTED));
+  }
+
+  @Test
+  public void loadingInParallelProducesTheSameOutput(@TempDir Path folder) throws Exception {
+    final var jar = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    // Also extract it, to cover folders on the default file system.
+    try (final var jarFileSystem = FileSystems.newFileSystem(jar); final var files = Files.walk(jarFileSystem.getPath("/"))) {
+      for (final var file : (Iterable<Path>) files::iterator) {
+        final var target = folder.resolve(file.toString().substring(1));
+        if (Files.isDirectory(file)) {
+          Files.createDirectories(target);
+        }
+        else {
+          Files.copy(file, target);
+        }
+      }
+    }
+    for (final var input : List.of(jar, folder)) {
+      final var sequential = new Statistics(true);
+      final var expected = ClassPathTests.emit(List.of(input), sequential, 1);
+      final var parallel = new Statistics(true);
+      assertEquals(expected, ClassPathTests.emit(List.of(input), parallel, 4));
+      assertEquals(sequential.get(Statistics.Counter.CLASS_FILES), parallel.get(Statistics.Counter.CLASS_FILES));
+      assertEquals(sequential.get(Statistics.Counter.CLASSES_SELECTED), parallel.get(Statistics.Counter.CLASSES_SELECTED));
+    }
+  }
+
+  @Test
+  public void runtimeImageModulesAreIncluded() throws Exception {
+    final var modules = Set.of("java.compiler", "java.sql");
+    final var expected = ClassPathTests.runtimeImage(modules, 1);
+    assertEquals(expected, ClassPathTests.runtimeImage(modules, 2));
+    assertTrue(expected.contains("module java.sql {\n  requires transitive java.logging;\n"));
+    assertTrue(expected.contains("\n  exports javax.sql;\n  uses java.sql.Driver;\n}\n"));
+    assertTrue(expected.contains("module java.compiler {\n"));
+    assertTrue(expected.contains("package javax.annotation.processing {\n"));
+    // Only exported packages are included, and only modules that were asked for.
+    final var packages = expected.lines().filter(line -> line.startsWith("package ")).toList();
+    assertEquals(List.of("package java.sql {", "package javax.annotation.processing {", "package javax.lang.model {",
+                         "package javax.lang.model.element {", "package javax.lang.model.type {", "package javax.lang.model.util {",
+                         "package javax.sql {", "package javax.tools {"), packages);
+    assertFalse(expected.contains("module java.base"));
+    try (final var classPath = new ClassPath()) {
+      final var ex = assertThrows(IOException.class, () -> classPath.addRuntimeImage(null, Set.of("java.sql", "no.such.module")));
+      assertTrue(ex.getMessage().contains("no.such.module"));
+    }
+  }
+
+  @Test
+  public void scanningConcurrentlyProducesTheSameOutput(@TempDir Path folder) throws Exception {
+    final var asm = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var jar = Path.of(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var inputs = List.of(asm, Files.copy(asm, folder.resolve("copy.jar")), jar);
+    final var sequential = new Statistics(true);
+    final var expected = ClassPathTests.emit(inputs, sequential, 1);
+    final var bytes = new ByteArrayOutputStream();
+    final var concurrent = new Statistics(true);
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.setParallelism(2);
+      classPath.setStatistics(concurrent);
+      classPath.addConcurrently(inputs);
+      classPath.emit(OutputFormat.JAVA.publicApiListener(out));
+    }
+    assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+    assertEquals(sequential.get(Statistics.Counter.CLASS_FILES), concurrent.get(Statistics.Counter.CLASS_FILES));
+    assertEquals(sequential.get(Statistics.Counter.CLASSES_SELECTED), concurrent.get(Statistics.Counter.CLASSES_SELECTED));
+    // A broken input is reported as such, without affecting the others.
+    final var broken = Files.writeString(folder.resolve("broken.jar"), "not a jar file");
+    try (final var classPath = new ClassPath()) {
+      final var ex = assertThrows(IOException.class, () -> classPath.addConcurrently(List.of(asm, broken, jar)));
+      assertTrue(ex.getMessage().contains(broken.toString()));
+    }
+  }
+
+  @Test
+  public void nestedArchivesAreIncluded(@TempDir Path folder) throws Exception {
+    final var asm = Path.of(ClassVisitor.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var asmTree = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var expected = ClassPathTests.emit(List.of(asmTree, asm), new Statistics(false), 1);
+    final var fatJar = ClassPathTests.archive(folder.resolve("app.jar"), Map.of("BOOT-INF/classes/", asmTree,
+                                                                                "BOOT-INF/lib/asm.jar", asm));
+    final var war = ClassPathTests.archive(folder.resolve("app.war"), Map.of("WEB-INF/classes/", asmTree, "WEB-INF/lib/asm.jar", asm));
+    final var ear = ClassPathTests.archive(folder.resolve("app.ear"), Map.of("app.war", war));
+    for (final var threads : new int[] { 1, 2 }) {
+      assertEquals(expected, ClassPathTests.emit(List.of(fatJar), new Statistics(false), threads, List.of("BOOT-INF/lib/*.jar")));
+      assertEquals(expected, ClassPathTests.emit(List.of(war), new Statistics(false), threads, List.of("WEB-INF/lib/*.jar")));
+      assertEquals(expected, ClassPathTests.emit(List.of(ear), new Statistics(false), threads, List.of("*.war", "WEB-INF/lib/*.jar")));
+    }
+    // Without patterns, only the archive's own classes are included.
+    final var own = ClassPathTests.emit(List.of(asmTree), new Statistics(false), 1);
+    assertEquals(own, ClassPathTests.emit(List.of(fatJar), new Statistics(false), 1));
+    assertEquals(own, ClassPathTests.emit(List.of(war), new Statistics(false), 1));
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.DependencyIndex;
+import com.github.zastai.apiref.internal.Diagnostics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DependencyIndexTests {
+
+  private static Path jarContaining(Class<?> c) throws Exception {
+    return Path.of(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+  }
+
+  @Test
+  public void jarsAreReadOnce() throws Exception {
+    final var index = new DependencyIndex();
+    final var jars = List.of(DependencyIndexTests.jarContaining(ClassNode.class));
+    final var executor = Executors.newFixedThreadPool(4);
+    try {
+      final var tasks = List.<Callable<Object>>of(
+        () -> index.find(jars, "org/objectweb/asm/tree/ClassNode", Diagnostics.NONE),
+        () -> index.find(jars, "org/objectweb/asm/tree/MethodNode", Diagnostics.NONE),
+        () -> index.find(jars, "org/objectweb/asm/tree/FieldNode", Diagnostics.NONE),
+        () -> index.find(jars, "org/objectweb/asm/tree/AnnotationNode", Diagnostics.NONE)
+      );
+      for (final var result : executor.invokeAll(tasks)) {
+        assertNotNull(result.get());
+      }
+    }
+    catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertNull(index.find(jars, "no/such/Class", Diagnostics.NONE));
+    assertEquals(1, index.jarsRead());
+  }
+
+  @Test
+  public void failuresAreReported(@TempDir Path folder) throws Exception {
+    final var messages = new ArrayList<String>();
+    final var diagnostics = new Diagnostics((level, message) -> messages.add(level + ": " + message), Diagnostics.Level.INFO);
+    final var classes = Files.createDirectories(folder.resolve("classes"));
+    Files.write(Files.createDirectories(classes.resolve("no/such")).resolve("Broken.class"),
+                new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0x7F, 0x7F });
+    final var jar = Files.write(folder.resolve("broken.jar"), new byte[] { 4, 5, 6 });
+    final var index = new DependencyIndex();
+    assertNull(index.find(List.of(classes, jar), "no/such/Broken", diagnostics));
+    assertEquals(2, messages.size(), messages::toString);
+    assertTrue(messages.get(0).startsWith("WARNING: Could not read class information from "), messages.get(0));
+    assertTrue(messages.get(1).startsWith("WARNING: Could not index "), messages.get(1));
+  }
+
+  @Test
+  public void platformClasses() {
+    final var index = new DependencyIndex();
+    final var deprecated = index.find(List.of(), "java/lang/Deprecated", Diagnostics.NONE);
+    assertNotNull(deprecated);
+    assertTrue(deprecated.isAnnotation());
+    assertTrue(deprecated.documented());
+    assertEquals("RUNTIME", deprecated.retention());
+    final var override = index.find(List.of(), "java/lang/Override", Diagnostics.NONE);
+    assertNotNull(override);
+    assertFalse(override.documented());
+    assertEquals("SOURCE", override.retention());
+    assertEquals(0, index.jarsRead());
+  }
+
+}
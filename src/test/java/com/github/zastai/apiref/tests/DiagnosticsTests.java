@@ -0,0 +1,56 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.Diagnostics;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiagnosticsTests {
+
+  @Test
+  public void batchedOutput() {
+    final var outBytes = new ByteArrayOutputStream();
+    final var errBytes = new ByteArrayOutputStream();
+    try (final var out = new PrintStream(outBytes, true, StandardCharsets.UTF_8);
+         final var err = new PrintStream(errBytes, true, StandardCharsets.UTF_8)) {
+      final var diagnostics = new Diagnostics(Diagnostics.batched(out, err), Diagnostics.Level.INFO);
+      diagnostics.report(Diagnostics.Level.INFO, Diagnostics.Category.GENERAL, "Found %d thing(s).", 2);
+      assertEquals(0, outBytes.size());
+      diagnostics.report(Diagnostics.Level.ERROR, Diagnostics.Category.DISCOVERY, "Oops.");
+      // Errors are written right away, after anything batched before them.
+      assertEquals("[info] Found 2 thing(s).%n".formatted(), outBytes.toString(StandardCharsets.UTF_8));
+      assertEquals("[error] Oops.%n".formatted(), errBytes.toString(StandardCharsets.UTF_8));
+      diagnostics.report(Diagnostics.Level.WARNING, Diagnostics.Category.MODULES, "Hmm.");
+      diagnostics.flush();
+      assertTrue(outBytes.toString(StandardCharsets.UTF_8).endsWith("[warning] Hmm.%n".formatted()));
+    }
+  }
+
+  @Test
+  public void suppressedDiagnosticsAreCountedButNotBuilt() {
+    final var output = new StringBuilder();
+    final var diagnostics = new Diagnostics((level, message) -> output.append(level.prefix).append(message).append('\n'),
+                                            Diagnostics.Level.INFO);
+    final var built = new boolean[1];
+    diagnostics.report(Diagnostics.Level.DEBUG, Diagnostics.Category.SELECTION, () -> {
+      built[0] = true;
+      return "Selected something.";
+    });
+    diagnostics.report(Diagnostics.Level.TRACE, Diagnostics.Category.SELECTION, "Skipping %s.", "something else");
+    assertFalse(built[0]);
+    assertEquals("", output.toString());
+    assertEquals(2, diagnostics.count(Diagnostics.Category.SELECTION));
+    assertEquals(0, diagnostics.count(Diagnostics.Category.NESTED_TYPES));
+    diagnostics.reportSuppressed();
+    assertEquals("[info] Suppressed 2 detailed diagnostic(s) about class and member selection.\n", output.toString());
+    assertTrue(diagnostics.isEnabled(Diagnostics.Level.WARNING));
+    assertFalse(diagnostics.isEnabled(Diagnostics.Level.DEBUG));
+  }
+
+}
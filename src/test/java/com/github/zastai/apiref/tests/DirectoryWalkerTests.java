@@ -0,0 +1,63 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.DirectoryWalker;
+import com.github.zastai.apiref.internal.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DirectoryWalkerTests {
+
+  @Test
+  public void classFilesAreFoundInAFixedOrder(@TempDir Path folder) throws Exception {
+    final var expected = new ArrayList<String>();
+    for (final var name : List.of("A.class", "B.class", "a/A.class", "a/b/A.class", "a/b/c/A.class", "a/c/A.class", "b/A.class",
+                                  "b/B.class")) {
+      final var file = folder.resolve(name);
+      Files.createDirectories(file.getParent());
+      Files.write(file, new byte[name.length()]);
+      expected.add(name);
+    }
+    Files.writeString(folder.resolve("a/readme.txt"), "not a class file");
+    final var pool = new ForkJoinPool(4);
+    try {
+      // Also with a backlog limit that forces subfolders to be listed only once they are reached.
+      for (final var maxBacklog : new int[] { 1, 1000 }) {
+        final var found = new ArrayList<String>();
+        final var walker = new DirectoryWalker(folder, pool, maxBacklog, Statistics.DISABLED);
+        while (walker.hasNext()) {
+          final var classFile = walker.next();
+          final var name = folder.relativize(classFile.path()).toString().replace('\\', '/');
+          assertEquals(name.length(), classFile.size());
+          found.add(name);
+        }
+        assertEquals(expected, found);
+      }
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void missingFoldersAreReported(@TempDir Path folder) {
+    final var pool = new ForkJoinPool(2);
+    try {
+      final var walker = new DirectoryWalker(folder.resolve("missing"), pool, 100, Statistics.DISABLED);
+      assertThrows(UncheckedIOException.class, walker::hasNext);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassPath;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventsTests {
+
+  private static long count(List<RecordedEvent> events, String name) {
+    return events.stream().filter(e -> e.getEventType().getName().equals("com.github.zastai.apiref." + name)).count();
+  }
+
+  @Test
+  public void eventsAreRecorded(@TempDir Path folder) throws Exception {
+    final var jar = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var recordingFile = folder.resolve("events.jfr");
+    try (final var recording = new Recording()) {
+      for (final var name : List.of("ClassParsed", "JarClosed", "JarOpened", "PackageBuilt", "PackageRendered")) {
+        recording.enable("com.github.zastai.apiref." + name).withoutThreshold();
+      }
+      recording.start();
+      try (final var classPath = new ClassPath(); final var out = new PrintStream(OutputStream.nullOutputStream())) {
+        classPath.add(jar);
+        classPath.emit(OutputFormat.JAVA.publicApiListener(out));
+      }
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+    final var events = RecordingFile.readAllEvents(recordingFile);
+    assertEquals(1, EventsTests.count(events, "JarOpened"));
+    assertEquals(1, EventsTests.count(events, "JarClosed"));
+    assertTrue(EventsTests.count(events, "PackageBuilt") > 0);
+    assertTrue(EventsTests.count(events, "PackageRendered") > 0);
+    final var parsed = events.stream().filter(e -> e.getEventType().getName().endsWith(".ClassParsed")).toList();
+    assertFalse(parsed.isEmpty());
+    for (final var event : parsed) {
+      assertTrue(event.getLong("size") > 0);
+      assertTrue(event.getString("source").startsWith("jar:"));
+    }
+    assertTrue(parsed.stream().anyMatch(e -> e.getString("rejectedReason") == null));
+  }
+
+}
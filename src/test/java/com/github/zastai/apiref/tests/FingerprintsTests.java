@@ -0,0 +1,60 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.Fingerprints;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class FingerprintsTests {
+
+  @Test
+  public void contentsMatter(@TempDir Path folder) throws IOException {
+    final var classFile = Files.write(folder.resolve("A.class"), new byte[] { 1, 2, 3 });
+    final var before = Fingerprints.compute(List.of(folder), List.of());
+    Files.write(classFile, new byte[] { 1, 2, 4 });
+    assertNotEquals(before, Fingerprints.compute(List.of(folder), List.of()));
+  }
+
+  @Test
+  public void dependencyChangesMatter(@TempDir Path folder) throws IOException {
+    final var input = Files.createDirectory(folder.resolve("input"));
+    Files.write(input.resolve("A.class"), new byte[] { 1, 2, 3 });
+    final var jar = Files.write(folder.resolve("dependency.jar"), new byte[] { 4, 5, 6 });
+    final var classes = Files.createDirectory(folder.resolve("classes"));
+    final var classFile = Files.write(classes.resolve("B.class"), new byte[] { 7, 8, 9 });
+    final var dependencies = List.of(jar, classes);
+    final var before = Fingerprints.compute(List.of(input), dependencies, List.of());
+    assertEquals(before, Fingerprints.compute(List.of(input), dependencies, List.of()));
+    Files.setLastModifiedTime(jar, FileTime.fromMillis(0));
+    final var touched = Fingerprints.compute(List.of(input), dependencies, List.of());
+    assertNotEquals(before, touched);
+    Files.write(classFile, new byte[] { 7, 8, 9, 10 });
+    assertNotEquals(touched, Fingerprints.compute(List.of(input), dependencies, List.of()));
+  }
+
+  @Test
+  public void settingsMatter(@TempDir Path folder) throws IOException {
+    Files.write(folder.resolve("A.class"), new byte[] { 1, 2, 3 });
+    assertNotEquals(Fingerprints.compute(List.of(folder), List.of("java")), Fingerprints.compute(List.of(folder), List.of("json")));
+  }
+
+  @Test
+  public void timestampsDoNotMatter(@TempDir Path folder) throws IOException {
+    final var classFile = Files.write(folder.resolve("A.class"), new byte[] { 1, 2, 3 });
+    Files.write(folder.resolve("notes.txt"), new byte[] { 4 });
+    final var before = Fingerprints.compute(List.of(folder), List.of());
+    Files.setLastModifiedTime(classFile, FileTime.fromMillis(0));
+    // Non-class files are not part of the API, so they do not matter either.
+    Files.write(folder.resolve("notes.txt"), new byte[] { 5 });
+    assertEquals(before, Fingerprints.compute(List.of(folder), List.of()));
+  }
+
+}
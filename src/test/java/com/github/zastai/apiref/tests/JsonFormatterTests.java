@@ -0,0 +1,79 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ASMUtil;
+import com.github.zastai.apiref.internal.ClassPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonFormatterTests {
+
+  private static final String INNER = "example/Outer$Inner";
+
+  private static final String OUTER = "example/Outer";
+
+  /** Writes {@code example.Outer} (annotated, abstract, with a constant and a nested class) and {@code example.Outer.Inner}. */
+  private static void writeClasses(Path folder) throws Exception {
+    final var outer = new ClassNode();
+    outer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_ABSTRACT, JsonFormatterTests.OUTER, null,
+                "java/lang/Object", new String[] { "java/lang/Runnable" });
+    outer.visitAnnotation("Ljava/lang/Deprecated;", true).visitEnd();
+    outer.visitInnerClass(JsonFormatterTests.INNER, JsonFormatterTests.OUTER, "Inner", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+    outer.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "LIMIT", "I", null, 42).visitEnd();
+    outer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "apply", "(Ljava/lang/String;)Ljava/util/List;",
+                      "(Ljava/lang/String;)Ljava/util/List<Ljava/lang/String;>;", null).visitEnd();
+    outer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "close", "()V", null, new String[] { "java/io/IOException" }).visitEnd();
+    outer.visitEnd();
+    final var inner = new ClassNode();
+    inner.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, JsonFormatterTests.INNER, null, "java/lang/Object", null);
+    inner.visitInnerClass(JsonFormatterTests.INNER, JsonFormatterTests.OUTER, "Inner", Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC);
+    inner.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_VOLATILE, "count", "J", null, null).visitEnd();
+    inner.visitEnd();
+    Files.createDirectories(folder.resolve("example"));
+    Files.write(folder.resolve(JsonFormatterTests.OUTER + ".class"), ASMUtil.writeClass(outer));
+    Files.write(folder.resolve(JsonFormatterTests.INNER + ".class"), ASMUtil.writeClass(inner));
+  }
+
+  @Test
+  public void classesAreWrittenAsJsonLines(@TempDir Path folder) throws Exception {
+    JsonFormatterTests.writeClasses(folder);
+    final var bytes = new ByteArrayOutputStream();
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.add(folder);
+      classPath.emit(OutputFormat.JSON.publicApiListener(out));
+    }
+    final var lines = bytes.toString(StandardCharsets.UTF_8).lines().toList();
+    final var expected = List.of(
+      "{\"kind\":\"reference\",\"version\":1}",
+      "{\"kind\":\"package\",\"name\":\"example\"}",
+      "{\"kind\":\"class\",\"name\":\"Outer\",\"fullName\":\"example.Outer\",\"package\":\"example\",\"version\":61,"
+      + "\"runtime\":\"Java SE 17\",\"declaration\":\"class\",\"access\":1057,\"modifiers\":[\"public\",\"abstract\"],"
+      + "\"superclass\":\"java.lang.Object\",\"interfaces\":[\"java.lang.Runnable\"],\"annotations\":[{\"type\":\"java.lang.Deprecated\"}],"
+      + "\"fields\":[{\"name\":\"LIMIT\",\"access\":25,\"modifiers\":[\"public\",\"static\",\"final\"],\"type\":\"int\","
+      + "\"descriptor\":\"I\"}],"
+      + "\"methods\":[{\"name\":\"apply\",\"access\":1025,\"modifiers\":[\"public\",\"abstract\"],"
+      + "\"returnType\":\"java.util.List<java.lang.String>\",\"parameters\":[{\"type\":\"java.lang.String\"}],"
+      + "\"descriptor\":\"(Ljava/lang/String;)Ljava/util/List;\","
+      + "\"signature\":\"(Ljava/lang/String;)Ljava/util/List<Ljava/lang/String;>;\"},"
+      + "{\"name\":\"close\",\"access\":1025,\"modifiers\":[\"public\",\"abstract\"],\"returnType\":\"void\","
+      + "\"throws\":[\"java.io.IOException\"],\"descriptor\":\"()V\"}],"
+      + "\"nestedClasses\":[{\"kind\":\"class\",\"name\":\"Inner\",\"fullName\":\"example.Outer$Inner\",\"package\":\"example\","
+      + "\"version\":61,\"runtime\":\"Java SE 17\",\"declaration\":\"class\",\"access\":9,\"modifiers\":[\"public\",\"static\"],"
+      + "\"superclass\":\"java.lang.Object\",\"fields\":[{\"name\":\"count\",\"access\":65,\"modifiers\":[\"public\",\"volatile\"],"
+      + "\"type\":\"long\",\"descriptor\":\"J\"}]}]}"
+    );
+    assertEquals(expected, lines);
+  }
+
+}
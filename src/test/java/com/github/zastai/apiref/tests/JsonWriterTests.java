@@ -0,0 +1,65 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.JsonWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonWriterTests {
+
+  private static String write(Consumer<JsonWriter> writer) {
+    final var bytes = new ByteArrayOutputStream();
+    try (final var out = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+      writer.accept(new JsonWriter(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n");
+  }
+
+  @Test
+  public void escaping() {
+    final var json = JsonWriterTests.write(w -> w.value("a\"b\\c\nd\u0001é"));
+    assertEquals("\"a\\\"b\\\\c\\nd\\u0001é\"\n", json);
+  }
+
+  @Test
+  public void misuse() {
+    JsonWriterTests.write(w -> {
+      w.beginObject();
+      assertThrows(IllegalStateException.class, () -> w.value(1));
+      assertThrows(IllegalStateException.class, w::endArray);
+      w.name("a");
+      assertThrows(IllegalStateException.class, () -> w.name("b"));
+      assertThrows(IllegalStateException.class, w::endObject);
+    });
+  }
+
+  @Test
+  public void nesting() {
+    final var json = JsonWriterTests.write(w -> {
+      w.beginObject();
+      w.name("a").value(1);
+      w.name("b").beginArray().value(true).nullValue().value(0.5).beginObject().endObject().endArray();
+      w.optionalProperty("c", null);
+      w.optionalProperty("d", "x");
+      w.endObject();
+    });
+    assertEquals("{\"a\":1,\"b\":[true,null,0.5,{}],\"d\":\"x\"}\n", json);
+  }
+
+  @Test
+  public void topLevelValuesAreLines() {
+    final var json = JsonWriterTests.write(w -> {
+      w.beginObject().name("kind").value("a").endObject();
+      w.beginObject().name("kind").value("b").endObject();
+      w.value(Double.NaN);
+    });
+    assertEquals("{\"kind\":\"a\"}\n{\"kind\":\"b\"}\n\"NaN\"\n", json);
+  }
+
+}
@@ -0,0 +1,36 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.plugin.maven.ApiReferencePlugin;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PluginDescriptorTests {
+
+  /** The descriptor is maintained by hand, so make sure it matches the mojo's parameters. */
+  @Test
+  public void parametersMatch() throws Exception {
+    final var descriptor = ApiReferencePlugin.class.getClassLoader().getResourceAsStream("META-INF/maven/plugin.xml");
+    final var document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(Objects.requireNonNull(descriptor));
+    final var mojo = (Element) document.getElementsByTagName("mojo").item(0);
+    assertEquals(ApiReferencePlugin.class.getName(), mojo.getElementsByTagName("implementation").item(0).getTextContent());
+    final var parameters = mojo.getElementsByTagName("parameter");
+    final var declared = new TreeSet<String>();
+    for (var i = 0; i < parameters.getLength(); ++i) {
+      declared.add(((Element) parameters.item(i)).getElementsByTagName("name").item(0).getTextContent());
+    }
+    final var fields = new TreeSet<String>();
+    Arrays.stream(ApiReferencePlugin.class.getDeclaredFields()).filter(f -> !Modifier.isStatic(f.getModifiers())).map(Field::getName)
+          .forEach(fields::add);
+    assertEquals(fields, declared);
+  }
+
+}
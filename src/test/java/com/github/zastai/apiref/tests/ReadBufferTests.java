@@ -0,0 +1,46 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.ReadBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReadBufferTests {
+
+  @Test
+  public void buffersAreReused(@TempDir Path folder) throws Exception {
+    final var small = new byte[100];
+    final var large = new byte[100_000];
+    new Random(42).nextBytes(large);
+    System.arraycopy(large, 0, small, 0, small.length);
+    final var smallFile = Files.write(folder.resolve("small.bin"), small);
+    final var largeFile = Files.write(folder.resolve("large.bin"), large);
+    final var buffer = ReadBuffer.forCurrentThread();
+    assertSame(buffer, ReadBuffer.forCurrentThread());
+    assertArrayEquals(large, buffer.read(largeFile).toByteArray());
+    final var bytes = buffer.bytes();
+    assertArrayEquals(small, buffer.read(smallFile).toByteArray());
+    assertSame(bytes, buffer.bytes());
+    assertEquals(small.length, buffer.length());
+  }
+
+  @Test
+  public void streamsAreReadFully() throws Exception {
+    final var data = new byte[70_000];
+    new Random(42).nextBytes(data);
+    final var buffer = ReadBuffer.forCurrentThread();
+    // Whether the size is unknown, exact or wrong, all data is read.
+    for (final var size : new long[] { -1, data.length, 10, data.length * 2L }) {
+      assertArrayEquals(data, buffer.read(new ByteArrayInputStream(data), size).toByteArray());
+    }
+  }
+
+}
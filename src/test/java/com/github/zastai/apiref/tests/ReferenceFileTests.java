@@ -0,0 +1,63 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.ReferenceFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReferenceFileTests {
+
+  private static boolean write(Path path, String contents) throws IOException {
+    try (final var reference = ReferenceFile.create(path)) {
+      reference.stream().print(contents);
+      return reference.commit();
+    }
+  }
+
+  @Test
+  public void changedContentsReplaceFile(@TempDir Path folder) throws IOException {
+    final var path = folder.resolve("api.java");
+    assertTrue(ReferenceFileTests.write(path, "first"));
+    assertTrue(ReferenceFileTests.write(path, "second"));
+    assertEquals("second", Files.readString(path, StandardCharsets.UTF_8));
+    try (final var files = Files.list(folder)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void uncommittedContentsAreDiscarded(@TempDir Path folder) throws IOException {
+    final var path = folder.resolve("api.java");
+    assertTrue(ReferenceFileTests.write(path, "original"));
+    try (final var reference = ReferenceFile.create(path)) {
+      reference.stream().print("discarded");
+    }
+    assertEquals("original", Files.readString(path, StandardCharsets.UTF_8));
+    try (final var files = Files.list(folder)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  public void unchangedContentsLeaveFileAlone(@TempDir Path folder) throws IOException {
+    final var path = folder.resolve("api.java");
+    assertTrue(ReferenceFileTests.write(path, "contents"));
+    final var timestamp = FileTime.fromMillis(1_000_000_000L);
+    Files.setLastModifiedTime(path, timestamp);
+    assertFalse(ReferenceFileTests.write(path, "contents"));
+    assertEquals(timestamp, Files.getLastModifiedTime(path));
+    try (final var files = Files.list(folder)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.formatters.OutputFormat;
+import com.github.zastai.apiref.internal.ClassPath;
+import com.github.zastai.apiref.internal.SpillStore;
+import com.github.zastai.apiref.internal.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.tree.ClassNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillStoreTests {
+
+  private static String emit(long memoryBudget, Statistics statistics) throws Exception {
+    final var jar = Path.of(ClassNode.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final var bytes = new ByteArrayOutputStream();
+    try (final var classPath = new ClassPath(); final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      classPath.setMemoryBudget(memoryBudget);
+      classPath.setStatistics(statistics);
+      classPath.add(jar);
+      classPath.emit(OutputFormat.JAVA.publicApiListener(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void entriesCanBeReadBackInAnyOrder(@TempDir Path folder) throws IOException {
+    final var small = "small".getBytes(StandardCharsets.UTF_8);
+    final var large = new byte[200 * 1024];
+    Arrays.fill(large, (byte) 42);
+    try (final var store = new SpillStore(folder)) {
+      final var first = store.put(small);
+      final var second = store.put(large);
+      final var third = store.put(small);
+      assertEquals(2L * small.length + large.length, store.size());
+      assertArrayEquals(small, store.get(third));
+      assertArrayEquals(large, store.get(second));
+      assertArrayEquals(small, store.get(first));
+    }
+    try (final var files = Files.list(folder)) {
+      assertEquals(0, files.count());
+    }
+  }
+
+  @Test
+  public void spillingDoesNotAffectOutput() throws Exception {
+    final var expected = SpillStoreTests.emit(0, new Statistics(false));
+    final var statistics = new Statistics(true);
+    assertEquals(expected, SpillStoreTests.emit(1, statistics));
+    assertTrue(statistics.get(Statistics.Counter.CLASSES_SPILLED) > 0);
+  }
+
+}
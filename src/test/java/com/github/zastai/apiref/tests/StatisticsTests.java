@@ -0,0 +1,55 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.JsonWriter;
+import com.github.zastai.apiref.internal.Statistics;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsTests {
+
+  private static String json(Statistics statistics) {
+    final var bytes = new ByteArrayOutputStream();
+    try (final var out = new PrintStream(bytes, true, StandardCharsets.UTF_8)) {
+      statistics.writeJson(new JsonWriter(out));
+    }
+    return bytes.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void disabledStatisticsRecordNothing() {
+    final var statistics = new Statistics(false);
+    statistics.count(Statistics.Counter.CLASS_FILES, 3);
+    final var timer = statistics.timer();
+    assertNull(timer.enter(Statistics.Phase.PARSE));
+    assertNull(timer.enter(null));
+    assertEquals(0, statistics.get(Statistics.Counter.CLASS_FILES));
+    assertTrue(StatisticsTests.json(statistics).contains("\"parse\":{\"wallNanos\":0,"));
+  }
+
+  @Test
+  public void timersTrackPhases() throws InterruptedException {
+    final var statistics = new Statistics(true);
+    statistics.count(Statistics.Counter.CLASS_FILES, 3);
+    statistics.count(Statistics.Counter.CLASS_FILES, 2);
+    final var timer = statistics.timer();
+    assertNull(timer.enter(Statistics.Phase.PARSE));
+    Thread.sleep(5);
+    assertEquals(Statistics.Phase.PARSE, timer.enter(Statistics.Phase.FORMAT));
+    assertEquals(Statistics.Phase.FORMAT, timer.enter(null));
+    assertEquals(5, statistics.get(Statistics.Counter.CLASS_FILES));
+    final var json = StatisticsTests.json(statistics);
+    assertTrue(json.contains("\"classFiles\":5"));
+    // Time is only charged to phases that were entered.
+    assertTrue(json.contains("\"read\":{\"wallNanos\":0,"));
+    assertFalse(json.contains("\"parse\":{\"wallNanos\":0,"));
+  }
+
+}
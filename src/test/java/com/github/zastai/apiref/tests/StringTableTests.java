@@ -0,0 +1,150 @@
+package com.github.zastai.apiref.tests;
+
+import com.github.zastai.apiref.internal.ASMUtil;
+import com.github.zastai.apiref.internal.StringTable;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StringTableTests {
+
+  private static final String CONSTANT = "A string constant, which is not a name.";
+
+  private static byte[] classFile(Class<?> c) throws IOException {
+    try (final var in = c.getResourceAsStream(c.getSimpleName() + ".class")) {
+      return Objects.requireNonNull(in).readAllBytes();
+    }
+  }
+
+  private static String fieldDescriptor(ClassNode cn, String name) {
+    return cn.fields.stream().filter(fn -> fn.name.equals(name)).findFirst().orElseThrow().desc;
+  }
+
+  @Test
+  public void classFilesShareNames() throws IOException {
+    final var strings = new StringTable();
+    final var classNode = StringTableTests.classFile(ClassNode.class);
+    final var methodNode = StringTableTests.classFile(MethodNode.class);
+    final var a = ASMUtil.readClass(classNode, classNode.length, strings);
+    final var b = ASMUtil.readClass(methodNode, methodNode.length, strings);
+    assertSame(StringTableTests.fieldDescriptor(a, "name"), StringTableTests.fieldDescriptor(b, "name"));
+    assertSame(strings.intern("org/objectweb/asm/tree/ClassNode"), a.name);
+    // Parsing is not otherwise affected.
+    assertArrayEquals(ASMUtil.writeClass(ASMUtil.readClass(classNode)), ASMUtil.writeClass(a));
+    final var plain = ASMUtil.readClass(methodNode);
+    assertNotSame(plain.name, b.name);
+    assertEquals(plain.name, b.name);
+    assertEquals(plain.fields.stream().map(fn -> fn.desc).toList(), b.fields.stream().map(fn -> fn.desc).toList());
+  }
+
+  @Test
+  public void clearingWhileInterningIsSafe() throws Exception {
+    final var strings = new StringTable();
+    final var executor = Executors.newFixedThreadPool(4);
+    try {
+      final var tasks = new ArrayList<Callable<Object>>();
+      for (var i = 0; i < 4; ++i) {
+        tasks.add(() -> {
+          for (var j = 0; j < 50_000; ++j) {
+            final var s = "name" + (j % 2_000);
+            assertEquals(s, strings.intern(s));
+          }
+          return null;
+        });
+      }
+      final var results = new ArrayList<Future<Object>>();
+      for (final var task : tasks) {
+        results.add(executor.submit(task));
+      }
+      for (var i = 0; i < 1_000; ++i) {
+        strings.clear();
+      }
+      for (final var result : results) {
+        result.get(1, TimeUnit.MINUTES);
+      }
+    }
+    catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void constantsAreNotInterned() throws IOException {
+    final var strings = new StringTable();
+    final var classFile = StringTableTests.classFile(StringTableTests.class);
+    final var cn = ASMUtil.readClass(classFile, classFile.length, strings);
+    assertSame(strings.intern("com/github/zastai/apiref/tests/StringTableTests"), cn.name);
+    // Only names and descriptors are kept, not string constants used in method bodies.
+    final var size = strings.size();
+    strings.intern(StringTableTests.CONSTANT);
+    assertEquals(size + 1, strings.size());
+  }
+
+  @Test
+  public void concurrentInterningYieldsOneInstance() throws Exception {
+    final var strings = new StringTable();
+    final var count = 5_000;
+    final var tasks = new ArrayList<Callable<List<String>>>();
+    for (var i = 0; i < 4; ++i) {
+      tasks.add(() -> {
+        final var interned = new ArrayList<String>();
+        for (var j = 0; j < count; ++j) {
+          // A new instance each time.
+          interned.add(strings.intern(new String("name" + j)));
+        }
+        return interned;
+      });
+    }
+    final var executor = Executors.newFixedThreadPool(4);
+    try {
+      final var results = executor.invokeAll(tasks);
+      final var expected = results.get(0).get();
+      for (final var result : results) {
+        final var interned = result.get();
+        for (var j = 0; j < count; ++j) {
+          assertSame(expected.get(j), interned.get(j));
+        }
+      }
+    }
+    catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+    finally {
+      executor.shutdown();
+    }
+    assertEquals(count, strings.size());
+  }
+
+  @Test
+  public void firstInstanceIsCanonical() {
+    final var strings = new StringTable();
+    final var first = new String("java/lang/String");
+    final var second = new String("java/lang/String");
+    assertSame(first, strings.intern(first));
+    assertSame(first, strings.intern(second));
+    strings.intern("java/lang/Object");
+    assertEquals(2, strings.size());
+    strings.clear();
+    assertEquals(0, strings.size());
+    assertSame(second, strings.intern(second));
+  }
+
+}
@@ -0,0 +1,88 @@
+#!/bin/sh
+#
+# Measures class file ingestion (reading and parsing), by running the launcher on the given inputs a number of times with
+# --stats-file, and reporting the best throughput and the average allocation per class file in the read and parse phases.
+#
+# Usage: src/test/scripts/ingestion-benchmark.sh [--cold] RUNS INPUT...
+#
+# The inputs (and any options) are passed to the launcher as-is. As a standard large-scale benchmark, use the runtime image of the JDK
+# itself: src/test/scripts/ingestion-benchmark.sh 5 --threads=4 jrt:/
+#
+# By default, the page cache is warmed up by an initial run that is not measured. With --cold, the page cache is dropped before each
+# run instead (this requires root, as it writes to /proc/sys/vm/drop_caches), to measure reading from disk.
+#
+# This requires a build using the 'cds' profile (mvn -B -Pcds package); set APIREF to use a different launcher. Compare results
+# between builds to see the effect of a change.
+
+set -e
+
+root=$(cd "$(dirname "$0")/../../.." && pwd)
+launcher=${APIREF:-$root/target/apiref}
+cache=warm
+if [ "$1" = "--cold" ]; then
+  cache=cold
+  shift
+fi
+runs=$1
+shift || true
+
+if [ -z "$runs" ] || [ $# -eq 0 ]; then
+  echo "Usage: $0 [--cold] RUNS INPUT..." >&2
+  exit 1
+fi
+if [ ! -x "$launcher" ]; then
+  echo "No launcher found; build using: mvn -B -Pcds package" >&2
+  exit 1
+fi
+
+if [ "$cache" = cold ] && [ ! -w /proc/sys/vm/drop_caches ]; then
+  echo "Cannot drop the page cache (this requires root)." >&2
+  exit 1
+fi
+
+output=$(mktemp)
+stats=$(mktemp)
+trap 'rm -f "$output" "$stats"' EXIT
+
+# Extracts a field of a phase from the statistics file.
+phase() {
+  sed -n "s/.*\"$1\":{\"wallNanos\":\([0-9]*\),\"cpuNanos\":\([0-9]*\),\"allocatedBytes\":\([0-9]*\)}.*/\\$2/p" "$stats"
+}
+
+# Extracts a counter from the statistics file.
+counter() {
+  sed -n "s/.*\"$1\":\([0-9]*\).*/\1/p" "$stats"
+}
+
+best=
+bestIo=
+readAllocated=0
+parseAllocated=0
+if [ "$cache" = warm ]; then
+  "$launcher" --quiet "$@" "$output"
+fi
+i=0
+while [ "$i" -lt "$runs" ]; do
+  if [ "$cache" = cold ]; then
+    sync
+    echo 3 > /proc/sys/vm/drop_caches
+  fi
+  "$launcher" --quiet --stats-file="$stats" "$@" "$output"
+  classes=$(counter classFiles)
+  wall=$(( $(phase discovery 1) + $(phase read 1) + $(phase parse 1) + $(phase filter 1) ))
+  perSecond=$(( classes * 1000000000 / (wall > 0 ? wall : 1) ))
+  if [ -z "$best" ] || [ "$perSecond" -gt "$best" ]; then
+    best=$perSecond
+  fi
+  io=$(( ($(phase discovery 1) + $(phase read 1)) / (classes > 0 ? classes : 1) ))
+  if [ -z "$bestIo" ] || [ "$io" -lt "$bestIo" ]; then
+    bestIo=$io
+  fi
+  readAllocated=$(( readAllocated + $(phase read 3) / (classes > 0 ? classes : 1) ))
+  parseAllocated=$(( parseAllocated + $(phase parse 3) / (classes > 0 ? classes : 1) ))
+  i=$(( i + 1 ))
+done
+printf 'Class files: %d (%d runs, %s page cache)\n' "$classes" "$runs" "$cache"
+printf '  Best ingestion throughput: %d class file(s)/s\n' "$best"
+printf '  Best discovery+read time: %d ns per class file\n' "$bestIo"
+printf '  Allocation per class file: %d byte(s) reading, %d byte(s) parsing\n' $(( readAllocated / runs )) $(( parseAllocated / runs ))
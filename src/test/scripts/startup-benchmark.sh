@@ -0,0 +1,53 @@
+#!/bin/sh
+#
+# Measures the startup benefit of the class data sharing archive, by running the launcher on a small input a number of times, both
+# with and without the archive, and reporting the average and best wall-clock times.
+#
+# Usage: src/test/scripts/startup-benchmark.sh [RUNS [INPUT]]
+#
+# This requires a build using the 'cds' profile (mvn -B -Pcds package). The default input is the (small) annotations jar copied to
+# target/lib by that build, because for small inputs, startup dominates the total run time.
+
+set -e
+
+root=$(cd "$(dirname "$0")/../../.." && pwd)
+launcher="$root/target/apiref"
+runs=${1:-10}
+input=${2:-$(ls "$root"/target/lib/annotations-*.jar 2>/dev/null | head -n 1)}
+
+if [ ! -x "$launcher" ] || [ -z "$(ls "$root"/target/*.jsa 2>/dev/null)" ]; then
+  echo "No launcher and/or class data sharing archive found; build using: mvn -B -Pcds package" >&2
+  exit 1
+fi
+if [ ! -e "$input" ]; then
+  echo "Input not found: $input" >&2
+  exit 1
+fi
+
+output=$(mktemp)
+trap 'rm -f "$output"' EXIT
+
+# Runs the launcher $runs times (after one warm-up run, to get the files into the OS cache) and reports the timings.
+measure() {
+  label=$1
+  "$launcher" "$input" "$output" > /dev/null
+  total=0
+  best=
+  i=0
+  while [ "$i" -lt "$runs" ]; do
+    start=$(date +%s%N)
+    "$launcher" "$input" "$output" > /dev/null
+    end=$(date +%s%N)
+    elapsed=$(( (end - start) / 1000000 ))
+    total=$(( total + elapsed ))
+    if [ -z "$best" ] || [ "$elapsed" -lt "$best" ]; then
+      best=$elapsed
+    fi
+    i=$(( i + 1 ))
+  done
+  printf '%-16s average %5d ms, best %5d ms (%d runs)\n' "$label" $(( total / runs )) "$best" "$runs"
+}
+
+APIREF_NO_CDS=1 measure "Without archive:"
+unset APIREF_NO_CDS
+measure "With archive:"